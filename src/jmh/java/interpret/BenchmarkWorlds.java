@@ -0,0 +1,52 @@
+package interpret;
+
+import java.io.File;
+import java.io.IOException;
+
+import console.WorldLoader;
+
+/**
+ * Worlds and critters shared by the benchmarks. Example files are read from
+ * the directory named by the {@code examples} system property, by default
+ * {@code src/main/java/examples} under the working directory.
+ */
+final class BenchmarkWorlds {
+
+	/** Seed of every benchmark world, so runs are comparable. */
+	static final long SEED = 20181018L;
+
+	private BenchmarkWorlds() {
+	}
+
+	static File example(String name) {
+		return new File(System.getProperty("examples", "src/main/java/examples"), name);
+	}
+
+	/**
+	 * Make a world of {@code cols} by {@code rows} hexes holding about
+	 * {@code density} critters per hex, read from critter file
+	 * {@code critterFile}, and the same amount of food.
+	 */
+	static World populated(int cols, int rows, double density, String critterFile)
+			throws IOException {
+		World w = new World("Benchmark", cols, rows, SEED);
+		WorldLoader loader = new WorldLoader(SEED, System.err);
+		int hexes = 0;
+		for (int c = 0; c < cols; c++) {
+			for (int r = 0; r < rows; r++) {
+				if (w.getHexAt(c, r) != null) hexes++;
+			}
+		}
+		int n = (int) (density * hexes);
+		loader.loadCritters(w, example(critterFile), n);
+		RandomStream rand = w.newRandom();
+		for (int placed = 0; placed < n; ) {
+			Hex h = w.getHexAt(rand.nextInt(cols), rand.nextInt(rows));
+			if (h != null && h.getStatus() == 0) {
+				h.add(new Food(500, w));
+				placed++;
+			}
+		}
+		return w;
+	}
+}
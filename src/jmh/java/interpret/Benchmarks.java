@@ -0,0 +1,32 @@
+package interpret;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the simulation core and writes their results as
+ * JSON, so they can be compared from one change to the next.
+ *
+ * Usage: {@code Benchmarks [result_file [regexp]]}, where the result file
+ * defaults to {@code jmh-result.json} and the regular expression selects
+ * benchmarks by name, by default all of them. Run from the project
+ * directory, or set the {@code examples} system property to the
+ * directory of the example files.
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		String file = args.length > 0 ? args[0] : "jmh-result.json";
+		String include = args.length > 1 ? args[1] : "interpret\\..*Benchmark";
+		Options opts = new OptionsBuilder()
+				.include(include)
+				.jvmArgsAppend("-Dexamples=" + BenchmarkWorlds.example("").getAbsolutePath())
+				.resultFormat(ResultFormatType.JSON)
+				.result(file)
+				.build();
+		new Runner(opts).run();
+	}
+}
@@ -0,0 +1,31 @@
+package interpret;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State; // not interpret.State
+
+import console.WorldLoader;
+
+/**
+ * Loading the example world files, including parsing the critter files
+ * they name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({"world.txt", "world-2.txt", "world-3.txt"})
+	public String world;
+
+	@Benchmark
+	public World loadWorld() throws IOException {
+		return new WorldLoader(BenchmarkWorlds.SEED, System.err)
+				.loadWorld(BenchmarkWorlds.example(world));
+	}
+}
@@ -0,0 +1,34 @@
+package interpret;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State; // not interpret.State
+
+/**
+ * Printing the ASCII map of a populated world with {@link World#getMap()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+	@Param({"50", "200"})
+	public int cols;
+
+	private World w;
+
+	@Setup
+	public void setUp() throws IOException {
+		w = BenchmarkWorlds.populated(cols, 3 * cols / 2, 0.05, "example-critter.txt");
+	}
+
+	@Benchmark
+	public String getMap() {
+		return w.getMap();
+	}
+}
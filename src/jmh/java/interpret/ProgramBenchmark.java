@@ -0,0 +1,48 @@
+package interpret;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State; // not interpret.State
+
+/**
+ * One critter evaluating its program once, without acting on the result,
+ * for each of the example critters. {@code interpreter} walks the AST;
+ * {@code vm} runs the bytecode, which is JIT-compiled once the program
+ * has run often enough, as it is during the warmup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramBenchmark {
+
+	@Param({"example-critter.txt", "example-critter-2.txt",
+			"example-critter-3.txt", "example-critter-4.txt"})
+	public String critter;
+
+	private CritterState cs;
+	private VirtualMachine vm;
+	private Interpreter interpreter;
+
+	@Setup
+	public void setUp() throws IOException {
+		World w = BenchmarkWorlds.populated(30, 40, 0.1, critter);
+		cs = w.getCritters().get(0).getState();
+		vm = new VirtualMachine();
+		interpreter = new Interpreter();
+	}
+
+	@Benchmark
+	public Result vm() {
+		return vm.interpret(cs.p, cs);
+	}
+
+	@Benchmark
+	public Result interpreter() {
+		return interpreter.interpret(cs.p, cs);
+	}
+}
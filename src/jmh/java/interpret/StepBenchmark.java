@@ -0,0 +1,48 @@
+package interpret;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State; // not interpret.State
+
+/**
+ * A full {@link World#advanceTime()} of a world at several densities of
+ * example critters, stepped one critter at a time or in parallel regions.
+ * Each iteration rebuilds the world and times one batch of {@link #STEPS}
+ * steps from it, so what is measured stays close to the density given,
+ * which a world left running for a whole timed iteration drifts away
+ * from as critters die and bud.
+ * The score is the time of the whole batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = StepBenchmark.STEPS)
+@Measurement(iterations = 40, batchSize = StepBenchmark.STEPS)
+@Fork(1)
+public class StepBenchmark {
+
+	/** Steps timed from each freshly built world. */
+	static final int STEPS = 10;
+
+	@Param({"0.01", "0.05", "0.2"})
+	public double density;
+
+	@Param({"false", "true"})
+	public boolean parallel;
+
+	private World w;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		w = BenchmarkWorlds.populated(100, 150, density, "example-critter.txt");
+		w.setParallel(parallel);
+	}
+
+	@Benchmark
+	public World advanceTime() {
+		w.advanceTime();
+		return w;
+	}
+}
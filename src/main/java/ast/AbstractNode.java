@@ -2,11 +2,17 @@ package ast;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public abstract class AbstractNode implements Node, Cloneable {
 
    protected Node parent;
    protected List<Node> children = new ArrayList<>();
+   Interner.Key key; // set once this node is interned, see Interner
+   private static final int KINDS = NodeKind.values().length;
+   // cached once interned, when the subtree can no longer change
+   private int size;
+   private int[] counts; // number of nodes of each kind, by ordinal
    
    @Override
    public String toString() {
@@ -28,15 +34,112 @@ public abstract class AbstractNode implements Node, Cloneable {
       return list;
    }
    
+   /**
+    * The number of nodes in this subtree. Takes constant time once the
+    * node is interned, and otherwise time in the number of nodes not yet
+    * interned.
+    */
    public int size() {
+      if (key != null) return size;
       int s = 1;
       for (Node n : children) s += n.size();
-      //assert s == preorder().size(); // sanity check
       return s;
    }
    
+   /**
+    * The number of nodes in this subtree of one of the given kinds. Takes
+    * time as {@link #size()} does.
+    */
+   public int count(Set<NodeKind> kinds) {
+      if (key != null) {
+         int s = 0;
+         for (NodeKind k : kinds) s += counts[k.ordinal()];
+         return s;
+      }
+      int s = kinds.contains(NodeKind.of(this)) ? 1 : 0;
+      for (Node n : children) s += ((AbstractNode)n).count(kinds);
+      return s;
+   }
+   
+   /**
+    * The node at position {@code index} of the preorder of this subtree,
+    * found by descending from this node past the subtrees before it,
+    * without listing the nodes.
+    */
    public Node nodeAt(int index) {
-      return preorder().get(index);
+      if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+      AbstractNode n = this;
+      for (int i = index; i > 0; ) {
+         i--; // past n itself
+         for (Node c : n.children) {
+            int s = c.size();
+            if (i < s) {
+               n = (AbstractNode)c;
+               break;
+            }
+            i -= s;
+         }
+      }
+      return n;
+   }
+   
+   /**
+    * The node at position {@code index} among the nodes of this subtree
+    * of one of the given kinds, in preorder, found as {@link #nodeAt(int)}
+    * does.
+    */
+   public Node nodeAt(Set<NodeKind> kinds, int index) {
+      if (index < 0 || index >= count(kinds)) throw new IndexOutOfBoundsException(index);
+      AbstractNode n = this;
+      for (int i = index; ; ) {
+         if (kinds.contains(NodeKind.of(n)) && i-- == 0) return n;
+         for (Node c : n.children) {
+            int s = ((AbstractNode)c).count(kinds);
+            if (i < s) {
+               n = (AbstractNode)c;
+               break;
+            }
+            i -= s;
+         }
+      }
+   }
+   
+   /**
+    * The node at position {@code index} among the nodes of this subtree
+    * of one of the given kinds, in whatever order this node finds them
+    * fastest; by default the order of {@link #nodeAt(Set, int)}.
+    */
+   Node anyOf(Set<NodeKind> kinds, int index) {
+      return nodeAt(kinds, index);
+   }
+   
+   /**
+    * The number of nodes of each kind in this subtree, by ordinal. The
+    * array is the cached one once the node is interned, and must not be
+    * changed.
+    */
+   int[] counts() {
+      if (key != null) return counts;
+      int[] cs = new int[KINDS];
+      for (Node n : preorder()) cs[NodeKind.of(n).ordinal()]++;
+      return cs;
+   }
+   
+   /**
+    * Cache the size and counts of this subtree, whose children are
+    * interned; called as this node is interned.
+    */
+   void cache() {
+      int[] cs = new int[KINDS];
+      cs[NodeKind.of(this).ordinal()]++;
+      int s = 1;
+      for (Node n : children) {
+         AbstractNode c = (AbstractNode)n;
+         s += c.size;
+         for (int k = 0; k < cs.length; k++) cs[k] += c.counts[k];
+      }
+      size = s;
+      counts = cs;
    }
    
    public Node fst() {
@@ -59,6 +162,11 @@ public abstract class AbstractNode implements Node, Cloneable {
       children = c;
    }
    
+   /**
+    * The parent this node was last given. Interned nodes may be shared
+    * by several trees, so their parent is only reliable along the path
+    * a program has just copied to mutate.
+    */
    public Node getParent() {
       return parent;
    }
@@ -67,6 +175,37 @@ public abstract class AbstractNode implements Node, Cloneable {
       parent = p;
    }
    
+   /**
+    * Whether this node is interned, and so must never change.
+    */
+   public boolean isInterned() {
+      return key != null;
+   }
+
+   /**
+    * What distinguishes this node from others of its class with the same
+    * children, such as an operator or a value, or {@code null} if nothing
+    * does. Nodes are interned by class, attribute and children.
+    */
+   Object attribute() {
+      return null;
+   }
+
+   /**
+    * Copy this node but not its children, which the copy shares.
+    */
+   AbstractNode shallowCopy() {
+      AbstractNode copy = null;
+      try {
+         copy = (AbstractNode)super.clone();
+      } catch (CloneNotSupportedException e) {
+         assert false; // should never happen
+      }
+      copy.children = new ArrayList<>(children);
+      copy.key = null;
+      return copy;
+   }
+
    /**
     * Called by subclasses to clone the object and its children.
     * Other specialized cloning operations are handled in the overriding
@@ -81,6 +220,8 @@ public abstract class AbstractNode implements Node, Cloneable {
          assert false; // should never happen
       }
       
+      ((AbstractNode)copy).key = null; // the copy may be changed
+
       // clone children
       copy.setChildren(new ArrayList<>());
       for (Node n : children) {
@@ -15,6 +15,11 @@ public class Action extends AbstractNode {
       expr.parent = this;
       children.add(expr);
    }
+
+   @Override
+   Object attribute() {
+      return type;
+   }
    
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
@@ -28,28 +28,38 @@ public class BinaryCondition extends Condition {
    public TokenType getBinaryOp() {
 	   return op;
    }
+
+   @Override
+   Object attribute() {
+      return op;
+   }
    
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
-      boolean protect = protect();
-      if (protect) sb.append('{');
-      fst().prettyPrint(sb);
+      operand(fst(), false, sb);
       sb.append(' ');
       sb.append(op.toString().toLowerCase());
       sb.append(' ');
-      snd().prettyPrint(sb);
+      return operand(snd(), true, sb);
+   }
+   
+   /**
+    * Print an operand of this condition, in braces if it needs them, as
+    * {@link BinaryExpression} does.
+    */
+   private StringBuilder operand(Node c, boolean right, StringBuilder sb) {
+      boolean protect = c instanceof BinaryCondition && protect((BinaryCondition)c, right);
+      if (protect) sb.append('{');
+      c.prettyPrint(sb);
       if (protect) sb.append('}');
       return sb;
    }
    
-   private boolean protect() {
-      assert parent != null;
-      if (!(parent instanceof BinaryCondition)) return false;
-      BinaryCondition par = (BinaryCondition)parent;
-      if (op == TokenType.OR && par.op == TokenType.AND) return true;
-      if (op != par.op) return false;
-      // same precedence - check whether this is right child of parent
-      return this == par.snd();
+   private boolean protect(BinaryCondition child, boolean right) {
+      if (child.op == TokenType.OR && op == TokenType.AND) return true;
+      if (child.op != op) return false;
+      // same precedence - check whether the child is the right operand
+      return right;
    }
 
 }
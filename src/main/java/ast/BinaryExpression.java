@@ -19,30 +19,39 @@ public class BinaryExpression extends Expr {
 	   return op;
    }
 
+   @Override
+   Object attribute() {
+      return op;
+   }
+
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
-      // check precedence to see if should output parens
-      boolean protect = protect();
-      if (protect) sb.append('(');
-      fst().prettyPrint(sb);
+      operand(fst(), false, sb);
       sb.append(' ');
       sb.append(op.toString());
       sb.append(' ');
-      snd().prettyPrint(sb);
+      return operand(snd(), true, sb);
+   }
+   
+   /**
+    * Print an operand of this expression, in parentheses if it needs
+    * them. Parentheses are decided by the parent, since a shared subtree
+    * may have a different parent in each tree it is part of.
+    */
+   private StringBuilder operand(Node e, boolean right, StringBuilder sb) {
+      // check precedence to see if should output parens
+      boolean protect = e instanceof BinaryExpression && protect((BinaryExpression)e, right);
+      if (protect) sb.append('(');
+      e.prettyPrint(sb);
       if (protect) sb.append(')');
       return sb;
    }
    
-   private boolean protect() {
-      assert parent != null;
-      if (!(parent instanceof Expr)) return false;
-      if (parent instanceof NegatedFactor) return true;
-      if (!(parent instanceof BinaryExpression)) return false;
-      BinaryExpression par = (BinaryExpression)parent;
-      if (op.category() == TokenCategory.ADDOP && par.op.category() == TokenCategory.MULOP) return true;
-      if (op.category() != par.op.category()) return false;
-      // same precedence - check whether this is right child of parent
-      return this == par.snd();
+   private boolean protect(BinaryExpression child, boolean right) {
+      if (child.op.category() == TokenCategory.ADDOP && op.category() == TokenCategory.MULOP) return true;
+      if (child.op.category() != op.category()) return false;
+      // same precedence - check whether the child is the right operand
+      return right;
    }
 
 }
@@ -1,7 +1,6 @@
 package ast;
 
 import java.util.List;
-import java.util.Random;
 
 import ast.Action;
 import ast.Command;
@@ -18,9 +17,7 @@ import ast.Update;
  * a new rule can be added, and also to command nodes, where the
  * sequence of updates can be extended with another update.
  */
-public class DuplicateMutation implements Mutation {
-   
-   Random rand = new Random();
+public class DuplicateMutation extends MutationImpl {
 
    @Override
    public boolean equals(Mutation m) {
@@ -35,8 +32,8 @@ public class DuplicateMutation implements Mutation {
          if (children.size() == 0) return false; // no rule to add
          Rule dup = (Rule)children.get(rand.nextInt(children.size()));
          dup = (Rule)dup.clone();
+         dup.setParent(prog);
          children.add(dup);
-         assert dup.parent == prog; // sanity check - clone should do this
          return true;
       }
       if (node instanceof Command) {
@@ -48,8 +45,8 @@ public class DuplicateMutation implements Mutation {
          if (range == 0) return false; // no updates
          Update dup = (Update)children.get(rand.nextInt(range));
          dup = (Update)dup.clone();
+         dup.setParent(command);
          children.add(range, dup);
-         assert dup.parent == command; // sanity check - clone should do this         
          return true;
       }
       return false;
@@ -1,6 +1,5 @@
 package ast;
 
-import java.util.Random;
 
 import ast.BinaryCondition;
 import ast.BinaryExpression;
@@ -23,8 +22,6 @@ import parse.TokenType;
  */
 public class InsertMutation extends MutationImpl {
 
-	Random rand = new Random();
-
 	@Override
 	public boolean equals(Mutation m) {
 		return m instanceof InsertMutation;
@@ -41,7 +38,7 @@ public class InsertMutation extends MutationImpl {
 		boolean assg = parent instanceof Update && node == ((Update) parent).fst();
 
 		if (node instanceof Condition) {
-			n = getSimilar(node, m -> m instanceof Condition);
+			n = getSimilar(node, NodeKind.CONDITIONS);
 			if (n == null) return false;
 			Condition c1 = (Condition) n.clone();
 			Condition c2 = (Condition) node;
@@ -51,7 +48,7 @@ public class InsertMutation extends MutationImpl {
 		}
 
 		else if (node instanceof Expr && !assg && rand.nextBoolean()) {
-			n = getSimilar(node, m -> m instanceof Expr);
+			n = getSimilar(node, NodeKind.EXPRESSIONS);
 			if (n == null) return false;
 			final TokenType[] ops = { TokenType.PLUS, TokenType.MINUS, TokenType.MUL,
 					TokenType.DIV, TokenType.MOD };
@@ -0,0 +1,122 @@
+package ast;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing of program trees: equal subtrees are replaced by a single
+ * shared, interned instance, so that many critters with the same or
+ * similar programs hold one copy of what they have in common.
+ *
+ * An interned node never changes. A program changes one by copying the
+ * path from its root down to the node it changes (see
+ * {@link ProgramImpl#mutate(int, Mutation)}) and interning the copies
+ * afterwards. Nodes are remembered only while some tree still uses them.
+ * Since it can't change, an interned node also caches its size and the
+ * number of nodes of each kind below it.
+ */
+public final class Interner {
+
+   /** Canonical nodes by key; each key is kept alive by its node. */
+   private static final Map<Key, WeakReference<AbstractNode>> table = new WeakHashMap<>();
+
+   private Interner() {
+   }
+
+   /**
+    * Intern the rules of program {@code p}, in place, and then the program
+    * itself.
+    *
+    * @return the interned program equal to {@code p}, which the caller
+    *         must not change
+    */
+   public static ProgramImpl intern(ProgramImpl p) {
+      if (p.key != null) return p;
+      internChildren(p);
+      return (ProgramImpl)canonical(p);
+   }
+
+   /**
+    * Intern the subtree rooted at {@code n}, replacing its children by
+    * their interned equivalents.
+    *
+    * @return the interned node equal to {@code n}, which may be {@code n}
+    */
+   public static Node intern(Node n) {
+      AbstractNode a = (AbstractNode)n;
+      if (a.key != null) return a;
+      internChildren(a);
+      return canonical(a);
+   }
+
+   /**
+    * The number of distinct nodes currently interned.
+    */
+   public static synchronized int size() {
+      return table.size();
+   }
+
+   /**
+    * Intern the children of {@code n}, in place, but not {@code n}.
+    */
+   static void internChildren(AbstractNode n) {
+      List<Node> children = n.children;
+      for (int i = 0; i < children.size(); i++) {
+         Node c = children.get(i);
+         if (((AbstractNode)c).key == null) children.set(i, intern(c));
+      }
+   }
+
+   private static synchronized AbstractNode canonical(AbstractNode n) {
+      if (n.key != null) return n;
+      Key k = new Key(n);
+      WeakReference<AbstractNode> ref = table.get(k);
+      AbstractNode c = ref == null ? null : ref.get();
+      if (c != null) return c;
+      n.cache();
+      n.key = k;
+      table.put(k, new WeakReference<>(n));
+      return n;
+   }
+
+   /**
+    * The class, attribute and children of a node. Children are compared
+    * by identity, since they are interned first.
+    */
+   static final class Key {
+      private final Class<?> kind;
+      private final Object attribute;
+      private final Node[] children;
+      private final int hash;
+
+      Key(AbstractNode n) {
+         kind = n.getClass();
+         attribute = n.attribute();
+         children = n.children.toArray(new Node[n.children.size()]);
+         int h = kind.hashCode() * 31 + Objects.hashCode(attribute);
+         for (Node c : children) h = h * 31 + System.identityHashCode(c);
+         hash = h;
+      }
+
+      @Override
+      public int hashCode() {
+         return hash;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key)) return false;
+         Key k = (Key)o;
+         if (hash != k.hash || kind != k.kind || !Objects.equals(attribute, k.attribute)
+               || children.length != k.children.length)
+            return false;
+         for (int i = 0; i < children.length; i++) {
+            if (children[i] != k.children[i]) return false;
+         }
+         return true;
+      }
+   }
+}
@@ -1,57 +1,42 @@
 package ast;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import ast.Node;
 
 public abstract class MutationImpl implements Mutation {
 
-	Random rand = new Random();
-
 	/**
-	 * Get a node similar to the given node, where similarity
-	 * is defined by the given {@code Predicate}.
-	 * 
-	 * @param node A prototypical node
-	 * @param f The {@code Predicate} that determines similarity.
-	 * @return A node similar to but not == the given node.
+	 * The source of this mutation's random choices. A program applying
+	 * the mutation hands it the generator it is mutating with.
 	 */
-	protected Node getSimilar(Node node, Predicate<Node> f) {
-		Node root = node;
-		while (root.getParent() != null) root = root.getParent();
-		List<Node> preorder = ((AbstractNode)root).preorder();
-		List<Node> filtered = filter(preorder, f);
-		assert 0 < filtered.size();
-		assert filtered.remove(node);
-		assert filtered.size() < preorder.size();
-		if (filtered.isEmpty()) return null;
-		return filtered.get(rand.nextInt(filtered.size()));
-	}
+	RandomGenerator rand = new SplittableRandom();
 
 	/**
-	 * A generic method to filter out all elements of a {@code List}
-	 * that do not satisfy the property specified by the given
-	 * {@code Predicate}.
+	 * Get a node similar to the given node, where similarity is being of
+	 * one of the given kinds, chosen uniformly among the nodes of those
+	 * kinds in the program. Takes time in the depth of the node rather
+	 * than the size of the program, using the index of the program's
+	 * nodes by kind (see {@link ProgramImpl#count(Set)}).
 	 * 
-	 * @param list The initial {@code List} to filter
-	 * @param f The {@code Predicate} that tells whether to keep an element
-	 * @return The output list of all elements in the original list
-	 * satisfying the {@code Predicate}.
-	 * 
-	 * Example: Given a list of integers, filter out the odd elements:
-	 * 
-	 * filter(list, n -> n%2 == 0);
+	 * @param node A prototypical node, of one of the kinds
+	 * @param kinds The kinds of node that are similar
+	 * @return A node similar to but not == the given node, or {@code null}
+	 * if there is none.
 	 */
-	private <T> List<T> filter(List<T> list, Predicate<T> f) {
-		List<T> filtered = new ArrayList<>();
-		for (T x : list) {
-			if (f.test(x)) filtered.add(x);
-		}
-		return filtered;
+	protected Node getSimilar(Node node, Set<NodeKind> kinds) {
+		AbstractNode root = (AbstractNode)node;
+		while (root.getParent() != null) root = (AbstractNode)root.getParent();
+		int n = root.count(kinds);
+		assert 0 < n;
+		if (n <= 1) return null; // just the given node
+		Node similar;
+		do {
+			similar = root.anyOf(kinds, rand.nextInt(n));
+		} while (similar == node);
+		return similar;
 	}
 
 }
-
@@ -10,7 +10,10 @@ public class NegatedFactor extends Expr {
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
       sb.append("-");
-      return fst().prettyPrint(sb);
+      boolean protect = fst() instanceof BinaryExpression;
+      if (protect) sb.append('(');
+      fst().prettyPrint(sb);
+      return protect ? sb.append(')') : sb;
    }
 
 }
@@ -0,0 +1,61 @@
+package ast;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The kinds of node a program tree is made of, one for each class of node.
+ * Nodes count the nodes of each kind below them (see
+ * {@link AbstractNode#count}), so that a node of a given kind can be picked
+ * without listing the whole tree.
+ */
+public enum NodeKind {
+   PROGRAM(ProgramImpl.class),
+   RULE(Rule.class),
+   COMMAND(Command.class),
+   UPDATE(Update.class),
+   ACTION(Action.class),
+   BINARY_CONDITION(BinaryCondition.class),
+   RELATION(Relation.class),
+   BINARY_EXPRESSION(BinaryExpression.class),
+   NEGATED_FACTOR(NegatedFactor.class),
+   NUMBER(Number.class),
+   REGISTER(Register.class),
+   SENSOR(Sensor.class);
+
+   /** The kinds of {@link Condition}. */
+   public static final Set<NodeKind> CONDITIONS =
+         Collections.unmodifiableSet(EnumSet.of(BINARY_CONDITION, RELATION));
+
+   /** The kinds of {@link Expr}. */
+   public static final Set<NodeKind> EXPRESSIONS = Collections.unmodifiableSet(
+         EnumSet.of(BINARY_EXPRESSION, NEGATED_FACTOR, NUMBER, REGISTER, SENSOR));
+
+   private static final NodeKind[] KINDS = values();
+
+   private static final ClassValue<NodeKind> BY_CLASS = new ClassValue<NodeKind>() {
+      @Override
+      protected NodeKind computeValue(Class<?> c) {
+         for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+            for (NodeKind kind : KINDS) {
+               if (kind.type == k) return kind;
+            }
+         }
+         throw new IllegalArgumentException("Not a kind of node: " + c);
+      }
+   };
+
+   private final Class<? extends Node> type;
+
+   private NodeKind(Class<? extends Node> type) {
+      this.type = type;
+   }
+
+   /**
+    * The kind of node {@code n}.
+    */
+   public static NodeKind of(Node n) {
+      return BY_CLASS.get(n.getClass());
+   }
+}
@@ -12,6 +12,11 @@ public class Number extends Expr {
 	   return value;
    }
 
+   @Override
+   Object attribute() {
+      return value;
+   }
+
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
       return sb.append(String.valueOf(value));
@@ -1,27 +1,101 @@
 package ast;
 
-import java.util.Random;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * A data structure representing a critter program.
+ *
+ * The rules of a program are never changed in place: a mutation copies
+ * the path from the program down to the node it changes, and the copies
+ * are interned afterwards (see {@link Interner}). Programs can therefore
+ * share rules and subtrees, and a clone of a program copies only its list
+ * of rules.
  */
 public class ProgramImpl extends AbstractNode implements Program {
    
-   private Random rand = new Random();
+   private RandomGenerator rand = new SplittableRandom();
    private int memSize; // dummies for A5
    private int offense;
    private int defense;
    public int successes = 0; // number of successful mutations
    public int attempts = 0; // number of attempted mutations
+   private int version = 0; // bumped whenever the rule set may have changed
+   private Object compiled; // cached compiled form of this program, see interpret.Bytecode
+   private int[][] nodeIndex; // by kind and for all nodes, a Fenwick tree of the number of nodes in each rule
+   private static final int SIZES = NodeKind.values().length; // row of the index counting all nodes
    
    public void add(Rule rule) {
+      checkMutable();
       rule.parent = this;
       children.add(rule);
+      version++;
+      nodeIndex = null;
+   }
+
+   /**
+    * A counter that changes every time this program is modified through
+    * {@code add} or {@code mutate}. Compiled forms of the program record the
+    * version they were built from so they can tell when they are stale.
+    * Mutations applied directly to nodes bypass this counter; callers doing
+    * so must call {@link #touch()} afterwards.
+    * 
+    * @return the current version of this program
+    */
+   public int getVersion() {
+      return version;
+   }
+
+   /**
+    * Mark this program as modified, invalidating any compiled form.
+    */
+   public void touch() {
+      version++;
+      nodeIndex = null;
+   }
+
+   /**
+    * Get the cached compiled form of this program, if any. The cache is
+    * owned by the interpreter; it is opaque to the AST.
+    */
+   public Object getCompiled() {
+      return compiled;
+   }
+
+   public void setCompiled(Object compiled) {
+      this.compiled = compiled;
+   }
+
+   /**
+    * Copy this program, sharing its rules, which never change.
+    */
+   @Override
+   public Node clone() {
+      ProgramImpl copy = (ProgramImpl) shallowCopy();
+      copy.rand = new SplittableRandom();
+      copy.compiled = null; // refers to the rules of this program
+      return copy;
    }
 
    @Override
    public Program mutate() {
-      while (null == (rand.nextBoolean() ? changeAttribute() : changeRuleSet())) {};
+      return mutate(rand);
+   }
+
+   /**
+    * Mutate this program as {@link #mutate()} does, making every random
+    * choice with {@code r}, so that the same generator state always
+    * produces the same mutation.
+    * 
+    * @param r the generator to draw from
+    * @return this program
+    */
+   public Program mutate(RandomGenerator r) {
+      checkMutable();
+      while (null == (r.nextBoolean() ? changeAttribute(r) : changeRuleSet(r))) {};
       return this; // always succeeds
    }
 
@@ -30,41 +104,221 @@ public class ProgramImpl extends AbstractNode implements Program {
     * equal probability. Always succeeds.
     * @return
     */
-   private Program changeAttribute() {
-      switch (rand.nextInt(3)) {
+   private Program changeAttribute(RandomGenerator r) {
+      switch (r.nextInt(3)) {
       case 0: // change size of memory
-         if (memSize == 8 || rand.nextBoolean()) memSize++;
+         if (memSize == 8 || r.nextBoolean()) memSize++;
          else memSize--;
          break;
       case 1: // change offense
-         if (offense == 1 || rand.nextBoolean()) offense++;
+         if (offense == 1 || r.nextBoolean()) offense++;
          else offense--;
          break;
       case 2: // change defense
-         if (defense == 1 || rand.nextBoolean()) defense++;
+         if (defense == 1 || r.nextBoolean()) defense++;
          else defense--;
          break;
       };
       successes++; // always succeeds
       attempts++;
+      version++;
       return this;
    }
 
-   private Program changeRuleSet() {
-      int index = rand.nextInt(size()); // pick a random node
-      Mutation m = MutationFactory.getMutation(rand.nextInt(6)); // and a random mutation
-      return mutate(index, m);
+   private Program changeRuleSet(RandomGenerator r) {
+      int index = r.nextInt(size()); // pick a random node
+      Mutation m = MutationFactory.getMutation(r.nextInt(6)); // and a random mutation
+      return mutate(index, m, r);
    }
 
    @Override
    public Program mutate(int index, Mutation m) {
+      return mutate(index, m, rand);
+   }
+
+   private Program mutate(int index, Mutation m, RandomGenerator r) {
+      checkMutable();
+      if (m instanceof MutationImpl) ((MutationImpl) m).rand = r;
+      if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
       int s = successes;
-      Node target = preorder().get(index);
-      if (m.applies(target) && m.apply(target)) successes++;
+      int[][] ix = nodeIndex(); // of the rules as they are before one is copied below
+      int n = children.size();
+      Node target = this;
+      int rule = -1; // the rule copied, if any
+      Node original = null;
+      if (index > 0) {
+         // copy the path from the rule holding the target down to it,
+         // leaving the nodes beside the path shared
+         int[] sizes = ix[SIZES];
+         int i = index - 1;
+         rule = ruleAt(sizes, i);
+         original = children.get(rule);
+         AbstractNode parent = ((AbstractNode) original).shallowCopy();
+         parent.parent = this;
+         children.set(rule, parent);
+         for (i -= before(sizes, rule) + 1; i >= 0; i--) {
+            List<Node> children = parent.children;
+            int k = 0;
+            Node child = children.get(0);
+            while (i >= child.size()) {
+               i -= child.size();
+               child = children.get(++k);
+            }
+            AbstractNode copy = ((AbstractNode) child).shallowCopy();
+            copy.parent = parent;
+            children.set(k, copy);
+            parent = copy;
+         }
+         target = parent;
+      }
+      if (m.applies(target) && m.apply(target)) {
+         successes++;
+         version++;
+         if (rule >= 0 && children.size() == n) { // only the copied rule changed
+            children.set(rule, Interner.intern(children.get(rule)));
+            reindex(rule, original);
+         } else { // rules were added or removed
+            Interner.internChildren(this);
+            nodeIndex = null;
+         }
+      } else if (original != null) {
+         children.set(rule, original); // nothing changed
+      }
       attempts++;
       return successes > s ? this : null;
    }
 
+   /**
+    * The number of nodes in this program. Takes constant time, using the
+    * index of the nodes in the rules.
+    */
+   @Override
+   public int size() {
+      if (key != null) return super.size();
+      return 1 + nodeIndex()[SIZES][0];
+   }
+
+   /**
+    * The number of nodes in this program of one of the given kinds. Takes
+    * time in the number of kinds, using the index of the nodes of each
+    * kind in the rules, which mutations keep up to date.
+    */
+   @Override
+   public int count(Set<NodeKind> kinds) {
+      if (key != null) return super.count(kinds);
+      int[][] ix = nodeIndex();
+      int s = kinds.contains(NodeKind.PROGRAM) ? 1 : 0;
+      for (NodeKind k : kinds) s += ix[k.ordinal()][0];
+      return s;
+   }
+
+   /**
+    * The node at position {@code index} among the nodes of one of the
+    * given kinds, ordered by kind, then rule, then preorder. Finds the rule
+    * in the index, then descends it by the counts its nodes cache (see
+    * {@link #nodeAt(Set, int)}), so takes time in the number of kinds, the
+    * log of the number of rules and the depth of the rule.
+    */
+   @Override
+   Node anyOf(Set<NodeKind> kinds, int index) {
+      if (key != null) return super.anyOf(kinds, index);
+      int[][] ix = nodeIndex();
+      int i = index;
+      if (kinds.contains(NodeKind.PROGRAM) && i-- == 0) return this;
+      for (NodeKind k : kinds) {
+         int[] counts = ix[k.ordinal()];
+         if (i < counts[0]) {
+            int r = ruleAt(counts, i);
+            return ((AbstractNode) children.get(r)).nodeAt(EnumSet.of(k), i - before(counts, r));
+         }
+         i -= counts[0];
+      }
+      throw new IndexOutOfBoundsException(index);
+   }
+
+   /**
+    * The index of the nodes of each kind in the rules: for each kind, and
+    * last for all nodes (row {@code SIZES}), a Fenwick tree of the number
+    * of such nodes in each rule. Element 0 of each row, unused by the
+    * tree, holds the number in all the rules. Built in time linear in the
+    * number of rules from the counts the rules cache once interned.
+    */
+   private int[][] nodeIndex() {
+      int[][] ix = nodeIndex;
+      if (ix != null) return ix;
+      int n = children.size();
+      ix = new int[SIZES + 1][n + 1];
+      for (int r = 0; r < n; r++) {
+         AbstractNode rule = (AbstractNode) children.get(r);
+         int[] counts = rule.counts();
+         int up = r + 1 + ((r + 1) & -(r + 1)); // the node of the tree covering rule r
+         for (int k = 0; k <= SIZES; k++) {
+            int[] tree = ix[k];
+            int c = k == SIZES ? rule.size() : counts[k];
+            tree[0] += c;
+            tree[r + 1] += c; // already holds the rules it covers
+            if (up <= n) tree[up] += tree[r + 1];
+         }
+      }
+      return nodeIndex = ix;
+   }
+
+   /**
+    * Bring the index up to date after rule {@code r}, formerly
+    * {@code original}, has been replaced, adjusting the trees of the
+    * kinds whose counts changed. Takes time in the log of the number of
+    * rules.
+    */
+   private void reindex(int r, Node original) {
+      int[][] ix = nodeIndex;
+      if (ix == null) return;
+      AbstractNode rule = (AbstractNode) children.get(r);
+      int[] counts = rule.counts();
+      int[] old = ((AbstractNode) original).counts();
+      for (int k = 0; k <= SIZES; k++) {
+         int d = k == SIZES ? rule.size() - original.size() : counts[k] - old[k];
+         if (d == 0) continue;
+         int[] tree = ix[k];
+         tree[0] += d;
+         for (int j = r + 1; j < tree.length; j += j & -j) tree[j] += d;
+      }
+   }
+
+   /**
+    * The number of nodes in the rules before rule {@code r}, by the
+    * Fenwick tree {@code tree}, a row of the index.
+    */
+   private static int before(int[] tree, int r) {
+      int s = 0;
+      for (int j = r; j > 0; j -= j & -j) s += tree[j];
+      return s;
+   }
+
+   /**
+    * The rule holding node {@code i} of those counted by the Fenwick tree
+    * {@code tree}, a row of the index: the last rule with no more than
+    * {@code i} nodes before it. {@code i} must be less than the total.
+    */
+   private static int ruleAt(int[] tree, int i) {
+      int r = 0; // rules known to have no more than i nodes in all
+      for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+         if (r + step < tree.length && tree[r + step] <= i) {
+            r += step;
+            i -= tree[r];
+         }
+      }
+      return r;
+   }
+
+   @Override
+   Object attribute() {
+      return List.of(memSize, offense, defense);
+   }
+
+   private void checkMutable() {
+      if (key != null) throw new IllegalStateException("Interned programs never change; mutate a clone");
+   }
+
    @Override
    public int possiblyMutate() {
       int s = successes;
@@ -0,0 +1,87 @@
+package ast;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import parse.ParserFactory;
+
+class ProgramTest {
+
+   static final String PROGRAM =
+         "POSTURE != 17 --> POSTURE := 17;\n"
+         + "nearby[3] = 0 and ENERGY > 2500 --> bud;\n"
+         + "{ENERGY > SIZE * 400 and SIZE < 7} --> grow;\n"
+         + "mem[8] < 3 --> mem[8] := mem[8] + 1 mem[20] := 5;\n"
+         + "ahead[1] < -1 and ENERGY < 500 * SIZE --> eat;\n"
+         + "(ahead[1] / 10 mod 100) != 17 and ahead[1] > 0 --> attack;\n"
+         + "ahead[1] < -5 or -ahead[2] / 0 = 0 --> forward;\n"
+         + "nearby[0] > 0 and nearby[3] = 0 --> backward;\n"
+         + "1 = 1 --> wait;\n";
+
+   /**
+    * Check the size, counts and nodes of each kind of program {@code p},
+    * as kept by its index or by the caches of its nodes once interned,
+    * against a walk of its tree.
+    */
+   private static void assertIndexMatchesTree(ProgramImpl p) {
+      List<Node> nodes = p.preorder();
+      assertEquals(nodes.size(), p.size());
+      for (int i = 0; i < nodes.size(); i++) {
+         assertSame(nodes.get(i), p.nodeAt(i));
+      }
+      assertThrows(IndexOutOfBoundsException.class, () -> p.nodeAt(p.size()));
+      List<Set<NodeKind>> sets = new ArrayList<Set<NodeKind>>();
+      for (NodeKind k : NodeKind.values()) sets.add(EnumSet.of(k));
+      sets.add(NodeKind.CONDITIONS);
+      sets.add(NodeKind.EXPRESSIONS);
+      for (Set<NodeKind> kinds : sets) {
+         List<Node> ofKind = new ArrayList<Node>();
+         for (Node n : nodes) {
+            if (kinds.contains(NodeKind.of(n))) ofKind.add(n);
+         }
+         assertEquals(ofKind.size(), p.count(kinds), kinds.toString());
+         // shared subtrees appear as often in both
+         Map<Node, Integer> unmatched = new IdentityHashMap<Node, Integer>();
+         for (int i = 0; i < ofKind.size(); i++) {
+            assertSame(ofKind.get(i), p.nodeAt(kinds, i));
+            Node n = p.anyOf(kinds, i);
+            // in preorder within a kind, in any order across kinds
+            if (kinds.size() == 1) assertSame(ofKind.get(i), n);
+            unmatched.merge(ofKind.get(i), 1, Integer::sum);
+            unmatched.merge(n, -1, Integer::sum);
+         }
+         for (int u : unmatched.values()) assertEquals(0, u);
+      }
+   }
+
+   @Test
+   public void testIndexMatchesTree() {
+      // mutating interned programs through clones, and one program in place
+      for (boolean inPlace : new boolean[] {false, true}) {
+         ProgramImpl p = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(PROGRAM));
+         if (!inPlace) p = Interner.intern(p);
+         assertIndexMatchesTree(p);
+         SplittableRandom r = new SplittableRandom(7);
+         for (int i = 0; i < 300; i++) {
+            ProgramImpl c = inPlace ? p : (ProgramImpl) p.clone();
+            if (i % 2 == 0) c.mutate(r);
+            else c.mutate(r.nextInt(c.size()), MutationFactory.getMutation(r.nextInt(6)));
+            assertIndexMatchesTree(c);
+            if (!inPlace) {
+               p = Interner.intern(c);
+               assertIndexMatchesTree(p);
+            }
+         }
+      }
+   }
+}
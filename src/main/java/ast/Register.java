@@ -18,6 +18,11 @@ public class Register extends Expr {
 	   return abbrev;
    }
 
+   @Override
+   Object attribute() {
+      return abbrev;
+   }
+
    /**
     * Constructor for registers specified by mem[expr]
     * @param expr the index expression
@@ -17,6 +17,11 @@ public class Relation extends Condition {
    public TokenType getRelOp() {
 	   return rel;
    }
+
+   @Override
+   Object attribute() {
+      return rel;
+   }
    
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
@@ -1,7 +1,6 @@
 package ast;
 
 import java.util.List;
-import java.util.Random;
 
 import ast.Action;
 import ast.BinaryCondition;
@@ -19,9 +18,7 @@ import ast.Update;
  * a rule node is simply removed, while a binary operation node would be
  * replaced with either its left or its right child.
  */
-public class RemoveMutation implements Mutation {
-   
-   Random rand = new Random();
+public class RemoveMutation extends MutationImpl {
 
    @Override
    public boolean equals(Mutation m) {
@@ -1,7 +1,7 @@
 package ast;
 
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Random;
 
 import ast.Node;
 import ast.Program;
@@ -14,8 +14,6 @@ import ast.Program;
  * selected node is copied.
  */
 public class ReplaceMutation extends MutationImpl {
-   
-   Random rand = new Random();
 
    @Override
    public boolean equals(Mutation m) {
@@ -24,7 +22,7 @@ public class ReplaceMutation extends MutationImpl {
 
    @Override
    public boolean apply(Node node) {
-      Node n = getSimilar(node, m -> m.getClass() == node.getClass());
+      Node n = getSimilar(node, EnumSet.of(NodeKind.of(node)));
       if (n == null) return false;
       n = (Node)n.clone();
       Node parent = node.getParent();
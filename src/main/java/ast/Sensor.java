@@ -17,6 +17,11 @@ public class Sensor extends Expr {
    public TokenType getSensorType() {
 	   return type;
    }
+
+   @Override
+   Object attribute() {
+      return type;
+   }
    
    @Override
    public StringBuilder prettyPrint(StringBuilder sb) {
@@ -1,7 +1,6 @@
 package ast;
 
 import java.util.List;
-import java.util.Random;
 
 import ast.Action;
 import ast.Node;
@@ -14,7 +13,7 @@ import ast.Update;
  * this allows swapping the positions of two rules, or changing
  * a - b to b - a.
  */
-public class SwapMutation implements Mutation {
+public class SwapMutation extends MutationImpl {
 
    @Override
    public boolean equals(Mutation m) {
@@ -28,7 +27,6 @@ public class SwapMutation implements Mutation {
                && children.get(children.size() - 1) instanceof Action;
       int range = hasAction ? children.size() - 1 : children.size();
       if (range <= 1) return false; // not enough to swap
-      Random rand = new Random();
       int i = rand.nextInt(range);
       int j = rand.nextInt(range);
       while (j == i) j = rand.nextInt(range);
@@ -1,6 +1,5 @@
 package ast;
 
-import java.util.Random;
 
 import ast.Action;
 import ast.BinaryCondition;
@@ -17,11 +16,9 @@ import parse.TokenType;
  * (for example, replacing attack with eat, or + with *), but its
  * children remain the same. Literal integer constants are adjusted
  * up or down by the value of java.lang.Integer.MAX_VALUE/r.nextInt(),
- * where legal, and where r is a java.util.Random object.
+ * where legal, and where r is the generator the mutation is applied with.
  */
-public class TransformMutation implements Mutation {
-   
-   Random rand = new Random();
+public class TransformMutation extends MutationImpl {
 
    @Override
    public boolean equals(Mutation m) {
@@ -107,116 +107,10 @@ public class Console {
 	 * @param fileName
 	 */
 	public void loadWorld(String fileName) {
-		String name = null;
 		try {
-			File f = new File(fileName);
-			String parent = f.getAbsoluteFile().getParent();
-			FileReader r = new FileReader(f);
-			lnr = new LineNumberReader(r);
-			for (String line = lnr.readLine(); line != null; line = lnr.readLine()) {
-				try {
-					String[] tokens = line.split("\\h+");
-					if (tokens.length < 1) continue;
-					line = tokens[0].trim();
-					if(line.equals("") || line.startsWith("//")) continue;
-					switch (line) {
-					case "rock":
-						if (tokens.length != 3) {
-							warning("Invalid rock placement");
-							break;
-						}
-						Hex h = checkOccupancy(tokens[1], tokens[2]);
-						if (h == null) break;
-						w.getHexAt(h.getCol(), h.getRow()).isRock = true;
-						break;
-					case "food":
-						if (tokens.length != 4) {
-							warning("Invalid food placement info");
-							break;
-						}
-						h = checkOccupancy(tokens[1], tokens[2]);
-						if (h == null) break;
-						try {
-							int amt = Integer.parseInt(tokens[3]);
-							if (amt < 1) {
-								warning("Food amount must be positive");
-								break;
-							}
-							w.getHexAt(h.getCol(), h.getRow()).add(new Food(amt, w));
-						} catch (NumberFormatException e) {
-							warning("Invalid food amount");
-						}
-						break;
-					case "size":
-						if (maxColumn >= 1 || maxRow >= 1) {
-							warning("Duplicate world size");
-							break;
-						}
-						if (tokens.length != 3) {
-							warning("Invalid world size info", "using defaults");
-							maxColumn = Constants.columns;
-							maxRow = Constants.rows;
-							break;
-						}
-						try {
-							maxColumn = Integer.parseInt(tokens[1]);
-							maxRow = Integer.parseInt(tokens[2]);
-							if (maxColumn < 1 || maxRow < 1) {
-								warning("World dimensions must be positive", "using defaults");
-								maxColumn = Constants.columns;
-								maxRow = Constants.rows;
-							}
-						} catch (NumberFormatException e) {
-							warning("Invalid world size info", "using defaults");
-							maxColumn = Constants.columns;
-							maxRow = Constants.rows;
-						}
-						w = new World(name, maxColumn, maxRow);
-						break;
-					case "critter":
-						if (tokens.length != 5) {
-							warning("Invalid critter info");
-							break;
-						}
-						String critFileName = parent + File.separator + tokens[1];
-						h = checkOccupancy(tokens[2], tokens[3]);
-						if (h == null) break;
-						int dir = 0;
-						try {
-							dir = Integer.parseInt(tokens[4]);
-						} catch (NumberFormatException e) {
-							warning("Invalid critter direction", "using default");
-						}
-						try (Reader cr = new FileReader(critFileName)){
-							Critter c = loadCritterFile(cr, h, dir);
-							w.getHexAt(h.getCol(), h.getRow()).add(c);
-						} catch (FileNotFoundException e) {
-							throw new InitializationError("File not found: " + critFileName);
-						} catch (InitializationError ie) {
-							warning("Errors reading critter file " + critFileName);
-						}
-						break;
-					case "name":
-						if (name != null) {
-							warning("Duplicate name");
-							break;
-						}
-						name = "";
-						for (int i = 1; i < tokens.length; i++) {
-							name += tokens[i].trim() + " ";
-						}
-						name = name.trim();
-						break;
-					default:
-						throw new InitializationError("Invalid world file format at line " + 
-								lnr.getLineNumber());
-					}
-				} catch (NumberFormatException e) {
-					throw new InitializationError("Expected a number at line " + lnr.getLineNumber());
-				} catch (SimulationException e) {
-					throw new InitializationError("Invalid location at line " + lnr.getLineNumber());
-				}		
-			}
+			w = new WorldLoader().loadWorld(new File(fileName));
+			maxColumn = w.getCols();
+			maxRow = w.getRows();
 		} catch (FileNotFoundException e) {
 			out.println("World file " + fileName + " not found");
 		} catch (IOException e) {
@@ -243,7 +137,7 @@ public class Console {
 						int row = in.nextInt();
 						if (w.getHexAt(col, row) != null
 								&& w.getHexAt(col, row).getStatus() == 0)
-							w.getHexAt(col, row).isRock = true;
+							w.getHexAt(col, row).setRock(true);
 					}
 					else if (category.equals("food")) {
 						int col = in.nextInt();
@@ -278,51 +172,7 @@ public class Console {
 	}
 
 	public Critter loadCritterFile(Reader r, Hex h, int dir) throws IOException {
-		String name = "";
-		
-		String[] fileFormat = new String[] {
-				"memsize", "defense", "offense", "size", "energy", "posture" };
-		
-		int[] values = { 8, 1, 1, 1, 1, 0 }; // default values
-		
-		clnr = new LineNumberReader(r);
-		
-		for (int i = 0; i < fileFormat.length; i++) {
-			String line = nextLine();
-			if (i == 0 && line.startsWith("species:")) {
-				name = line.substring(8).trim();
-				line = nextLine();
-			}
-			String s = fileFormat[i];
-			if (!line.startsWith(s + ":")) error("Expected " + s);
-			try {
-				line = line.substring(s.length() + 1).trim();
-				values[i] = Integer.parseInt(line);
-				if (values[i] < 0) error("Value must be positive");
-			} catch (NumberFormatException e) {
-				error("Expected action number");
-			}
-		}
-		
-		Parser parser = ParserFactory.getParser();
-		Program prog = parser.parse(clnr);
-		if (prog == null) error("Could not parse critter program");
-		
-		//check consistency of values
-		if (values[0] < Constants.minMemory) error("Memory length too small");
-		int[] mem = new int[values[0]];
-		if (values[5] > Constants.maxPosture) error("Posture value too large");
-		mem[0] = values[0];
-		mem[1] = values[1];
-		mem[2] = values[2];
-		mem[3] = values[3];
-		mem[4] = values[4];
-		mem[5] = 1;
-		mem[6] = 0;
-		mem[7] = values[5];
-		Critter c = new Critter(name, h, dir, mem, (ProgramImpl) prog);
-		
-		return c;
+		return new WorldLoader().loadCritterFile(r, h, dir);
 		
 		/*
 		try {
@@ -380,17 +230,7 @@ public class Console {
 				out.println("Please initialize world.");
 				return;
 			}
-			for (int ix = 0; ix < n; ix++) {
-				int col, row;
-				do {
-					col = ((new Random()).nextInt(w.getCols() - 1));
-					row = ((new Random()).nextInt(w.getRows() - 1));
-				} while (!(w.getHexAt(col, row) != null && 
-						w.getHexAt(col, row).getStatus() == 0));
-				Critter c = loadCritterFile(new FileReader(fileName), w.getHexAt(col, row) , 
-						((new Random()).nextInt(6)));
-				/*w.getHexAt(col, row).add(c);*/
-			}
+			new WorldLoader().loadCritters(w, new File(fileName), n);
 		} catch (FileNotFoundException e) {
 			System.out.println("Critter file " + fileName + " not found.");
 		} catch (InitializationError e) {
@@ -425,7 +265,7 @@ public class Console {
 			return;
 		}
 		System.out.println(w.toString());
-		worldInfo(w.getTime(), w.getCritters().size());
+		worldInfo(w.getTime(), w.getCritterCount());
 	}
 
 	/**
@@ -525,47 +365,6 @@ public class Console {
 		return w;
 	}
 
-	private void warning(String message, String resolution) {
-		System.err.println(message + " at line " + lnr.getLineNumber() + " -- " + resolution);
-	}
-
-	private void warning(String message) {
-		warning(message, "ignoring");
-	}
-
-	private Hex checkOccupancy(String c, String r) {
-		try {
-			int col = Integer.parseInt(c);
-			int row = Integer.parseInt(r);
-			if (w.getHexAt(col, row) != null
-					&& w.getHexAt(col, row).getStatus() == 0) {
-				Hex loc = new Hex(col, row, false, w);
-				return loc;
-			}
-			else {
-				warning("Cell is already occupied");
-				return null;
-			}
-		} catch (NumberFormatException e) {
-			warning("Illegal location " + c + " " + r);
-			return null;
-		}
-	}
-	
-	private String nextLine() throws IOException {
-	      String line = clnr.readLine();
-	      while (true) {
-	    	 if (line == null) error("Unexpected end of file");
-	         line = line.trim();
-	         if (line.length() > 0 && !line.startsWith("//")) return line;
-	         line = clnr.readLine();
-	      }
-	   }
-	
-	private void error(String message) {
-		   throw new InitializationError(message + " at line " + clnr.getLineNumber());
-	   }
-
 	public static void main(String[] args) {
 		Console console = new Console();
 		while (!console.done) {
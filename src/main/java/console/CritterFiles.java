@@ -0,0 +1,147 @@
+package console;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import console.WorldLoader.CritterFile;
+import exceptions.InitializationError;
+
+/**
+ * Critter files already read, so that each is parsed once however many
+ * critters, world files or loaders use it. Files are looked up by path and
+ * by a hash of their contents, so a file that has changed since it was
+ * read is read again. A malformed file is remembered too, so it is parsed,
+ * and its errors printed, only once. Distinct files can be read in
+ * parallel with {@link #readAll}.
+ *
+ * Only the files used most recently are kept, so long runs over many
+ * worlds don't hold on to every file they have read.
+ */
+public final class CritterFiles {
+
+	/** The number of files kept by default. */
+	static final int CAPACITY = 256;
+
+	private static final CritterFiles shared = new CritterFiles();
+
+	/**
+	 * A file as last read: the hash of its contents and what it says, or
+	 * what is wrong with it.
+	 */
+	private static final class Entry {
+		final byte[] digest;
+		final CritterFile file;
+		final InitializationError error;
+
+		Entry(byte[] digest, CritterFile file, InitializationError error) {
+			this.digest = digest;
+			this.file = file;
+			this.error = error;
+		}
+	}
+
+	private final Map<File, Entry> entries;
+
+	/**
+	 * Make a cache keeping the {@link #CAPACITY} files used most recently.
+	 */
+	public CritterFiles() {
+		this(CAPACITY);
+	}
+
+	/**
+	 * Make a cache keeping the {@code capacity} files used most recently.
+	 */
+	CritterFiles(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+		entries = Collections.synchronizedMap(new LinkedHashMap<File, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<File, Entry> eldest) {
+				return size() > capacity;
+			}
+		});
+	}
+
+	/**
+	 * The cache used by every {@link WorldLoader}.
+	 */
+	public static CritterFiles shared() {
+		return shared;
+	}
+
+	/**
+	 * Read critter file {@code f}, or find it already read if its contents
+	 * haven't changed.
+	 *
+	 * @throws FileNotFoundException if the file doesn't exist
+	 * @throws IOException if the file can't be read
+	 * @throws InitializationError if the file is malformed; the same error
+	 * for as long as the file stays the same
+	 */
+	public CritterFile get(File f) throws IOException {
+		File key = f.getAbsoluteFile();
+		byte[] contents;
+		try (InputStream in = new FileInputStream(key)) {
+			contents = in.readAllBytes();
+		}
+		byte[] digest = digest(contents);
+		Entry e = entries.get(key);
+		if (e == null || !Arrays.equals(e.digest, digest)) {
+			String text = new String(contents, Charset.defaultCharset()); // as a FileReader decodes
+			try {
+				e = new Entry(digest, WorldLoader.parseCritterFile(new StringReader(text)), null);
+			} catch (InitializationError ie) {
+				e = new Entry(digest, null, ie);
+			}
+			entries.put(key, e);
+		}
+		if (e.error != null) throw e.error;
+		return e.file;
+	}
+
+	/**
+	 * Read critter files {@code files}, the distinct ones in parallel.
+	 * Files that can't be read or are malformed are left out; {@link #get}
+	 * reports what is wrong with them, without parsing them again.
+	 *
+	 * @return what the files read say, by file
+	 */
+	public Map<File, CritterFile> readAll(Collection<File> files) {
+		Map<File, CritterFile> read = new ConcurrentHashMap<File, CritterFile>();
+		new LinkedHashSet<File>(files).parallelStream().forEach(f -> {
+			try {
+				read.put(f, get(f));
+			} catch (IOException | InitializationError e) {
+				// reported when the file is used
+			}
+		});
+		return new HashMap<File, CritterFile>(read);
+	}
+
+	/**
+	 * Forget every file read.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	private static byte[] digest(byte[] contents) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(contents);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform has SHA-256
+		}
+	}
+}
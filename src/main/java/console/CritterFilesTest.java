@@ -0,0 +1,165 @@
+package console;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import ast.ProgramImpl;
+import console.WorldLoader.CritterFile;
+import exceptions.InitializationError;
+import interpret.Critter;
+import interpret.World;
+
+class CritterFilesTest {
+
+	static final String CRITTER = "species: a\nmemsize: 9\ndefense: 1\noffense: 1\n"
+			+ "size: 1\nenergy: 500\nposture: 0\nENERGY > 100 --> eat;\n1 = 1 --> wait;\n";
+
+	private static void delete(Path dir) {
+		for (File f : dir.toFile().listFiles()) f.delete();
+		dir.toFile().delete();
+	}
+
+	@Test
+	public void testGetReadsOnce() throws IOException {
+		Path dir = Files.createTempDirectory("critters");
+		try {
+			Path critter = dir.resolve("a.txt");
+			Files.writeString(critter, CRITTER);
+			CritterFiles files = new CritterFiles();
+			CritterFile cf = files.get(critter.toFile());
+			assertEquals("a", cf.species);
+			assertSame(cf, files.get(critter.toFile()));
+			assertSame(cf, files.get(critter.toAbsolutePath().toFile()));
+
+			// a changed file is read again
+			Files.writeString(critter, CRITTER.replace("100", "200"));
+			CritterFile changed = files.get(critter.toFile());
+			assertNotSame(cf, changed);
+			assertTrue(changed.program.toString().contains("ENERGY > 200"));
+			assertSame(changed, files.get(critter.toFile()));
+
+			files.clear();
+			assertNotSame(changed, files.get(critter.toFile()));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testReadAllLeavesOutBadFiles() throws IOException {
+		Path dir = Files.createTempDirectory("critters");
+		try {
+			File good = dir.resolve("a.txt").toFile();
+			Files.writeString(good.toPath(), CRITTER);
+			File bad = dir.resolve("bad.txt").toFile();
+			Files.writeString(bad.toPath(), "species: bad\nmemsize: nine\n");
+			File missing = dir.resolve("missing.txt").toFile();
+			CritterFiles files = new CritterFiles();
+			Map<File, CritterFile> read = files.readAll(List.of(good, bad, missing, good));
+			assertEquals(1, read.size());
+			assertSame(files.get(good), read.get(good));
+			assertThrows(InitializationError.class, () -> files.get(bad));
+			assertThrows(FileNotFoundException.class, () -> files.get(missing));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testMalformedFileParsedOnce() throws IOException {
+		Path dir = Files.createTempDirectory("critters");
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		try {
+			File bad = dir.resolve("bad.txt").toFile();
+			Files.writeString(bad.toPath(), CRITTER.replace("--> eat;", "--> eat eat;"));
+			Files.writeString(dir.resolve("world.txt"), "name broken\nsize 10 12\n"
+					+ "critter bad.txt 1 1 0\ncritter bad.txt 3 3 1\n");
+			System.setOut(new PrintStream(printed, true));
+			CritterFiles files = new CritterFiles();
+			assertTrue(files.readAll(List.of(bad)).isEmpty());
+			InitializationError e = assertThrows(InitializationError.class, () -> files.get(bad));
+			assertSame(e, assertThrows(InitializationError.class, () -> files.get(bad)));
+			new WorldLoader(5, new PrintStream(new ByteArrayOutputStream()))
+					.loadWorld(dir.resolve("world.txt").toFile());
+			System.setOut(stdout);
+			// once for files, once for the shared cache of the loader
+			assertEquals(2, printed.toString().split("Syntax error", -1).length - 1, printed.toString());
+
+			// a fixed file is read again
+			Files.writeString(bad.toPath(), CRITTER);
+			assertEquals("a", files.get(bad).species);
+		} finally {
+			System.setOut(stdout);
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testKeepsRecentFiles() throws IOException {
+		Path dir = Files.createTempDirectory("critters");
+		try {
+			File[] fs = new File[3];
+			for (int i = 0; i < 3; i++) {
+				fs[i] = dir.resolve(i + ".txt").toFile();
+				Files.writeString(fs[i].toPath(), CRITTER);
+			}
+			CritterFiles files = new CritterFiles(2);
+			CritterFile a = files.get(fs[0]);
+			CritterFile b = files.get(fs[1]);
+			assertSame(a, files.get(fs[0]));
+			files.get(fs[2]); // the least recently used, fs[1], is dropped
+			assertSame(a, files.get(fs[0]));
+			assertNotSame(b, files.get(fs[1]));
+		} finally {
+			delete(dir);
+		}
+	}
+
+	@Test
+	public void testLoadersShareFiles() throws IOException {
+		Path dir = Files.createTempDirectory("critters");
+		try {
+			Path critter = dir.resolve("a.txt");
+			Files.writeString(critter, CRITTER);
+			Path world = dir.resolve("world.txt");
+			Files.writeString(world, "name cached\nsize 10 12\n"
+					+ "critter a.txt 1 1 0\ncritter a.txt 3 3 1\ncritter a.txt 5 5 2\n");
+			World w = new WorldLoader(5, System.err).loadWorld(world.toFile());
+			List<Critter> cs = w.getCritters();
+			assertEquals(3, cs.size());
+			ProgramImpl p = cs.get(0).getState().getProgram();
+			for (Critter c : cs) assertSame(p, c.getState().getProgram());
+
+			new WorldLoader(6, System.err).loadCritters(w, critter.toFile(), 2);
+			assertEquals(5, w.getCritterCount());
+			for (Critter c : w.getCritters()) assertSame(p, c.getState().getProgram());
+
+			// a changed file is read again
+			Files.writeString(critter, CRITTER.replace("100", "200"));
+			new WorldLoader(7, System.err).loadCritters(w, critter.toFile(), 1);
+			int changed = 0;
+			for (Critter c : w.getCritters()) {
+				ProgramImpl q = c.getState().getProgram();
+				if (q != p) {
+					changed++;
+					assertTrue(q.toString().contains("ENERGY > 200"));
+				}
+			}
+			assertEquals(1, changed);
+		} finally {
+			delete(dir);
+		}
+	}
+}
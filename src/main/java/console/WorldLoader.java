@@ -0,0 +1,401 @@
+package console;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import ast.Interner;
+import ast.Program;
+import ast.ProgramImpl;
+import exceptions.InitializationError;
+import exceptions.SimulationException;
+import interpret.Critter;
+import interpret.Food;
+import interpret.Hex;
+import interpret.RandomStream;
+import interpret.World;
+import model.Constants;
+import parse.Parser;
+import parse.ParserFactory;
+
+/**
+ * Reads world files and critter files. Each loader keeps its own state,
+ * so several can load worlds at the same time on different threads.
+ * Problems that can be worked around are reported as warnings on the
+ * loader's warning stream; others throw an {@link InitializationError}.
+ */
+public class WorldLoader {
+	private final long seed;
+	private final PrintStream err;
+	private World w;
+	private LineNumberReader lnr;
+
+	/**
+	 * Make a loader whose worlds get random seeds.
+	 */
+	public WorldLoader() {
+		this(new SplittableRandom().nextLong(), System.err);
+	}
+
+	/**
+	 * Make a loader whose worlds are seeded with {@code seed}.
+	 * @param seed: the seed of the worlds loaded
+	 * @param err: where to report warnings
+	 */
+	public WorldLoader(long seed, PrintStream err) {
+		this.seed = seed;
+		this.err = err;
+	}
+
+	/**
+	 * Load the world described by a world file. Critter files named in it
+	 * are looked up next to it, and read, in parallel, before any critter is
+	 * placed; each is read once, however many critters it describes. A
+	 * world file without a size gives a world of the default size.
+	 *
+	 * @param f: the world file
+	 * @return the world
+	 * @throws FileNotFoundException if the world file doesn't exist
+	 * @throws IOException if the world file can't be read
+	 * @throws InitializationError if the world file is malformed
+	 */
+	public World loadWorld(File f) throws IOException {
+		w = null;
+		String name = null;
+		int maxColumn = 0;
+		int maxRow = 0;
+		String parent = f.getAbsoluteFile().getParent();
+		Map<File, CritterFile> critterFiles = CritterFiles.shared().readAll(critterFilesOf(f, parent));
+		try (FileReader r = new FileReader(f)) {
+			lnr = new LineNumberReader(r);
+			for (String line = lnr.readLine(); line != null; line = lnr.readLine()) {
+				try {
+					String[] tokens = line.split("\\h+");
+					if (tokens.length < 1) continue;
+					line = tokens[0].trim();
+					if(line.equals("") || line.startsWith("//")) continue;
+					switch (line) {
+					case "rock":
+						if (tokens.length != 3) {
+							warning("Invalid rock placement");
+							break;
+						}
+						Hex h = checkOccupancy(name, tokens[1], tokens[2]);
+						if (h == null) break;
+						h.setRock(true);
+						break;
+					case "food":
+						if (tokens.length != 4) {
+							warning("Invalid food placement info");
+							break;
+						}
+						h = checkOccupancy(name, tokens[1], tokens[2]);
+						if (h == null) break;
+						try {
+							int amt = Integer.parseInt(tokens[3]);
+							if (amt < 1) {
+								warning("Food amount must be positive");
+								break;
+							}
+							h.add(new Food(amt, w));
+						} catch (NumberFormatException e) {
+							warning("Invalid food amount");
+						}
+						break;
+					case "size":
+						if (maxColumn >= 1 || maxRow >= 1) {
+							warning("Duplicate world size");
+							break;
+						}
+						if (tokens.length != 3) {
+							warning("Invalid world size info", "using defaults");
+							maxColumn = Constants.columns;
+							maxRow = Constants.rows;
+							break;
+						}
+						try {
+							maxColumn = Integer.parseInt(tokens[1]);
+							maxRow = Integer.parseInt(tokens[2]);
+							if (maxColumn < 1 || maxRow < 1) {
+								warning("World dimensions must be positive", "using defaults");
+								maxColumn = Constants.columns;
+								maxRow = Constants.rows;
+							}
+						} catch (NumberFormatException e) {
+							warning("Invalid world size info", "using defaults");
+							maxColumn = Constants.columns;
+							maxRow = Constants.rows;
+						}
+						w = new World(name, maxColumn, maxRow, seed);
+						break;
+					case "critter":
+						if (tokens.length != 5) {
+							warning("Invalid critter info");
+							break;
+						}
+						String critFileName = parent + File.separator + tokens[1];
+						h = checkOccupancy(name, tokens[2], tokens[3]);
+						if (h == null) break;
+						int dir = 0;
+						try {
+							dir = Integer.parseInt(tokens[4]);
+						} catch (NumberFormatException e) {
+							warning("Invalid critter direction", "using default");
+						}
+						try {
+							CritterFile cf = critterFiles.get(new File(critFileName));
+							if (cf == null) cf = CritterFiles.shared().get(new File(critFileName));
+							Critter c = cf.place(h, dir);
+							h.add(c);
+						} catch (FileNotFoundException e) {
+							throw new InitializationError("File not found: " + critFileName);
+						} catch (InitializationError ie) {
+							warning("Errors reading critter file " + critFileName);
+						}
+						break;
+					case "name":
+						if (name != null) {
+							warning("Duplicate name");
+							break;
+						}
+						name = "";
+						for (int i = 1; i < tokens.length; i++) {
+							name += tokens[i].trim() + " ";
+						}
+						name = name.trim();
+						break;
+					default:
+						throw new InitializationError("Invalid world file format at line " +
+								lnr.getLineNumber());
+					}
+				} catch (NumberFormatException e) {
+					throw new InitializationError("Expected a number at line " + lnr.getLineNumber());
+				} catch (SimulationException e) {
+					throw new InitializationError("Invalid location at line " + lnr.getLineNumber());
+				}
+			}
+		}
+		if (w == null) w = new World(name, Constants.columns, Constants.rows, seed);
+		return w;
+	}
+
+	/**
+	 * The critter files named in world file {@code f}, whose directory is
+	 * {@code parent}.
+	 */
+	private static List<File> critterFilesOf(File f, String parent) throws IOException {
+		List<File> files = new ArrayList<File>();
+		try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+			for (String line = r.readLine(); line != null; line = r.readLine()) {
+				String[] tokens = line.split("\\h+");
+				if (tokens.length == 5 && tokens[0].trim().equals("critter"))
+					files.add(new File(parent + File.separator + tokens[1]));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * What a critter file describes: the species, the initial memory of its
+	 * critters and their program, which is interned and shared by every
+	 * critter made from the file.
+	 */
+	public static final class CritterFile {
+		public final String species;
+		private final int[] mem;
+		public final ProgramImpl program;
+
+		/**
+		 * Describe critters of species {@code species} starting with memory
+		 * {@code mem} and running program {@code program}.
+		 */
+		public CritterFile(String species, int[] mem, ProgramImpl program) {
+			this.species = species;
+			this.mem = mem.clone();
+			this.program = program;
+		}
+
+		/**
+		 * A copy of the initial memory of the critters.
+		 */
+		public int[] memory() {
+			return mem.clone();
+		}
+
+		/**
+		 * The same critters running program {@code p} instead.
+		 */
+		public CritterFile withProgram(ProgramImpl p) {
+			return new CritterFile(species, mem, p);
+		}
+
+		/**
+		 * Place a new critter described by this file.
+		 *
+		 * @param h: the hex to place the critter on
+		 * @param dir: the direction the critter faces
+		 * @return the critter
+		 */
+		public Critter place(Hex h, int dir) {
+			return new Critter(species, h, dir, memory(), program);
+		}
+
+		/**
+		 * The contents of the critter file, which reads back as this one.
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			if (!species.isEmpty()) sb.append("species: ").append(species).append('\n');
+			sb.append("memsize: ").append(mem[0]).append('\n');
+			sb.append("defense: ").append(mem[1]).append('\n');
+			sb.append("offense: ").append(mem[2]).append('\n');
+			sb.append("size: ").append(mem[3]).append('\n');
+			sb.append("energy: ").append(mem[4]).append('\n');
+			sb.append("posture: ").append(mem[7]).append('\n');
+			return program.prettyPrint(sb).toString();
+		}
+	}
+
+	/**
+	 * Read a critter file and place the critter it describes.
+	 *
+	 * @param r: the contents of the critter file
+	 * @param h: the hex to place the critter on
+	 * @param dir: the direction the critter faces
+	 * @return the critter
+	 * @throws IOException if the critter file can't be read
+	 * @throws InitializationError if the critter file is malformed
+	 */
+	public Critter loadCritterFile(Reader r, Hex h, int dir) throws IOException {
+		return readCritterFile(r).place(h, dir);
+	}
+
+	/**
+	 * Read a critter file without placing any critter.
+	 *
+	 * @param r: the contents of the critter file
+	 * @return what the file describes
+	 * @throws IOException if the critter file can't be read
+	 * @throws InitializationError if the critter file is malformed
+	 */
+	public CritterFile readCritterFile(Reader r) throws IOException {
+		return parseCritterFile(r);
+	}
+
+	/**
+	 * Read a critter file, as {@link #readCritterFile} does. Keeps no state,
+	 * so files can be read on several threads at once.
+	 */
+	static CritterFile parseCritterFile(Reader r) throws IOException {
+		String name = "";
+
+		String[] fileFormat = new String[] {
+				"memsize", "defense", "offense", "size", "energy", "posture" };
+
+		int[] values = { 8, 1, 1, 1, 1, 0 }; // default values
+
+		LineNumberReader clnr = new LineNumberReader(r);
+
+		for (int i = 0; i < fileFormat.length; i++) {
+			String line = nextLine(clnr);
+			if (i == 0 && line.startsWith("species:")) {
+				name = line.substring(8).trim();
+				line = nextLine(clnr);
+			}
+			String s = fileFormat[i];
+			if (!line.startsWith(s + ":")) error(clnr, "Expected " + s);
+			try {
+				line = line.substring(s.length() + 1).trim();
+				values[i] = Integer.parseInt(line);
+				if (values[i] < 0) error(clnr, "Value must be positive");
+			} catch (NumberFormatException e) {
+				error(clnr, "Expected action number");
+			}
+		}
+
+		Parser parser = ParserFactory.getParser();
+		Program prog = parser.parse(clnr);
+		if (prog == null) error(clnr, "Could not parse critter program");
+
+		//check consistency of values
+		if (values[0] < Constants.minMemory) error(clnr, "Memory length too small");
+		int[] mem = new int[values[0]];
+		if (values[5] > Constants.maxPosture) error(clnr, "Posture value too large");
+		mem[0] = values[0];
+		mem[1] = values[1];
+		mem[2] = values[2];
+		mem[3] = values[3];
+		mem[4] = values[4];
+		mem[5] = 1;
+		mem[6] = 0;
+		mem[7] = values[5];
+		return new CritterFile(name, mem, Interner.intern((ProgramImpl) prog));
+	}
+
+	/**
+	 * Place {@code n} critters read from a critter file on random empty
+	 * hexes of world {@code w}, facing random directions. The choices are
+	 * derived from the seed of the world. The file is read once, or not at
+	 * all if it has been read before and hasn't changed.
+	 *
+	 * @throws IOException if the critter file can't be read
+	 * @throws InitializationError if the critter file is malformed
+	 */
+	public void loadCritters(World w, File f, int n) throws IOException {
+		RandomStream rand = w.newRandom();
+		CritterFile cf = n > 0 ? CritterFiles.shared().get(f) : null;
+		for (int ix = 0; ix < n; ix++) {
+			int col, row;
+			do {
+				col = rand.nextInt(w.getCols() - 1);
+				row = rand.nextInt(w.getRows() - 1);
+			} while (!(w.getHexAt(col, row) != null &&
+					w.getHexAt(col, row).getStatus() == 0));
+			cf.place(w.getHexAt(col, row), rand.nextInt(6));
+		}
+	}
+
+	private void warning(String message, String resolution) {
+		err.println(message + " at line " + lnr.getLineNumber() + " -- " + resolution);
+	}
+
+	private void warning(String message) {
+		warning(message, "ignoring");
+	}
+
+	private Hex checkOccupancy(String name, String c, String r) {
+		if (w == null) w = new World(name, Constants.columns, Constants.rows, seed);
+		try {
+			int col = Integer.parseInt(c);
+			int row = Integer.parseInt(r);
+			if (w.getHexAt(col, row) != null
+					&& w.getHexAt(col, row).getStatus() == 0) {
+				return w.getHexAt(col, row);
+			}
+			else {
+				warning("Cell is already occupied");
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			warning("Illegal location " + c + " " + r);
+			return null;
+		}
+	}
+
+	private static String nextLine(LineNumberReader clnr) throws IOException {
+		String line = clnr.readLine();
+		while (true) {
+			if (line == null) error(clnr, "Unexpected end of file");
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("//")) return line;
+			line = clnr.readLine();
+		}
+	}
+
+	private static void error(LineNumberReader clnr, String message) {
+		throw new InitializationError(message + " at line " + clnr.getLineNumber());
+	}
+}
@@ -1,5 +1,7 @@
 package gui;
 
+import interpret.Frame;
+import interpret.Simulation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
@@ -19,6 +21,7 @@ public class ControlPane {
 	private final long MAX_FPS = 34L; // 1/30 of a second, or about 33.3 ms
 	private boolean isRunning = false;
 	private Timeline timeline;
+	private Simulation sim; // steps the world while running
 	private ImageView play, pause, step;
 	
 	public ControlPane(Main m) {
@@ -31,7 +34,11 @@ public class ControlPane {
 		m.getPlayButton().setGraphic(play);
 	}
 
-	private void updateTimeline(int speed) {
+	/**
+	 * Make the timeline that redraws the world while it runs.
+	 * The world itself is stepped by the simulation thread.
+	 */
+	private void updateTimeline() {
 		timeline = new Timeline();
 		timeline.getKeyFrames().add(new KeyFrame(Duration.millis(MAX_FPS), 
 						new EventHandler<ActionEvent>() {
@@ -43,14 +50,6 @@ public class ControlPane {
 			
 		}));
 		
-		timeline.getKeyFrames().add(new KeyFrame(Duration.millis(speed), new EventHandler<ActionEvent>() {
-			// for world model updates
-			@Override
-			public void handle(ActionEvent arg0) {
-				m.getWorld().advanceTime();
-			}
-		}));
-		
 		timeline.setCycleCount(Timeline.INDEFINITE);
 	}
 	
@@ -64,14 +63,38 @@ public class ControlPane {
 	}
 	/**
 	 * Update the GUI. This updates the
-	 * world view and world info pane.
+	 * world view and world info pane, from the
+	 * latest frame of the simulation while it runs.
 	 * 
 	 * TODO make this update the hex info pane
 	 */
 	public void updateGUI() {
-		m.getWorldPane().update();
-		m.getWorldInfoPane().update();
-		
+		Frame f = sim == null ? null : sim.pollFrame();
+		if(f != null) {
+			m.getWorldPane().draw(f);
+			m.getWorldInfoPane().update(f.getInfo());
+		}
+		if(!isRunning) {
+			// the world is ours, so read it directly
+			m.getWorldPane().updateChanged();
+			m.getWorldInfoPane().update();
+		}
+	}
+	
+	/**
+	 * Whether the world is being run continuously. While it
+	 * is, the world may only be reached through {@link #getSimulation()}.
+	 */
+	public boolean isRunning() {
+		return isRunning;
+	}
+	
+	/**
+	 * Get the simulation running the world, or null if
+	 * the world hasn't been run yet.
+	 */
+	public Simulation getSimulation() {
+		return sim;
 	}
 	
 	/**
@@ -141,11 +164,13 @@ public class ControlPane {
 		public void handle(ActionEvent ae) {
 			if(isRunning) {
 				// stop
+				sim.pause();
 				timeline.stop();
 				timeline = null;
 				m.getPlayButton().setText("Play");
 				m.getPlayButton().setGraphic(play);
 				isRunning = false;
+				updateGUI();
 
 				// allow speed updates, stepping, world load,
 				// and critter add
@@ -155,8 +180,14 @@ public class ControlPane {
 				if(m.getSpeed() != 0) {
 					// interpreting speed of 0 as no motion
 					m.getPlayButton().setGraphic(pause);
-					updateTimeline(101-m.getSpeed());
+					if(sim == null || sim.getWorld() != m.getWorld()) {
+						// a new world was loaded
+						if(sim != null) sim.stop();
+						sim = new Simulation(m.getWorld());
+					}
+					updateTimeline();
 					timeline.play();
+					sim.run((101-m.getSpeed()) * 1000000L);
 					isRunning = true;
 					
 					// disable controls for speed updates, stepping,
@@ -1,5 +1,8 @@
 package gui;
 
+import interpret.World;
+import javafx.application.Platform;
+
 /**
  * A controller for this GUI's Hex info pane
  *
@@ -23,8 +26,18 @@ public class HexInfoPane {
 	
 	public void update() {
 		if( ( (2*row)- col >= 0) && ( (2*row)- col < (2*m.getWorld().getRows())-m.getWorld().getCols() )) {
-			m.getHexInfo().setText(
-					m.getWorld().getHexAt(col, row).getInfo());
+			ControlPane cp = m.getControlPane();
+			if(cp.isRunning()) {
+				// the simulation thread owns the world, so ask it
+				int c = col, r = row;
+				cp.getSimulation().execute((World w) -> {
+					String info = w.getHexAt(c, r).getInfo();
+					Platform.runLater(() -> m.getHexInfo().setText(info));
+				});
+			} else {
+				m.getHexInfo().setText(
+						m.getWorld().getHexAt(col, row).getInfo());
+			}
 		} else {
 			m.getHexInfo().setText("Click out of bounds");
 		}
@@ -16,7 +16,16 @@ public class WorldInfoPane {
 	 * Update the box containing the world's info.
 	 */
 	public void update() {
-		m.getWorldInfo().setText(m.getWorld().getInfo()
+		update(m.getWorld().getInfo());
+	}
+	
+	/**
+	 * Update the box containing the world's info.
+	 * @param info: the world's info, as of the
+	 * latest frame drawn
+	 */
+	public void update(String info) {
+		m.getWorldInfo().setText(info
 				+ "\n" + "Speed: " + m.getSpeed());
 	}
 	
@@ -1,7 +1,7 @@
 package gui;
 
 import interpret.Critter;
-import interpret.Food;
+import interpret.Frame;
 import interpret.World;
 import javafx.event.EventHandler;
 import javafx.scene.canvas.GraphicsContext;
@@ -27,6 +27,12 @@ public class WorldPane {
 	private final Color NOT_SELECTED = Color.BEIGE;
 	private Image rock, critter, food;
 	
+	// what is drawn on each hex, by col * rows + row, so the
+	// world need not be read while the simulation thread runs it
+	private World shown;
+	private int[] statuses;
+	private String[] species;
+	
 	public double getHexRadius() {
 		return hexRadius;
 	}
@@ -41,13 +47,24 @@ public class WorldPane {
 		origin[1] = 400;
 		lastHex = null;
 		m.getCanvas().setOnMouseClicked(new HexClick());
+		
+		// hexes are placed relative to the canvas size
+		m.getCanvas().widthProperty().addListener(o -> update());
+		m.getCanvas().heightProperty().addListener(o -> update());
 	}
 
 	/**
-	 * Update the appearance of the world.
+	 * Redraw the whole world. This is only needed when the
+	 * world is loaded or the canvas is resized; otherwise use
+	 * {@link #updateChanged()}.
 	 */
-	public synchronized void update() {
-		// TODO make the updates dependent on the world.
+	public void update() {
+		ControlPane cp = m.getControlPane();
+		if(cp == null || !cp.isRunning()) {
+			// everything is redrawn, so forget what changed
+			m.getWorld().takeChangedHexes();
+			load();
+		}
 
 		gc.setStroke(Color.BLACK);
 		gc.setFill(NOT_SELECTED);
@@ -67,6 +84,92 @@ public class WorldPane {
 		
 	}
 
+	/**
+	 * Redraw only the hexes whose contents changed since
+	 * the world was last drawn. This reads the world, so it
+	 * must not be used while the simulation thread runs it;
+	 * use {@link #draw(Frame)} then.
+	 */
+	public void updateChanged() {
+		if(shown != m.getWorld()) {
+			update();
+			return;
+		}
+		World w = m.getWorld();
+		int[] changed = w.takeChangedHexes();
+		
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(1);
+		for(int i = 0; i < changed.length; i += 2) {
+			int col = changed[i];
+			int row = changed[i + 1];
+			record(w, col, row);
+			drawHex(col, row);
+		}
+		gc.setFill(NOT_SELECTED);
+	}
+
+	/**
+	 * Redraw the hexes that changed in a frame of the
+	 * running simulation.
+	 * @param f: the frame to draw
+	 */
+	public void draw(Frame f) {
+		if(shown != m.getWorld()) return; // a frame of a world no longer shown
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(1);
+		int rows = shown.getRows();
+		for(int i = 0; i < f.size(); i++) {
+			int col = f.getCol(i);
+			int row = f.getRow(i);
+			statuses[col*rows + row] = f.getStatus(i);
+			species[col*rows + row] = f.getSpecies(i);
+			drawHex(col, row);
+		}
+		gc.setFill(NOT_SELECTED);
+	}
+
+	/**
+	 * Read what every hex of the world holds.
+	 */
+	private void load() {
+		World w = m.getWorld();
+		shown = w;
+		statuses = new int[w.getCols()*w.getRows()];
+		species = new String[statuses.length];
+		for(int col = 0; col < w.getCols(); col++) {
+			for(int row = 0; row < w.getRows(); row++) {
+				if(2*row-col >= 0 && 2*row-col < 2*w.getRows()-w.getCols()) {
+					record(w, col, row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read what the hex at (col, row) of world w holds.
+	 */
+	private void record(World w, int col, int row) {
+		int i = col*w.getRows() + row;
+		statuses[i] = w.getHexAt(col, row).getStatus();
+		species[i] = statuses[i] > 0
+				? ((Critter) w.getHexAt(col, row).getOccupant()).getState().species
+				: null;
+	}
+
+	/**
+	 * Redraw the hex at (col, row) and its contents.
+	 */
+	private void drawHex(int col, int row) {
+		double x = (col * 3.0/2+1)*hexRadius;
+		double y = m.getCanvas().getHeight()-((SQRT_3*row + 1)*hexRadius - col*SQRT_3/2*hexRadius);
+		
+		boolean selected = lastHex != null && (int)x == lastHex[0] && (int)y == lastHex[1];
+		gc.setFill(selected ? SELECTED : NOT_SELECTED);
+		drawHexagon(x, y, hexRadius);
+		drawContents(x, y);
+	}
+
 	/**
 	 * Handle a click given mouse coordinates.
 	 * @param x: the x-coordinate of the mouse click
@@ -161,9 +264,8 @@ public class WorldPane {
 
 
 	public void drawMap() {
-		World w = m.getWorld();
-		int r = w.getRows();
-		int c = w.getCols();
+		int r = shown.getRows();
+		int c = shown.getCols();
 		
 		double x = 0.0;
 		double y = 0.0;
@@ -230,7 +332,7 @@ public class WorldPane {
 	 * @param x
 	 * @param y
 	 */
-	public synchronized void drawContents(String o, String species, int size, int col, int row, int dir) {
+	public void drawContents(String o, String species, int size, int col, int row, int dir) {
 		//TODO: write direction code, rotate image
 		//TODO: should we make drawContents take in coordinates relative to the ragged 2d array instead of just raw coordinates relative to the canvas? this can happen elsewhere when this method is called
 		//TODO: add functionality to decide what is in the tile (because rock isn't a class). Maybe change World in interpret? for now I'm using string as a parameter
@@ -266,19 +368,20 @@ public class WorldPane {
 		}
 	}
 	
-	public synchronized void drawContents(double x, double y) {
+	public void drawContents(double x, double y) {
 		int hexCol = (int)getCol((int)x);
 		int hexRow = (int)getRow((int)x, (int)y);
-		if( ( (2*hexRow)- hexCol > 0) && ( (2*hexRow)- hexCol < (2*m.getWorld().getRows())-m.getWorld().getCols() )) {
-			int status = m.getWorld().getHexAt(hexCol, hexRow).getStatus();
+		if( ( (2*hexRow)- hexCol > 0) && ( (2*hexRow)- hexCol < (2*shown.getRows())-shown.getCols() )) {
+			// statuses are as in Hex.getStatus()
+			int status = statuses[hexCol*shown.getRows() + hexRow];
 			if(status == -1) {
 				drawContents("Rock", "",0,hexCol,hexRow, 0);
 			} else if (status > 0) {
-				Critter c = (Critter) m.getWorld().getHexAt(hexCol, hexRow).getOccupant();
-				drawContents("Critter", c.getState().species, c.getState().mem(3), hexCol, hexRow,
-						c.getState().facing);
+				// appearance is 100,000 * size + ... + direction
+				drawContents("Critter", species[hexCol*shown.getRows() + hexRow], status / 100000,
+						hexCol, hexRow, status % 10);
 			} else if (status < -1) {
-				drawContents("Food", "", ((Food)m.getWorld().getHexAt(hexCol, hexRow).getOccupant()).getValue(), hexCol, hexRow, 0);
+				drawContents("Food", "", -status - 1, hexCol, hexRow, 0);
 			}
 		}
 
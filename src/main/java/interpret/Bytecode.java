@@ -0,0 +1,125 @@
+package interpret;
+
+import ast.Action;
+import ast.ProgramImpl;
+import ast.Rule;
+
+/**
+ * A critter program compiled to a flat array of integer instructions for
+ * a stack machine (see {@link VirtualMachine}).
+ *
+ * The code for rule {@code i} starts at {@code ruleStart[i]} and runs
+ * until it either performs an action ({@code ACT}, whose operand indexes
+ * {@code actions}) or finishes the rule without one ({@code NEXT}).
+ * Instructions that take an operand are followed by it in the array.
+ */
+public final class Bytecode {
+
+	// stack effects are written as (before -- after)
+	static final int PUSH = 0;    // operand k: ( -- k)
+	static final int LOAD = 1;    // (i -- mem[i]), 0 if i >= MEMSIZE
+	static final int LOADK = 2;   // operand i: ( -- mem[i]), syntactic sugar
+	static final int NEARBY = 3;  // (n -- nearby[n])
+	static final int AHEAD = 4;   // (n -- ahead[n])
+	static final int RANDOM = 5;  // (n -- random[n])
+	static final int SMELL = 6;   // ( -- smell)
+	static final int ADD = 7;     // (a b -- a+b)
+	static final int SUB = 8;     // (a b -- a-b)
+	static final int MUL = 9;     // (a b -- a*b)
+	static final int DIV = 10;    // (a b -- a/b), 0 if b = 0
+	static final int MOD = 11;    // (a b -- a mod b), 0 if b = 0
+	static final int NEG = 12;    // (a -- -a)
+	static final int LT = 13;     // (a b -- a<b)
+	static final int LE = 14;     // (a b -- a<=b)
+	static final int EQ = 15;     // (a b -- a=b)
+	static final int GE = 16;     // (a b -- a>=b)
+	static final int GT = 17;     // (a b -- a>b)
+	static final int NE = 18;     // (a b -- a!=b)
+	static final int JFALSE = 19; // operand t: (c -- ), jump to t if c = 0
+	static final int JFALSE_OR_POP = 20; // operand t: (c -- c) and jump if c = 0, else (c -- )
+	static final int JTRUE_OR_POP = 21;  // operand t: (c -- c) and jump if c != 0, else (c -- )
+	static final int STORE = 22;  // (v i -- ), mem[i] := v unless i >= MEMSIZE
+	static final int POSTURE = 23; // (v -- ), POSTURE := v if 0 <= v <= 99
+	static final int POP = 24;    // (v -- ), update of a read-only register
+	static final int ACT = 25;    // operand a: end the turn with actions[a]
+	static final int NEXT = 26;   // end the rule without an action
+
+	final int[] code;
+	final int[] ruleStart;
+	final Rule[] rules;
+	final Action[] actions;
+	final int[] actionRule; // index of the rule containing each action
+	final Result[] results; // the result of performing each action
+	final int maxStack;
+	final int version; // version of the program this was compiled from
+
+	// tiering state: after JIT_THRESHOLD turns the program is compiled to
+	// a JVM class. Races on the counter only delay compilation a little.
+	static final int JIT_THRESHOLD = 1000;
+	int executions;
+	private volatile CompiledProgram jitted;
+	private boolean jitFailed;
+
+	Bytecode(int[] code, int[] ruleStart, Rule[] rules, Action[] actions,
+			int[] actionRule, int maxStack, int version) {
+		this.code = code;
+		this.ruleStart = ruleStart;
+		this.rules = rules;
+		this.actions = actions;
+		this.actionRule = actionRule;
+		results = new Result[actions.length];
+		for (int i = 0; i < actions.length; i++)
+			results[i] = new Result(rules[actionRule[i]], actions[i]);
+		this.maxStack = maxStack;
+		this.version = version;
+	}
+
+	/**
+	 * Get the compiled form of program {@code p}, compiling it if it has
+	 * never been compiled or has been modified since it last was.
+	 *
+	 * @param p the program to compile
+	 * @return the bytecode for {@code p}
+	 */
+	public static Bytecode of(ProgramImpl p) {
+		Object cached = p.getCompiled();
+		if (cached instanceof Bytecode
+				&& ((Bytecode) cached).version == p.getVersion())
+			return (Bytecode) cached;
+		Bytecode b = new BytecodeCompiler().compile(p);
+		p.setCompiled(b);
+		return b;
+	}
+
+	/**
+	 * Get the JIT-compiled form of this program, compiling it if the
+	 * program has become hot.
+	 *
+	 * @return the compiled program, or {@code null} if the program is still
+	 *         cold or could not be compiled
+	 */
+	CompiledProgram jit() {
+		CompiledProgram j = jitted;
+		if (j == null && !jitFailed && ++executions >= JIT_THRESHOLD)
+			j = compileJit();
+		return j;
+	}
+
+	private synchronized CompiledProgram compileJit() {
+		if (jitted == null && !jitFailed) {
+			try {
+				jitted = new JitCompiler(this).compile();
+			} catch (RuntimeException | LinkageError e) {
+				jitFailed = true; // stay in the bytecode interpreter
+			}
+		}
+		return jitted;
+	}
+
+	/**
+	 * The number of rules in the compiled program.
+	 */
+	public int numRules() {
+		return rules.length;
+	}
+}
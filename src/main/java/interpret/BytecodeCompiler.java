@@ -0,0 +1,211 @@
+package interpret;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ast.*;
+import ast.Number;
+import parse.TokenType;
+
+import static interpret.Bytecode.*;
+
+/**
+ * Translates the AST of a critter program into {@link Bytecode}. The
+ * generated code evaluates expressions and conditions in exactly the
+ * order the tree-walking {@link Interpreter} does, including the
+ * short-circuiting of {@code and} and {@code or}.
+ */
+class BytecodeCompiler {
+
+	private int[] code = new int[64];
+	private int length;
+	private int depth; // current operand stack depth
+	private int maxDepth;
+	private final List<Action> actions = new ArrayList<>();
+	private final List<Integer> actionRule = new ArrayList<>();
+	private int currentRule;
+
+	/**
+	 * Compile program {@code p}.
+	 *
+	 * @param p the program to compile
+	 * @return the compiled program
+	 */
+	Bytecode compile(ProgramImpl p) {
+		List<Node> children = p.getChildren();
+		Rule[] rules = new Rule[children.size()];
+		int[] ruleStart = new int[rules.length];
+		for (int i = 0; i < rules.length; i++) {
+			rules[i] = (Rule) children.get(i);
+			ruleStart[i] = length;
+			currentRule = i;
+			rule(rules[i]);
+		}
+		int[] ruleOf = new int[actionRule.size()];
+		for (int i = 0; i < ruleOf.length; i++) ruleOf[i] = actionRule.get(i);
+		return new Bytecode(Arrays.copyOf(code, length), ruleStart, rules,
+				actions.toArray(new Action[0]), ruleOf, Math.max(maxDepth, 1),
+				p.getVersion());
+	}
+
+	private void rule(Rule r) {
+		condition((Condition) r.fst());
+		int skip = jump(JFALSE);
+		boolean acted = false;
+		for (Node n : r.snd().getChildren()) {
+			if (n instanceof Update) {
+				update((Update) n);
+			} else if (n instanceof Action) {
+				emit(ACT, actions.size());
+				actions.add((Action) n);
+				actionRule.add(currentRule);
+				acted = true;
+				break;
+			}
+		}
+		if (!acted) emit(NEXT);
+		patch(skip);
+		emit(NEXT);
+	}
+
+	private void condition(Condition c) {
+		if (c instanceof Relation) {
+			Relation r = (Relation) c;
+			expr((Expr) r.fst());
+			expr((Expr) r.snd());
+			switch (r.getRelOp()) {
+			case LT: pop(LT); break;
+			case LE: pop(LE); break;
+			case EQ: pop(EQ); break;
+			case GE: pop(GE); break;
+			case GT: pop(GT); break;
+			case NE: pop(NE); break;
+			default:
+				throw new IllegalStateException("Invalid Relational Operator");
+			}
+		} else if (c instanceof BinaryCondition) {
+			TokenType op = ((BinaryCondition) c).getBinaryOp();
+			if (op != TokenType.AND && op != TokenType.OR)
+				throw new IllegalStateException("Invalid Condition");
+			condition((Condition) c.fst());
+			int end = jump(op == TokenType.AND ? JFALSE_OR_POP : JTRUE_OR_POP);
+			condition((Condition) c.snd());
+			patch(end);
+		} else {
+			throw new IllegalStateException("Invalid Condition");
+		}
+	}
+
+	private void expr(Expr e) {
+		if (e instanceof BinaryExpression) {
+			expr((Expr) e.fst());
+			expr((Expr) e.snd());
+			switch (((BinaryExpression) e).getOp()) {
+			case PLUS: pop(ADD); break;
+			case MINUS: pop(SUB); break;
+			case MUL: pop(MUL); break;
+			case DIV: pop(DIV); break;
+			case MOD: pop(MOD); break;
+			default:
+				throw new IllegalStateException("Invalid Operator");
+			}
+		} else if (e instanceof Number) {
+			push(PUSH, ((Number) e).getValue());
+		} else if (e instanceof Register) {
+			Register reg = (Register) e;
+			if (reg.getAbbrev() != null) {
+				push(LOADK, sugarIndex(reg.getAbbrev()));
+			} else {
+				expr((Expr) reg.fst());
+				emit(LOAD);
+			}
+		} else if (e instanceof Sensor) {
+			Sensor s = (Sensor) e;
+			if (s.getSensorType() == TokenType.SMELL) {
+				push(SMELL);
+				return;
+			}
+			if (s.hasChildren()) expr((Expr) s.fst());
+			else push(PUSH, 0);
+			switch (s.getSensorType()) {
+			case NEARBY: emit(NEARBY); break;
+			case AHEAD: emit(AHEAD); break;
+			case RANDOM: emit(RANDOM); break;
+			default:
+				throw new IllegalArgumentException("Invalid Sensor");
+			}
+		} else if (e instanceof NegatedFactor) {
+			expr((Expr) e.fst());
+			emit(NEG);
+		} else {
+			throw new IllegalStateException("Invalid Factor");
+		}
+	}
+
+	private void update(Update u) {
+		Register reg = (Register) u.fst();
+		expr((Expr) u.snd());
+		if (reg.getAbbrev() == null) {
+			expr((Expr) reg.fst());
+			pop(STORE);
+			pop(-1);
+		} else if (reg.getAbbrev().equals("POSTURE")) {
+			pop(POSTURE);
+		} else {
+			pop(POP);
+		}
+	}
+
+	/**
+	 * Map the syntactic sugar for a memory location to its index.
+	 */
+	static int sugarIndex(String memSugar) {
+		switch (memSugar) {
+		case "MEMSIZE": return 0;
+		case "DEFENSE": return 1;
+		case "OFFENSE": return 2;
+		case "SIZE": return 3;
+		case "ENERGY": return 4;
+		case "PASS": return 5;
+		case "TAG": return 6;
+		case "POSTURE": return 7;
+		default:
+			throw new IllegalStateException("Invalid Syntactic Sugar");
+		}
+	}
+
+	// emitting helpers
+
+	private void emit(int... words) {
+		if (length + words.length > code.length)
+			code = Arrays.copyOf(code, 2 * code.length + words.length);
+		for (int w : words) code[length++] = w;
+	}
+
+	/** Emit an instruction that pushes one value. */
+	private void push(int... words) {
+		emit(words);
+		if (++depth > maxDepth) maxDepth = depth;
+	}
+
+	/** Emit an instruction that pops one value (a negative op emits nothing). */
+	private void pop(int op) {
+		if (op >= 0) emit(op);
+		depth--;
+	}
+
+	/**
+	 * Emit a jump with a placeholder target.
+	 * @return the location of the target, to be filled in by {@code patch}
+	 */
+	private int jump(int op) {
+		emit(op, -1);
+		depth--; // the value is kept only on the path that jumps
+		return length - 1;
+	}
+
+	private void patch(int at) {
+		code[at] = length;
+	}
+}
@@ -0,0 +1,124 @@
+package interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ast.Interner;
+import ast.MutationFactory;
+import ast.Node;
+import ast.ProgramImpl;
+import parse.ParserFactory;
+
+class BytecodeTest {
+
+	static final String PROGRAM =
+			"POSTURE != 17 --> POSTURE := 17;\n"
+			+ "nearby[3] = 0 and ENERGY > 2500 --> bud;\n"
+			+ "{ENERGY > SIZE * 400 and SIZE < 7} --> grow;\n"
+			+ "mem[8] < 3 --> mem[8] := mem[8] + 1 mem[20] := 5;\n"
+			+ "ahead[1] < -1 and ENERGY < 500 * SIZE --> eat;\n"
+			+ "(ahead[1] / 10 mod 100) != 17 and ahead[1] > 0 --> attack;\n"
+			+ "ahead[1] < -5 or -ahead[2] / 0 = 0 --> forward;\n"
+			+ "nearby[0] > 0 and nearby[3] = 0 --> backward;\n"
+			+ "{ahead[1] = 0 or ahead[1] < -1} and { ENERGY > 2500 or SIZE > 7 } --> serve[ENERGY / 42];\n"
+			+ "1 = 1 --> wait;\n";
+
+	static ProgramImpl parse(String program) {
+		return (ProgramImpl) ParserFactory.getParser().parse(new StringReader(program));
+	}
+
+	/**
+	 * Check that the bytecode interpreter and the tree-walking interpreter
+	 * agree on the result and on the memory left behind.
+	 */
+	private void assertSameResult(ProgramImpl p, Critter c) {
+		CritterState cs = c.getState();
+		int[] before = cs.memory();
+		Result expected = new Interpreter().interpret(p, cs);
+		int[] after = cs.memory();
+
+		cs.setMemory(before);
+		Result actual = new VirtualMachine().interpret(p, cs);
+		assertSame(expected.getRule(), actual.getRule());
+		assertEquals(expected.getAction().toString(), actual.getAction().toString());
+		assertArrayEquals(after, cs.memory());
+	}
+
+	@Test
+	public void testMatchesInterpreter() {
+		World w = new World("Bytecode world", 10, 15);
+		ProgramImpl p = parse(PROGRAM);
+		int[][] mems = {
+				{9, 2, 3, 1, 500, 1, 0, 17, 0},
+				{9, 2, 3, 1, 500, 1, 0, 3, 0},
+				{9, 2, 3, 1, 3000, 1, 0, 17, 3},
+				{9, 2, 3, 8, 3000, 1, 0, 17, 3},
+		};
+		w.getHexAt(2, 3).add(new Food(100, w));
+		for (int i = 0; i < mems.length; i++) {
+			Critter c = new Critter(w.getHexAt(2, 2 + 2 * i), i, mems[i], p);
+			assertSameResult(p, c);
+		}
+	}
+
+	@Test
+	public void testJitMatchesBytecode() {
+		World w = new World("JIT world", 10, 15);
+		ProgramImpl p = parse(PROGRAM);
+		Bytecode b = Bytecode.of(p);
+		CompiledProgram jit = new JitCompiler(b).compile();
+		w.getHexAt(2, 3).add(new Food(100, w));
+		for (int i = 0; i < 4; i++) {
+			int[] mem = {9, 2, 3, 1 + 3 * i, 1000 * i, 1, 0, 10 + i, i};
+			Critter c = new Critter(w.getHexAt(2, 2 + 2 * i), i, mem, p);
+			CritterState cs = c.getState();
+			int[] before = cs.memory();
+			int expected = new VirtualMachine().execute(b, cs);
+			int[] after = cs.memory();
+			cs.setMemory(before);
+			assertEquals(expected, jit.run(cs));
+			assertArrayEquals(after, cs.memory());
+		}
+	}
+
+	@Test
+	public void testRecompiledAfterMutation() {
+		ProgramImpl p = parse(PROGRAM);
+		Bytecode b = Bytecode.of(p);
+		assertSame(b, Bytecode.of(p));
+
+		// mutate until the rule set actually changes
+		while (p.mutate(0, MutationFactory.getDuplicate()) == null);
+		Bytecode b2 = Bytecode.of(p);
+		assertNotSame(b, b2);
+		assertEquals(b.numRules() + 1, b2.numRules());
+	}
+
+	@Test
+	public void testMutationCopiesOnlyChangedPath() {
+		ProgramImpl q = Interner.intern(parse(PROGRAM));
+		assertSame(q, Interner.intern(parse(PROGRAM)));
+		String text = q.toString();
+		SplittableRandom r = new SplittableRandom(42);
+		for (int i = 0; i < 300; i++) {
+			ProgramImpl c = (ProgramImpl) q.clone();
+			c.mutate(r);
+			assertEquals(text, q.toString());
+			assertEquals(c.toString(), parse(c.toString()).toString());
+
+			Set<Node> nodes = Collections.newSetFromMap(
+					new IdentityHashMap<Node, Boolean>());
+			nodes.addAll(q.preorder());
+			int before = nodes.size();
+			nodes.addAll(c.preorder());
+			assertTrue(nodes.size() - before < 12, "copied " + (nodes.size() - before) + " nodes");
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package interpret;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered sequential reads of what a {@link ChannelWriter} wrote.
+ */
+final class ChannelReader {
+
+	private static final int BUFFER = 1 << 16;
+
+	private final ReadableByteChannel ch;
+	private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+
+	ChannelReader(ReadableByteChannel ch) {
+		this.ch = ch;
+		buf.limit(0);
+	}
+
+	/**
+	 * Make sure {@code n} bytes are buffered.
+	 *
+	 * @return whether they are; false if the channel ends first
+	 */
+	private boolean fill(int n) throws IOException {
+		if (buf.remaining() >= n) return true;
+		buf.compact();
+		try {
+			while (buf.position() < n) {
+				if (ch.read(buf) < 0) return false;
+			}
+			return true;
+		} finally {
+			buf.flip();
+		}
+	}
+
+	private void ensure(int n) throws IOException {
+		if (!fill(n)) throw new EOFException("Truncated data");
+	}
+
+	/**
+	 * Whether everything in the channel has been read.
+	 */
+	boolean atEnd() throws IOException {
+		return !fill(1);
+	}
+
+	int getByte() throws IOException {
+		ensure(1);
+		return buf.get();
+	}
+
+	int getInt() throws IOException {
+		ensure(4);
+		return buf.getInt();
+	}
+
+	long getLong() throws IOException {
+		ensure(8);
+		return buf.getLong();
+	}
+
+	int getVarInt() throws IOException {
+		int i = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = getByte();
+			i |= (b & 0x7f) << shift;
+			if (b >= 0) return i;
+		}
+		throw new IOException("Corrupt data");
+	}
+
+	int getSignedVarInt() throws IOException {
+		int i = getVarInt();
+		return (i >>> 1) ^ -(i & 1);
+	}
+
+	int[] getInts(int n) throws IOException {
+		if (n < 0) throw new IOException("Corrupt data");
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++) a[i] = getInt();
+		return a;
+	}
+
+	String getString() throws IOException {
+		int n = getInt();
+		if (n < 0) return null;
+		byte[] bytes = new byte[n];
+		for (int at = 0; at < n; ) {
+			ensure(1);
+			int k = Math.min(buf.remaining(), n - at);
+			buf.get(bytes, at, k);
+			at += k;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
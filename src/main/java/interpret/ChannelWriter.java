@@ -0,0 +1,85 @@
+package interpret;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered sequential writes of numbers and strings to a channel. Numbers
+ * are big-endian; strings are a length in bytes, or -1 for {@code null},
+ * followed by UTF-8. Nothing reaches the channel until the buffer fills
+ * or is flushed.
+ */
+final class ChannelWriter {
+
+	private static final int BUFFER = 1 << 16;
+
+	private final WritableByteChannel ch;
+	private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER);
+
+	ChannelWriter(WritableByteChannel ch) {
+		this.ch = ch;
+	}
+
+	private void ensure(int n) throws IOException {
+		if (buf.remaining() < n) flush();
+	}
+
+	void flush() throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) ch.write(buf);
+		buf.clear();
+	}
+
+	void putByte(int b) throws IOException {
+		ensure(1);
+		buf.put((byte) b);
+	}
+
+	void putInt(int i) throws IOException {
+		ensure(4);
+		buf.putInt(i);
+	}
+
+	void putLong(long l) throws IOException {
+		ensure(8);
+		buf.putLong(l);
+	}
+
+	/**
+	 * Write {@code i} in as few bytes as it needs, seven bits at a time,
+	 * low bits first; small non-negative numbers take one byte.
+	 */
+	void putVarInt(int i) throws IOException {
+		ensure(5);
+		while ((i & ~0x7f) != 0) {
+			buf.put((byte) (i | 0x80));
+			i >>>= 7;
+		}
+		buf.put((byte) i);
+	}
+
+	/**
+	 * Write {@code i} in as few bytes as it needs; numbers near zero of
+	 * either sign take one byte.
+	 */
+	void putSignedVarInt(int i) throws IOException {
+		putVarInt((i << 1) ^ (i >> 31));
+	}
+
+	void putString(String s) throws IOException {
+		if (s == null) {
+			putInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+		for (int at = 0; at < bytes.length; ) {
+			if (!buf.hasRemaining()) flush();
+			int n = Math.min(buf.remaining(), bytes.length - at);
+			buf.put(bytes, at, n);
+			at += n;
+		}
+	}
+}
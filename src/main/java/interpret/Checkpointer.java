@@ -0,0 +1,206 @@
+package interpret;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodic checkpoints of a running {@link World} to a directory. Each
+ * checkpoint copies the state of the world, which is all the stepping
+ * thread waits for, and leaves encoding, compressing and writing it to a
+ * background thread. The first checkpoint, and every {@code fullEvery}th
+ * after it, is a full {@link WorldSnapshot}; those in between are deltas
+ * holding only the cells and critters changed since the checkpoint before.
+ *
+ * Checkpoints are files {@code checkpoint-<n>.full.gz} and
+ * {@code checkpoint-<n>.delta.gz}, numbered in order. Each appears under
+ * its final name only once completely written, and when a full checkpoint
+ * has been written the ones before it are deleted. {@link #restore} gives
+ * the world as of the last checkpoint written.
+ */
+public final class Checkpointer implements AutoCloseable {
+
+	private static final String PREFIX = "checkpoint-";
+	private static final String FULL = ".full.gz";
+	private static final String DELTA = ".delta.gz";
+
+	private final World w;
+	private final Path dir;
+	private final int fullEvery;
+	private final ExecutorService writer;
+	private int count; // number of the next checkpoint
+	private int taken;
+	/** The critters as last recorded, by id. */
+	private HashMap<Integer, WorldSnapshot.CritterRecord> records;
+	private volatile IOException failure;
+
+	/**
+	 * Make a checkpointer of world {@code w} writing to directory
+	 * {@code dir}, which is created if needed. Changes to the world are
+	 * tracked from now on.
+	 *
+	 * @param fullEvery: how often to write a full checkpoint; 1 means
+	 * always
+	 * @throws IOException if the directory can't be created
+	 */
+	public Checkpointer(World w, Path dir, int fullEvery) throws IOException {
+		if (fullEvery < 1) throw new IllegalArgumentException("fullEvery must be positive");
+		this.w = w;
+		this.dir = Files.createDirectories(dir);
+		this.fullEvery = fullEvery;
+		count = next(dir);
+		w.grid.unsaved = new DirtyCells(w.grid.size());
+		writer = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "Checkpointer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Take a checkpoint of the world now and write it in the background.
+	 * Must be called between steps, on the thread stepping the world; with
+	 * a {@link Simulation}, pass it to {@link Simulation#execute}.
+	 *
+	 * @throws UncheckedIOException if an earlier checkpoint couldn't be
+	 * written
+	 */
+	public void checkpoint() {
+		IOException e = failure;
+		if (e != null) throw new UncheckedIOException("Checkpoint failed", e);
+		boolean full = taken++ % fullEvery == 0;
+		int[] cells = w.grid.unsaved.take();
+		HashMap<Integer, WorldSnapshot.CritterRecord> seen = new HashMap<Integer, WorldSnapshot.CritterRecord>();
+		HashMap<Integer, WorldSnapshot.CritterRecord> before = records;
+		WorldSnapshot s = WorldSnapshot.capture(w, full ? null : cells, r -> {
+			seen.put(r.id, r);
+			WorldSnapshot.CritterRecord old = full ? null : before.get(r.id);
+			return old == null || !old.sameAs(r);
+		});
+		records = seen;
+		int n = count++;
+		writer.execute(() -> {
+			try {
+				write(s, n);
+			} catch (IOException ex) {
+				failure = ex;
+			}
+		});
+	}
+
+	/**
+	 * Wait until every checkpoint taken has been written.
+	 *
+	 * @throws UncheckedIOException if one couldn't be written
+	 */
+	public void await() {
+		try {
+			writer.submit(() -> {}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		IOException e = failure;
+		if (e != null) throw new UncheckedIOException("Checkpoint failed", e);
+	}
+
+	/**
+	 * Write the checkpoints taken, then stop tracking changes to the world.
+	 */
+	@Override
+	public void close() {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		w.grid.unsaved = null;
+		IOException e = failure;
+		if (e != null) throw new UncheckedIOException("Checkpoint failed", e);
+	}
+
+	private void write(WorldSnapshot s, int n) throws IOException {
+		String name = String.format("%s%06d%s", PREFIX, n, s.isDelta() ? DELTA : FULL);
+		Path tmp = dir.resolve(name + ".tmp");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+			s.write(Channels.newChannel(out));
+		}
+		Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+		if (!s.isDelta()) {
+			for (Path p : checkpoints(dir)) {
+				if (number(p) < n) Files.deleteIfExists(p);
+			}
+		}
+	}
+
+	/**
+	 * Restore the world as of the last checkpoint written to directory
+	 * {@code dir}, keeping its hexes on the heap.
+	 *
+	 * @throws IOException if there is no checkpoint or one can't be read
+	 */
+	public static World restore(Path dir) throws IOException {
+		List<Path> files = checkpoints(dir);
+		int full = -1;
+		for (int i = 0; i < files.size(); i++) {
+			if (files.get(i).getFileName().toString().endsWith(FULL)) full = i;
+		}
+		if (full < 0) throw new IOException("No full checkpoint in " + dir);
+		WorldSnapshot s = read(files.get(full));
+		for (int i = full + 1; i < files.size(); i++) {
+			if (number(files.get(i)) != number(files.get(i - 1)) + 1) break; // a gap
+			s.apply(read(files.get(i)));
+		}
+		return s.toWorld(null);
+	}
+
+	private static WorldSnapshot read(Path file) throws IOException {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file), 1 << 16)) {
+			return WorldSnapshot.read(Channels.newChannel(in));
+		}
+	}
+
+	/**
+	 * The checkpoints written to {@code dir}, in order.
+	 */
+	private static List<Path> checkpoints(Path dir) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*.gz")) {
+			for (Path p : ds) files.add(p);
+		}
+		Collections.sort(files, (a, b) -> Integer.compare(number(a), number(b)));
+		return files;
+	}
+
+	private static int number(Path p) {
+		String name = p.getFileName().toString();
+		return Integer.parseInt(name.substring(PREFIX.length(), name.indexOf('.')));
+	}
+
+	/**
+	 * The number of the next checkpoint in {@code dir}, continuing after
+	 * any already there.
+	 */
+	private static int next(Path dir) throws IOException {
+		List<Path> files = checkpoints(dir);
+		return files.isEmpty() ? 0 : number(files.get(files.size() - 1)) + 1;
+	}
+}
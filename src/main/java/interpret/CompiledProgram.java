@@ -0,0 +1,18 @@
+package interpret;
+
+/**
+ * A critter program translated into a JVM class by {@link JitCompiler}.
+ * Running it has the same effect on the critter state as running the
+ * {@link Bytecode} it was compiled from on the {@link VirtualMachine}.
+ */
+public interface CompiledProgram {
+
+	/**
+	 * Execute one turn of the program for critter state {@code cs}.
+	 *
+	 * @param cs the state in which to execute the program
+	 * @return the index of the action to perform in the program's
+	 *         {@code Bytecode}, or -1 if the turn ended without an action
+	 */
+	int run(CritterState cs);
+}
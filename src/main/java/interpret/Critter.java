@@ -1,9 +1,8 @@
 package interpret;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
+import ast.Interner;
 import ast.Node;
 import ast.ProgramImpl;
 import ast.Rule;
@@ -18,14 +17,34 @@ public class Critter implements SimObject {
 
 	private CritterState cs;
 	private Rule lastRule;
+	private boolean alive = true;
+	int id = -1; // registry id in the world, see World.register
 	
 	public Critter(Hex l, int f, int[] mem, ProgramImpl p) {
-		cs = new CritterState(l,f,mem,p,this);
-		if(!l.add(this)) {
+		this(l, f, mem, p, l.getWorld().getRandom().split());
+	}
+	
+	/**
+	 * Create a critter whose random choices are drawn from {@code rand}.
+	 * Offspring get a stream split from their parent's, so that critters
+	 * born in different regions of a parallel step don't share a generator.
+	 */
+	Critter(Hex l, int f, int[] mem, ProgramImpl p, RandomStream rand) {
+		this(l.getWorld(), l.cell, f, mem, p, rand);
+	}
+	
+	/**
+	 * Create a critter on grid cell {@code cell} of world {@code w}, as
+	 * offspring are born.
+	 */
+	Critter(World w, int cell, int f, int[] mem, ProgramImpl p, RandomStream rand) {
+		cs = new CritterState(w,cell,f,mem,p,this,rand);
+		if(w.grid.status(cell) != 0) {
 			throw new IllegalArgumentException("Can't add a " +
 					"critter to this hex");
 		}
-		l.getWorld().addCritter(this);
+		w.putCritter(cell, this);
+		w.addCritter(this);
 	}
 	
 	public Critter(String species, Hex l, int f, int[] mem, ProgramImpl p) {
@@ -33,6 +52,16 @@ public class Critter implements SimObject {
 		cs.species = species;
 	}
 	
+	/**
+	 * Restore a critter saved by a {@link WorldSnapshot} into registry slot
+	 * {@code id} of world {@code w}, whose grid already shows it standing
+	 * in {@code cell}.
+	 */
+	Critter(World w, int id, int cell, int f, int[] mem, ProgramImpl p, RandomStream rand) {
+		cs = new CritterState(w, cell, f, mem, p, this, rand);
+		w.restoreCritter(this, id);
+	}
+	
 	public Critter(String fileName, Hex l) {
 		// TODO implement
 	}
@@ -74,26 +103,21 @@ public class Critter implements SimObject {
 		if (!isDead()) {
 			if (cs.ahead(dir) != 0) return; // path blocked
 			
-			int[] delta = cs.nextHex(cs.facing);
-			if(dir == -1) {
-				// go backwards
-				delta[0] *= -1;
-				delta[1] *= -1;
-			}
-			// have to do this manually because of different
-			// delta computation - needed to do multiplcation
-			// for backwards, which getFacingHex() can't do.
+			// backwards is the opposite direction, which
+			// facingCell() can't do.
+			int facing = dir == 1 ? cs.getFacing() : (cs.getFacing() + 3) % 6;
 			
 			// add this to the new hex
-			getWorld().getHexAt(cs.location.getCol() + delta[0],
-					cs.location.getRow() + delta[1]).add(this);
+			World w = getWorld();
+			int here = cs.cell();
+			int there = w.neighbour(here, facing);
+			w.putCritter(there, this);
 			
 			// remove this from the old hex
-			cs.location.removeOccupant();
+			w.removeOccupant(here);
 			
 			// update the location
-			cs.location = getWorld().getHexAt(cs.location.getCol() 
-					+ delta[0], cs.location.getRow() + delta[1]);
+			cs.setCell(there);
 		}
 		
 	}
@@ -113,8 +137,9 @@ public class Critter implements SimObject {
 		// energy = energy - size
 		cs.setMem(4, cs.mem(4) - cs.mem(3));
 		
-		if(!isDead())
-			cs.facing = Math.floorMod(cs.facing + dir, 6); // wraparound from 0 to 5
+		if(!isDead()) {
+			cs.setFacing(Math.floorMod(cs.getFacing() + dir, 6)); // wraparound from 0 to 5
+		}
 		
 	}
 	
@@ -129,24 +154,25 @@ public class Critter implements SimObject {
 	 */
 	public void eat() {
 		
-		Hex target = getState().getFacingHex();
+		World w = getWorld();
+		int target = cs.facingCell();
 		if(cs.mem(4) == Constants.energyPerSize * cs.mem(3)) return; // critter is full
-		if(target == null) return; // no hex here
-		if(target.getStatus() >= -1) return; // no food here
+		if(target == Grid.OFF) return; // no hex here
+		if(w.grid.status(target) >= -1) return; // no food here
 		
 		// spend the energy
 		// energy = energy - size
 		cs.setMem(4, cs.mem(4) - cs.mem(3));
 		if(!isDead()) {
-			Food f = (Food)target.getOccupant();
+			int food = -1 - w.grid.status(target);
 			int limit = Constants.energyPerSize * cs.mem(3);
 			
-			if (f.getValue() > limit - cs.mem(4)) {
+			if (food > limit - cs.mem(4)) {
 				// food has more than critter can absorb
-				f.setValue(f.getValue() - (limit - cs.mem(4)));
+				w.setFood(target, food - (limit - cs.mem(4)));
 			} else {
-				cs.setMem(4, cs.mem(4) + f.getValue());
-				target.removeOccupant();
+				cs.setMem(4, cs.mem(4) + food);
+				w.removeOccupant(target);
 			}
 		}
 		
@@ -155,31 +181,33 @@ public class Critter implements SimObject {
 	
 	public void serve(int amount) {
 		
-		Hex target = cs.getFacingHex();
-		if(target == null) return;
+		World w = getWorld();
+		int target = cs.facingCell();
+		if(target == Grid.OFF) return;
 		
-		if(target.getStatus() < -1) {
+		int status = w.grid.status(target);
+		if(status < -1) {
 			// there's already food here - add on to it
-			Food f = (Food) target.getOccupant();
+			int food = -1 - status;
 			if (amount >= cs.mem(4)) {
 				// critter will die
-				f.setValue(f.getValue() + cs.mem(4));
+				w.setFood(target, food + cs.mem(4));
 				cs.setMem(4, 0);
 				isDead();
 			} else {
 				// critter won't die
-				f.setValue(f.getValue() + amount);
+				w.setFood(target, food + amount);
 				cs.setMem(4, cs.mem(4) - amount);
 			}
 			
-		} else if(target.getStatus() == 0) {
+		} else if(status == 0) {
 			// there's no food here - make some
 			if(amount >= cs.mem(4)) {
-				target.add(new Food(cs.mem(4), getWorld()));
+				w.setFood(target, cs.mem(4));
 				cs.setMem(4, 0);
 				isDead();
 			} else {
-				target.add(new Food(amount, getWorld()));
+				w.setFood(target, amount);
 				cs.setMem(4, cs.mem(4) - amount);
 			}
 			
@@ -200,11 +228,12 @@ public class Critter implements SimObject {
 		
 		if(!isDead()) {
 			
-			Hex targetHex = cs.getFacingHex();
-			if (targetHex == null) return;
-			if (targetHex.getStatus() > 0) {
+			World w = getWorld();
+			int target = cs.facingCell();
+			if (target == Grid.OFF) return;
+			if (w.grid.status(target) > 0) {
 				// critter is attacked
-				Critter victim = (Critter)targetHex.getOccupant();
+				Critter victim = w.critter(w.grid.occupant(target) - 1);
 				
 				// calculate damage
 				double damage = Constants.baseDamage * cs.mem(3);
@@ -243,11 +272,10 @@ public class Critter implements SimObject {
 		cs.setMem(4, cs.mem(4) - cs.mem(3));
 		
 		if(!isDead()) {
-			int[] delta = cs.nextHex(cs.facing);
-			Hex target = getWorld().getHexAt(cs.location.getCol()
-					+ delta[0], cs.location.getRow() + delta[1]);
+			World w = getWorld();
+			int target = cs.facingCell();
 			
-			((Critter)target.getOccupant()).getState().setMem(6, tagNum);
+			w.critter(w.grid.occupant(target) - 1).getState().setMem(6, tagNum);
 		}
 		
 	}
@@ -264,6 +292,10 @@ public class Critter implements SimObject {
 		}
 	}
 	
+	public Rule getLastRule() {
+		return lastRule;
+	}
+	
 	public void setLastRule(Rule r) {
 		lastRule = r;
 	}
@@ -281,18 +313,14 @@ public class Critter implements SimObject {
 		cs.setMem(4, cs.mem(4) - (Constants.budCost * getComplexity()));
 		
 		if(!isDead()) {
-			int[] delta = cs.nextHex(cs.facing);
-			delta[0] *= -1;
-			delta[1] *= -1;
-			
 			// invalid space
-			Hex target = getWorld().getHexAt(cs.location.getCol() 
-					+ delta[0], cs.location.getRow() + delta[1]);
-			if(target == null) return;
-			if(target.getStatus() != 0) return;
+			World w = getWorld();
+			int target = behind(this);
+			if(target == Grid.OFF) return;
+			if(w.grid.status(target) != 0) return;
 			
 			// make the mem array
-			int[] newMem = Arrays.copyOf(cs.mem, cs.mem.length);
+			int[] newMem = cs.memory();
 			for(int i = 8; i < newMem.length; i++) {
 				newMem[i] = 0; 
 			}
@@ -305,13 +333,17 @@ public class Critter implements SimObject {
 			ProgramImpl newPrgm = cs.p;
 			if(newPrgm != null) {
 				int numMutations = numMutations();
+				// mutate a copy, which shares the rules it doesn't change;
+				// the parent keeps its program
+				if(numMutations > 0) newPrgm = (ProgramImpl) newPrgm.clone();
 				for(int i = 0; i < numMutations; i++) {
-					newPrgm = (ProgramImpl) newPrgm.mutate();
+					newPrgm = (ProgramImpl) newPrgm.mutate(cs.rand);
 				}
+				if(numMutations > 0) newPrgm = Interner.intern(newPrgm);
 			}
 			
-			target.add(new Critter(target, cs.facing, newMem,
-					newPrgm));
+			new Critter(w, target, cs.getFacing(), newMem,
+					newPrgm, cs.rand.split());
 			
 		}
 	}
@@ -323,13 +355,14 @@ public class Critter implements SimObject {
 		cs.setMem(4, cs.mem(4) - cs.mem(3));
 		if(isDead()) return;
 		
-		Hex target = cs.getFacingHex();
-		if(target == null) return;
-		if(target.getStatus() <= 0) return;
+		World w = getWorld();
+		int target = cs.facingCell();
+		if(target == Grid.OFF) return;
+		if(w.grid.status(target) <= 0) return;
 		
-		cs.partner = (Critter) target.getOccupant();
+		cs.partner = w.critter(w.grid.occupant(target) - 1);
 		
-		if((Critter) target.getOccupant() == cs.partner) {
+		if(w.critter(w.grid.occupant(target) - 1) == cs.partner) {
 			// it's a match!
 			
 			// regain the cost of failure
@@ -349,34 +382,19 @@ public class Critter implements SimObject {
 			}
 			if(isDead()) return; 
 			
-			Random r = new Random();
-			int[] delta;
-			Hex behind;
+			RandomStream r = cs.rand;
+			int behind;
 			
 			if(r.nextInt(2) == 0) {
 				// appear behind this critter
-				delta = cs.nextHex(cs.facing);
-				delta[0] *= -1;
-				delta[1] *= -1;
-				
-				// invalid space
-				behind = getWorld().getHexAt(cs.location.getCol() 
-						+ delta[0], cs.location.getRow() + delta[1]);
-				if(behind == null) return;
-				if(behind.getStatus() != 0) return;
-				
+				behind = behind(this);
 			} else {
 				// appear behind other critter
-				delta = cs.nextHex(cs.partner.getState().facing);
-				delta[0] *= -1;
-				delta[1] *= -1;
-				
-				// invalid space
-				behind = getWorld().getHexAt(cs.partner.getState().location.getCol() 
-						+ delta[0], cs.partner.getState().location.getRow() + delta[1]);
-				if(behind == null) return;
-				if(behind.getStatus() != 0) return;
+				behind = behind(cs.partner);
 			}
+			// invalid space
+			if(behind == Grid.OFF) return;
+			if(w.grid.status(behind) != 0) return;
 			
 			// make the critter
 			
@@ -420,7 +438,7 @@ public class Critter implements SimObject {
 				}
 			}
 			
-			// add the rules
+			// add the rules, which the parents' programs share
 			ProgramImpl newPrgm = null;
 			List<Node> ruleSet1 = null;
 			List<Node> ruleSet2 = null;
@@ -435,15 +453,15 @@ public class Critter implements SimObject {
 			}
 			for(int i = 0; i < numRules; i++) {
 				if(i >= ruleSet1.size()) {
-					newPrgm.add((Rule)ruleSet2.get(i).clone());
+					newPrgm.add((Rule)ruleSet2.get(i));
 				} else if (i >= ruleSet2.size()) {
-					newPrgm.add((Rule)ruleSet1.get(i).clone());
+					newPrgm.add((Rule)ruleSet1.get(i));
 				} else {
 					rand = r.nextInt(2);
 					if(rand == 0) {
-						newPrgm.add((Rule)ruleSet1.get(i).clone());
+						newPrgm.add((Rule)ruleSet1.get(i));
 					} else {
-						newPrgm.add((Rule)ruleSet2.get(i).clone());
+						newPrgm.add((Rule)ruleSet2.get(i));
 					}
 				}
 			}
@@ -452,16 +470,25 @@ public class Critter implements SimObject {
 			if(newPrgm != null) {
 				int numMutations = numMutations();
 				for(int i = 0; i < numMutations; i++) {
-					newPrgm = (ProgramImpl) newPrgm.mutate();
+					newPrgm = (ProgramImpl) newPrgm.mutate(cs.rand);
 				}
+				newPrgm = Interner.intern(newPrgm);
 			}
 			
 			
-			target.add(new Critter(behind, cs.facing, newMem,
-					newPrgm));
+			new Critter(w, behind, cs.getFacing(), newMem,
+					newPrgm, cs.rand.split());
 		}
 	}
 	
+	/**
+	 * Check whether this critter is still part of its world.
+	 * Unlike {@code isDead}, this never removes the critter.
+	 */
+	public boolean isAlive() {
+		return alive;
+	}
+	
 	/**
 	 * Check if this critter is dead, and remove it if it is.
 	 * A 'dead' critter has 0 or less energy.
@@ -474,21 +501,32 @@ public class Critter implements SimObject {
 	 */
 	public boolean isDead() {
 		if(cs.mem(4) <= 0) {
-			cs.location.removeOccupant();
-			cs.location.add(new Food(Constants.foodPerSize * 
-					cs.mem(3), getWorld()));
+			World w = getWorld();
+			int here = cs.cell();
+			w.removeOccupant(here);
+			w.setFood(here, Constants.foodPerSize * cs.mem(3));
 			getWorld().removeCritter(this);
+			alive = false;
 			return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * The grid cell behind critter {@code c}, or {@link Grid#OFF} if
+	 * that is off the world.
+	 */
+	private static int behind(Critter c) {
+		CritterState s = c.getState();
+		return s.w.neighbour(s.cell(), (s.getFacing() + 3) % 6);
+	}
+	
 	private double logisticFunc(double d) {
 		return (1 / (1 + Math.pow(Math.E, -d)));
 	}
 	
 	private int numMutations() {
-		Random r = new Random();
+		RandomStream r = cs.rand;
 		int count = 0;
 		while(r.nextInt(4) == 0) {
 			count++;
@@ -549,10 +587,10 @@ public class Critter implements SimObject {
 
 	@Override
 	public World getWorld() {
-		return cs.location.getWorld();
+		return cs.w;
 	}
 	
 	public String toString() {
-		return "" + cs.facing;
+		return "" + cs.getFacing();
 	}
 }
@@ -0,0 +1,144 @@
+package interpret;
+
+import java.util.Arrays;
+
+/**
+ * The critters of a {@link World}, kept in a slot map. Each critter owns a
+ * slot for as long as it is part of the world; the slot number is the
+ * critter's row in the {@link CritterTable} and identifies it on the
+ * {@link Grid}. Adding and removing critters takes constant time, and
+ * freed slots are reused.
+ *
+ * Every slot also has a generation, bumped whenever the slot is freed, so
+ * a handle combining the two ({@link #handle(int)}) names one critter and
+ * never a later occupant of its slot.
+ *
+ * The registry also records the step in which each critter was added, so
+ * that a step walking the slots can skip critters born during it.
+ */
+final class CritterRegistry {
+
+	private Critter[] slots = new Critter[16];
+	private int[] generation = new int[16];
+	private int[] birth = new int[16]; // step in which each critter was added
+	private int[] free = new int[16]; // freed slots, reused last in first out
+	private int numFree;
+	private int end; // one past the highest slot ever used
+	private int size;
+
+	/**
+	 * Add critter {@code c}, born in step {@code time}.
+	 *
+	 * @return the slot of {@code c}
+	 */
+	int add(Critter c, int time) {
+		int slot = numFree > 0 ? free[--numFree] : end++;
+		if (slot >= slots.length) {
+			int cap = 2 * slots.length;
+			slots = Arrays.copyOf(slots, cap);
+			generation = Arrays.copyOf(generation, cap);
+			birth = Arrays.copyOf(birth, cap);
+		}
+		slots[slot] = c;
+		birth[slot] = time;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Put critter {@code c} back in slot {@code slot}, which must be free
+	 * but not on the free list, when restoring a saved registry.
+	 */
+	void put(int slot, Critter c) {
+		slots[slot] = c;
+		size++;
+	}
+
+	/**
+	 * Restore the slots of a saved registry, all empty: the generation and
+	 * birth step of each slot up to {@code end}, and the free slots, in
+	 * the order they will be reused last to first. The critters are then
+	 * put back with {@link #put}.
+	 */
+	void restore(int end, int[] generation, int[] birth, int[] free) {
+		int cap = Math.max(16, end);
+		slots = new Critter[cap];
+		this.generation = Arrays.copyOf(generation, cap);
+		this.birth = Arrays.copyOf(birth, cap);
+		this.free = Arrays.copyOf(free, Math.max(16, free.length));
+		numFree = free.length;
+		this.end = end;
+		size = 0;
+	}
+
+	/**
+	 * The generation of slot {@code slot}.
+	 */
+	int generation(int slot) {
+		return generation[slot];
+	}
+
+	/**
+	 * The free slots, in the order they will be reused last to first.
+	 */
+	int[] freeSlots() {
+		return Arrays.copyOf(free, numFree);
+	}
+
+	/**
+	 * Free slot {@code slot}.
+	 */
+	void remove(int slot) {
+		slots[slot] = null;
+		generation[slot]++;
+		size--;
+		if (numFree == free.length) free = Arrays.copyOf(free, 2 * numFree);
+		free[numFree++] = slot;
+	}
+
+	/**
+	 * Get the critter in slot {@code slot}, or {@code null} if it's free.
+	 */
+	Critter get(int slot) {
+		return slots[slot];
+	}
+
+	/**
+	 * Get the critter named by {@code handle}, or {@code null} if it has
+	 * left the world.
+	 */
+	Critter get(long handle) {
+		int slot = (int) handle;
+		if (slot < 0 || slot >= end || generation[slot] != (int) (handle >>> 32))
+			return null;
+		return slots[slot];
+	}
+
+	/**
+	 * A handle naming the current occupant of {@code slot}.
+	 */
+	long handle(int slot) {
+		return (long) generation[slot] << 32 | slot;
+	}
+
+	/**
+	 * The step in which the critter in {@code slot} was added.
+	 */
+	int birth(int slot) {
+		return birth[slot];
+	}
+
+	/**
+	 * One past the highest slot that may be in use.
+	 */
+	int end() {
+		return end;
+	}
+
+	/**
+	 * The number of critters.
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -4,70 +4,187 @@ import ast.ProgramImpl;
 
 /**
  * A model of a critter.
+ * 
+ * The memory, facing and location of a critter are kept in a row of
+ * a {@link CritterTable}: the world's table while the critter is part
+ * of the world, or a table of its own before it is added and after it
+ * dies.
  * @author Syd
  *
  */
 public class CritterState implements State {
 
-	Hex location;
+	CritterTable table;
+	int row; // row of this critter in the table
+	final World w;
 	public String species;
-	int[] mem;
 	Critter c;
 	ProgramImpl p;
 	int pc; // pass counter
-	public int facing;
 	
 	Critter partner; // mating partner
+	final RandomStream rand; // source of this critter's random choices
 	
 	public CritterState(Hex l, int f, int[] mem, ProgramImpl p, Critter c) {
-		location = l;
-		facing = f;
-		this.mem = mem;
+		this(l, f, mem, p, c, l.getWorld().getRandom().split());
+	}
+	
+	/**
+	 * Create a critter state whose random choices are drawn from
+	 * {@code rand}, which no other critter may use.
+	 */
+	CritterState(Hex l, int f, int[] mem, ProgramImpl p, Critter c, RandomStream rand) {
+		this(l.getWorld(), l.cell, f, mem, p, c, rand);
+	}
+
+	/**
+	 * Create a critter state standing on grid cell {@code cell} of world
+	 * {@code w}.
+	 */
+	CritterState(World w, int cell, int f, int[] mem, ProgramImpl p, Critter c, RandomStream rand) {
+		this.w = w;
+		table = CritterTable.of(mem, f, cell);
 		this.p = p;
 		this.c = c;
+		this.rand = rand;
 	}
 
 	@Override
 	public int mem(int index) {
-		return mem[index];
+		if (index >= table.length[row]) throw new ArrayIndexOutOfBoundsException(index);
+		return table.mem(row, index);
 	}
 
 	@Override
 	public void setMem(int index, int val) {
-		mem[index] = val; 
+		if (index >= table.length[row]) throw new ArrayIndexOutOfBoundsException(index);
+		table.setMem(row, index, val); 
+		if (index == 3 || index == 6 || index == 7) refresh();
+	}
+
+	/**
+	 * The number of memory locations of this critter.
+	 */
+	int memLength() {
+		return table.length[row];
+	}
+
+	/**
+	 * Get a copy of the memory of this critter.
+	 */
+	int[] memory() {
+		return table.memory(row);
+	}
+
+	/**
+	 * Overwrite the memory of this critter with {@code mem}, which must
+	 * be as long as it.
+	 */
+	void setMemory(int[] mem) {
+		for (int i = 0; i < mem.length; i++) table.setMem(row, i, mem[i]);
+		refresh();
+	}
+
+	public int getFacing() {
+		return table.facing[row];
+	}
+
+	public void setFacing(int facing) {
+		table.facing[row] = facing;
+		refresh();
+	}
+
+	/**
+	 * Get the program this critter runs, or {@code null} if it has none.
+	 */
+	public ProgramImpl getProgram() {
+		return p;
+	}
+
+	/**
+	 * Get the hex this critter stands on.
+	 */
+	public Hex getLocation() {
+		int cell = table.location[row];
+		return w.getHexAt(w.grid.col(cell), w.grid.row(cell));
+	}
+
+	void setCell(int cell) {
+		table.location[row] = cell;
+	}
+
+	/**
+	 * The grid cell this critter stands on.
+	 */
+	int cell() {
+		return table.location[row];
+	}
+
+	/**
+	 * Move this critter's state into row {@code r} of table {@code t}.
+	 */
+	void moveTo(CritterTable t, int r) {
+		t.copyRow(table, row, r);
+		table = t;
+		row = r;
+	}
+
+	/**
+	 * Move this critter's state out of the world's table into a table
+	 * of its own, so it stays readable once its row is reused.
+	 */
+	void detach() {
+		CritterTable own = new CritterTable(1);
+		own.copyRow(table, row, 0);
+		table = own;
+		row = 0;
+	}
+	
+	/**
+	 * Publish this critter's appearance to the hex it stands on.
+	 * Call this after changing the size, tag, posture or facing
+	 * of the critter other than through {@code setMem}.
+	 */
+	void refresh() {
+		int cell = table.location[row];
+		if (c.id >= 0 && w.grid.occupant(cell) == c.id + 1)
+			w.grid.setAppearance(cell, getAppearance());
 	}
 
 	@Override
 	public int nearby(int dir) {
 
-		int[] delta = nextHex(dir);
+		int cell = table.location[row];
+		if (dir < 0 || dir > 5) return w.statusAt(cell);
 
 		// sees a rock if it's the edge of the world
-		if(getWorld().getHexAt(location.getCol() + delta[0],
-				location.getRow() + delta[1]) == null) return -1;
-
-		return getWorld().getHexAt(location.getCol() + delta[0],
-				location.getRow() + delta[1]).getStatus();
+		return w.statusAt(w.neighbour(cell, dir));
 	}
 
 	@Override
 	public int ahead(int dist) {
+		if (dist == 0) return getAppearance(); // this critter's own hex
 
-		int[] delta = nextHex(facing);
-
-		delta[0] *= dist;
-		delta[1] *= dist;
+		// walk backwards for a negative distance
+		int dir = dist > 0 ? getFacing() : (getFacing() + 3) % 6;
+		int cell = table.location[row];
 
-		// sees a rock if it's the edge of the world
-		if(getWorld().getHexAt(location.getCol() + delta[0],
-				location.getRow() + delta[1]) == null) return -1;
-
-		return getWorld().getHexAt(location.getCol() + delta[0],
-				location.getRow() + delta[1]).getStatus();
+		// sees a rock if it's the edge of the world, and the world is
+		// convex, so nothing lies beyond
+		for (int i = Math.abs(dist); i > 0 && cell != Grid.OFF; i--) {
+			cell = w.neighbour(cell, dir);
+		}
+		return w.statusAt(cell);
 	}
 
-	private World getWorld() {
-		return location.getWorld();
+	/**
+	 * Get what this critter smells: 1000 times the distance to the
+	 * nearest food plus the direction of the first step towards it,
+	 * relative to this critter's facing, or 1000000 if there's no food
+	 * within {@code Constants.maxSmellDistance} hexes.
+	 */
+	public int smell() {
+		return w.smell(table.location[row], getFacing());
 	}
 
 	@Override
@@ -80,51 +197,6 @@ public class CritterState implements State {
 		pc++;
 	}
 
-	/**
-	 * Get the difference of coordinates between the next hex
-	 * to go to (in the direction this critter is {@code facing})
-	 * and where the critter is right now.
-	 * 
-	 * @param facing: the direction this critter is currently facing.
-	 * If this number is outside the normal range of 0 to 5 (inclusive
-	 * of both endpoints), this will return [0,0].
-	 * 
-	 * @return an array of two integers. The first one is
-	 * the column difference, and the second is the row difference.
-	 */
-	public int[] nextHex(int facing) {
-		int dRow = 0;
-		int dCol = 0;
-
-		switch(facing) {
-		case 0:
-			dRow = 1;
-			break;
-		case 1:
-			dCol = 1; dRow = 1;
-			break;
-		case 2:
-			dCol = 1;
-			break;
-		case 3:
-			dRow = -1;
-			break;
-		case 4:
-			dCol = -1; dRow = -1;
-			break;
-		case 5:
-			dCol = -1;
-			break;
-		default:
-			break;
-		}
-
-		int[] result = new int[2];
-		result[0] = dCol;
-		result[1] = dRow;
-		return result;
-	}
-
 	/**
 	 * Return the hex that this critter is facing and is also 1
 	 * hex away.
@@ -134,9 +206,15 @@ public class CritterState implements State {
 	 * null, a hex that is a rock, or a hex that isn't a rock.
 	 */
 	public Hex getFacingHex() {
-		int[] delta = nextHex(facing);
-		return getWorld().getHexAt(location.getCol() + delta[0],
-				location.getRow() + delta[1]);
+		return w.hexAt(facingCell());
+	}
+
+	/**
+	 * The grid cell this critter is facing, or {@link Grid#OFF} if that is
+	 * off the world.
+	 */
+	int facingCell() {
+		return w.neighbour(table.location[row], getFacing());
 	}
 	
 	/**
@@ -147,6 +225,9 @@ public class CritterState implements State {
 	 * @return this critter's appearance.
 	 */
 	public int getAppearance() {
-		return (100000 * mem(3)) + (1000 * mem(6)) + (10 * mem(7)) + facing;
+		CritterTable t = table;
+		int r = row;
+		return (100000 * t.fixed[3][r]) + (1000 * t.fixed[6][r])
+				+ (10 * t.fixed[7][r]) + t.facing[r];
 	}
 }
@@ -21,11 +21,11 @@ class CritterStateTest {
 		
 		// remove the food and try to see a rock
 		w.getHexAt(0,1).removeOccupant();
-		w.getHexAt(0,1).isRock = true;
+		w.getHexAt(0,1).setRock(true);
 		assertTrue(c.getState().nearby(0) == -1);
 		
 		// remove the rock and try to see another critter
-		w.getHexAt(0,1).isRock = false;
+		w.getHexAt(0,1).setRock(false);
 		Critter c2 = new Critter(w.getHexAt(0,1), 0,
 				new int[10], null);
 		c2.getState().setMem(4, 100); // give it 100 energy
@@ -42,7 +42,7 @@ class CritterStateTest {
 				CritterTest.getMemArray(100), null);
 		
 		// see a rock
-		w.getHexAt(0,1).isRock = true;
+		w.getHexAt(0,1).setRock(true);
 		assertTrue(c.getState().ahead(1) == -1);
 		
 		// see a critter
@@ -89,4 +89,26 @@ class CritterStateTest {
 		// null hex
 		assertNull(c.getState().getFacingHex());
 	}
+	
+	@Test
+	public void testStateOutlivesCritter() {
+		World w = new World("Table world", 5, 5);
+		int[] mem = {10, 2, 3, 4, 5, 0, 7, 8, 9, 10};
+		Critter c = new Critter(w.getHexAt(1, 1), 2, mem, null);
+		assertTrue(c.getState().getAppearance() == w.getHexAt(1, 1).getStatus());
+		
+		// kill the critter, then reuse its row of the critter table
+		c.getState().setMem(4, 0);
+		assertTrue(c.isDead());
+		Critter c2 = new Critter(w.getHexAt(2, 2), 4, 
+				CritterTest.getMemArray(100), null);
+		
+		// the dead critter still has its own state
+		assertEquals(4, c.getState().mem(3));
+		assertEquals(10, c.getState().mem(9));
+		assertEquals(2, c.getState().getFacing());
+		assertTrue(c.getState().getLocation() == w.getHexAt(1, 1));
+		assertEquals(4, c2.getState().getFacing());
+		assertTrue(c2.getState().getLocation() == w.getHexAt(2, 2));
+	}
 }
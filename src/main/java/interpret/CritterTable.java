@@ -0,0 +1,172 @@
+package interpret;
+
+import java.util.Arrays;
+
+/**
+ * The state of many critters, stored by column: each fixed memory
+ * location (MEMSIZE through POSTURE), the facing and the location of a
+ * critter is one entry in a primitive array per field, and the rest of
+ * each critter's memory is a range of one shared slab. Rows are indexed
+ * by critter id, so stepping critters in id order walks each column
+ * sequentially.
+ *
+ * A {@link CritterState} is a view of one row. A critter that is not
+ * (or no longer) part of a world has a table of its own with one row.
+ *
+ * Rows are only added or moved by the thread stepping the world, outside
+ * of the parallel phases of a step; other threads may read and write
+ * existing rows concurrently.
+ */
+final class CritterTable {
+
+	/** Number of memory locations kept in their own column. */
+	static final int FIXED = 8;
+
+	/** {@code fixed[i][row]} is memory location {@code i} of a critter. */
+	int[][] fixed = new int[FIXED][];
+	int[] facing;
+	int[] location; // grid cell
+	int[] length; // length of the whole memory
+	int[] base; // where memory location FIXED is in the slab, -1 for free rows
+	int[] slab;
+	private int top; // first unused slot of the slab
+	private int garbage; // slots of the slab used by freed rows
+
+	CritterTable(int capacity) {
+		for (int i = 0; i < FIXED; i++) fixed[i] = new int[capacity];
+		facing = new int[capacity];
+		location = new int[capacity];
+		length = new int[capacity];
+		base = new int[capacity];
+		Arrays.fill(base, -1);
+		slab = new int[4 * capacity];
+	}
+
+	/**
+	 * Make a table of one row holding memory {@code mem}, which may be
+	 * {@code null} for a critter without memory.
+	 */
+	static CritterTable of(int[] mem, int facing, int location) {
+		int n = mem == null ? 0 : mem.length;
+		CritterTable t = new CritterTable(1);
+		t.slab = new int[Math.max(0, n - FIXED)];
+		t.facing[0] = facing;
+		t.location[0] = location;
+		t.length[0] = n;
+		t.base[0] = 0;
+		t.top = t.slab.length;
+		for (int i = 0; i < n; i++) t.setMem(0, i, mem[i]);
+		return t;
+	}
+
+	int capacity() {
+		return facing.length;
+	}
+
+	int mem(int row, int i) {
+		return i < FIXED ? fixed[i][row] : slab[base[row] + i - FIXED];
+	}
+
+	void setMem(int row, int i, int val) {
+		if (i < FIXED) fixed[i][row] = val;
+		else slab[base[row] + i - FIXED] = val;
+	}
+
+	/**
+	 * Read memory location {@code i} as a critter program does: locations
+	 * outside the memory read as 0.
+	 */
+	int load(int row, int i) {
+		return i < 0 || i >= length[row] ? 0 : mem(row, i);
+	}
+
+	/**
+	 * Write memory location {@code i} as a critter program does: writes
+	 * outside the memory are ignored.
+	 */
+	void store(int row, int i, int val) {
+		if (i >= 0 && i < length[row]) setMem(row, i, val);
+	}
+
+	/**
+	 * Copy the memory of a row.
+	 */
+	int[] memory(int row) {
+		int[] mem = new int[length[row]];
+		for (int i = 0; i < mem.length; i++) mem[i] = mem(row, i);
+		return mem;
+	}
+
+	/**
+	 * Copy row {@code from} of table {@code src} into row {@code row} of
+	 * this table, which must be free.
+	 */
+	void copyRow(CritterTable src, int from, int row) {
+		ensureCapacity(row + 1);
+		for (int i = 0; i < FIXED; i++) fixed[i][row] = src.fixed[i][from];
+		facing[row] = src.facing[from];
+		location[row] = src.location[from];
+		int n = src.length[from];
+		length[row] = n;
+		int extra = Math.max(0, n - FIXED);
+		base[row] = allocate(extra);
+		System.arraycopy(src.slab, src.base[from], slab, base[row], extra);
+	}
+
+	/**
+	 * Free row {@code row}.
+	 */
+	void free(int row) {
+		garbage += Math.max(0, length[row] - FIXED);
+		base[row] = -1;
+		length[row] = 0;
+	}
+
+	private void ensureCapacity(int rows) {
+		int cap = capacity();
+		if (rows <= cap) return;
+		cap = Math.max(rows, 2 * cap);
+		for (int i = 0; i < FIXED; i++) fixed[i] = Arrays.copyOf(fixed[i], cap);
+		facing = Arrays.copyOf(facing, cap);
+		location = Arrays.copyOf(location, cap);
+		length = Arrays.copyOf(length, cap);
+		int old = base.length;
+		base = Arrays.copyOf(base, cap);
+		Arrays.fill(base, old, cap, -1);
+	}
+
+	/**
+	 * Reserve {@code n} slots of the slab, compacting or growing it if
+	 * needed.
+	 *
+	 * @return the first slot reserved
+	 */
+	private int allocate(int n) {
+		if (top + n > slab.length) {
+			if (garbage > slab.length / 2) compact();
+			if (top + n > slab.length)
+				slab = Arrays.copyOf(slab, Math.max(top + n, 2 * slab.length));
+		}
+		int at = top;
+		top += n;
+		return at;
+	}
+
+	/**
+	 * Move the memory of all rows to the start of the slab, in row order.
+	 */
+	private void compact() {
+		int[] packed = new int[slab.length];
+		int at = 0;
+		for (int row = 0; row < base.length; row++) {
+			if (base[row] < 0) continue;
+			int extra = Math.max(0, length[row] - FIXED);
+			System.arraycopy(slab, base[row], packed, at, extra);
+			base[row] = at;
+			at += extra;
+		}
+		slab = packed;
+		top = at;
+		garbage = 0;
+	}
+}
@@ -0,0 +1,41 @@
+package interpret;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import ast.ProgramImpl;
+
+class CritterTableTest {
+
+	@Test
+	public void testLoadStoreOutsideMemory() {
+		CritterTable t = CritterTable.of(new int[] {9, 2, 3, 1, 500, 1, 0, 17, 4}, 0, 0);
+		assertEquals(4, t.load(0, 8));
+		assertEquals(0, t.load(0, 9));
+		assertEquals(0, t.load(0, -1));
+		assertEquals(0, t.load(0, Integer.MIN_VALUE));
+
+		t.store(0, -1, 5);
+		t.store(0, 9, 5);
+		assertArrayEquals(new int[] {9, 2, 3, 1, 500, 1, 0, 17, 4}, t.memory(0));
+		t.store(0, 8, 5);
+		assertEquals(5, t.load(0, 8));
+	}
+
+	@Test
+	public void testProgramMemoryOutsideReadsZero() {
+		World w = new World("Table world", 10, 15);
+		ProgramImpl p = BytecodeTest.parse(
+				"mem[-1] = 0 and mem[9 - 20] = 0 --> mem[-3] := 5 mem[8] := 1;\n"
+				+ "1 = 1 --> wait;\n");
+		int[] mem = {9, 2, 3, 1, 500, 1, 0, 17, 0};
+		Critter c = new Critter(w.getHexAt(2, 2), 0, mem, p);
+		new Interpreter().interpret(p, c.getState());
+		assertEquals(1, c.getState().mem(8));
+
+		c.getState().setMem(8, 0);
+		new VirtualMachine().interpret(p, c.getState());
+		assertEquals(1, c.getState().mem(8));
+	}
+}
@@ -22,25 +22,25 @@ class CritterTest {
 		Critter c = new Critter(w.getHexAt(0,0), 0, getMemArray(100), null);
 		c.getState().setMem(3,1); // size = 1 so it doesn't die
 		
-		assertTrue(c.getState().facing == 0); // initialization OK
+		assertTrue(c.getState().getFacing() == 0); // initialization OK
 		
 		c.turn(-1); // turn left
-		assertTrue(c.getState().facing == 5);
+		assertTrue(c.getState().getFacing() == 5);
 		
 		for(int i = 4; i >= 0; i--) {
 			// count down to turning to direction 0
 			c.turn(-1);
-			assertTrue(c.getState().facing == i);
+			assertTrue(c.getState().getFacing() == i);
 		}
 		
 		for(int i = 1; i <= 5; i++) {
 			// count up to turning right until direction 5
 			c.turn(1); // turn right
-			assertTrue(c.getState().facing == i);
+			assertTrue(c.getState().getFacing() == i);
 		}
 		
 		c.turn(1); // turn right
-		assertTrue(c.getState().facing == 0);
+		assertTrue(c.getState().getFacing() == 0);
 		
 	}
 	
@@ -56,15 +56,15 @@ class CritterTest {
 		c.getState().setMem(3,1); // size = 1 so it doesn't die
 		
 		c.move(-1); // can't do that - this is a world boundary
-		assertTrue(c.getState().location == w.getHexAt(0,0));
+		assertTrue(c.getState().getLocation() == w.getHexAt(0,0));
 		
 		c.move(1);
-		assertTrue(c.getState().location == w.getHexAt(0,1));
+		assertTrue(c.getState().getLocation() == w.getHexAt(0,1));
 		
 		c.move(1);
 		c.move(1);
 		c.move(1); // is an invalid (null) hex
-		assertTrue(c.getState().location == w.getHexAt(0,2));
+		assertTrue(c.getState().getLocation() == w.getHexAt(0,2));
 	}
 
 	@Test
@@ -78,7 +78,7 @@ class CritterTest {
 		
 		c.turn(1);
 		c.move(1);
-		assertTrue(c.getState().location == w.getHexAt(1,1));
+		assertTrue(c.getState().getLocation() == w.getHexAt(1,1));
 	}
 	
 	@Test
@@ -149,11 +149,11 @@ class CritterTest {
 		c.getState().setMem(3, 1); // size is 1
 		
 		// try to serve on a rock
-		w.getHexAt(0,1).isRock = true;
+		w.getHexAt(0,1).setRock(true);
 		c.serve(50);
 		assertTrue(c.getState().mem(4) == 100);
 		assertTrue(c.getState().getFacingHex().getOccupant() == null);
-		w.getHexAt(0,1).isRock = false;
+		w.getHexAt(0,1).setRock(false);
 		
 		// try to serve off the world boundary
 		c.turn(-1);
@@ -181,7 +181,7 @@ class CritterTest {
 		c.serve(25);
 		assertTrue(((Food) c.getState().getFacingHex().getOccupant()).
 				getValue() == 100);
-		assertTrue(((Food) c.getState().location.getOccupant()).
+		assertTrue(((Food) c.getState().getLocation().getOccupant()).
 				getValue() == 200);
 		
 		// die from serving too much for a new food object
@@ -193,7 +193,7 @@ class CritterTest {
 		c2.serve(100);
 		assertTrue(((Food) c2.getState().getFacingHex().getOccupant()).
 				getValue() == 10);
-		assertTrue(((Food) c2.getState().location.getOccupant()).
+		assertTrue(((Food) c2.getState().getLocation().getOccupant()).
 				getValue() == 200);
 		
 	}
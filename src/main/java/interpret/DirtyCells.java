@@ -0,0 +1,59 @@
+package interpret;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The set of cells of a {@link Grid} whose status changed since the set
+ * was last taken, one bit per cell. Cells can be marked from several
+ * threads at once, as they are while regions commit in parallel.
+ */
+final class DirtyCells {
+
+	private final AtomicLongArray bits;
+	private final int size;
+
+	DirtyCells(int size) {
+		this.size = size;
+		bits = new AtomicLongArray((size + 63) >>> 6);
+	}
+
+	void mark(int cell) {
+		int i = cell >>> 6;
+		long bit = 1L << cell;
+		long w;
+		while (((w = bits.get(i)) & bit) == 0) {
+			if (bits.compareAndSet(i, w, w | bit)) return;
+		}
+	}
+
+	/**
+	 * Mark every cell.
+	 */
+	void markAll() {
+		for (int i = 0; i < bits.length(); i++) bits.set(i, -1L);
+	}
+
+	/**
+	 * Take the marked cells, leaving the set empty. Cells marked while
+	 * this runs are either taken now or left for the next time.
+	 *
+	 * @return the marked cells, in increasing order
+	 */
+	int[] take() {
+		int[] cells = new int[16];
+		int n = 0;
+		for (int i = 0; i < bits.length(); i++) {
+			if (bits.get(i) == 0) continue;
+			long w = bits.getAndSet(i, 0);
+			while (w != 0) {
+				int cell = (i << 6) + Long.numberOfTrailingZeros(w);
+				w &= w - 1;
+				if (cell >= size) break;
+				if (n == cells.length) cells = Arrays.copyOf(cells, 2 * n);
+				cells[n++] = cell;
+			}
+		}
+		return Arrays.copyOf(cells, n);
+	}
+}
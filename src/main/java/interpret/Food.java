@@ -3,20 +3,39 @@ package interpret;
 /**
  * A representation of food in a critter world.
  *
+ * Food that has been placed on a hex is a view of that hex: its
+ * value is stored in the world's grid, not in this object.
  */
 public class Food implements SimObject {
 
 	int value;
 	World wd;
+	Hex at; // the hex holding this food, or null if not yet placed
 	
 	public Food(int value, World w) {
 		this.value = value;
 		wd = w;
 	}
 	
+	/**
+	 * A view of the food on hex {@code h}.
+	 */
+	Food(Hex h) {
+		wd = h.getWorld();
+		at = h;
+	}
+	
+	/**
+	 * Put this food on hex {@code h}, which must be empty.
+	 */
+	void place(Hex h) {
+		wd.setFood(h.cell, value);
+		at = h;
+	}
+	
 	@Override
 	public String getInfo() {
-		return "There are " + value + " units of food here.";
+		return "There are " + getValue() + " units of food here.";
 	}
 
 	@Override
@@ -25,10 +44,12 @@ public class Food implements SimObject {
 	}
 
 	public int getValue() {
+		if (at != null) return -1 - wd.grid.status(at.cell);
 		return value;
 	}
 	
 	public void setValue(int value) {
 		this.value = value;
+		if (at != null) wd.setFood(at.cell, value);
 	}
 }
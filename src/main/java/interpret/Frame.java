@@ -0,0 +1,70 @@
+package interpret;
+
+/**
+ * An immutable picture of what changed in a {@link World}, for a view to
+ * draw on a thread other than the one stepping the world. A frame holds
+ * the hexes that changed since the previous frame was taken, with the
+ * status each had when this one was taken, and a summary of the world.
+ *
+ * @see World#takeFrame()
+ */
+public final class Frame {
+
+	private final int time;
+	private final String info;
+	private final int[] hexes; // col0, row0, col1, row1, ...
+	private final int[] statuses;
+	private final String[] species; // of the critters on the hexes, or null
+
+	Frame(int time, String info, int[] hexes, int[] statuses, String[] species) {
+		this.time = time;
+		this.info = info;
+		this.hexes = hexes;
+		this.statuses = statuses;
+		this.species = species;
+	}
+
+	/**
+	 * The time step of the world when this frame was taken.
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * The information about the world, as {@link World#getInfo()}.
+	 */
+	public String getInfo() {
+		return info;
+	}
+
+	/**
+	 * The number of hexes that changed.
+	 */
+	public int size() {
+		return statuses.length;
+	}
+
+	public int getCol(int i) {
+		return hexes[2 * i];
+	}
+
+	public int getRow(int i) {
+		return hexes[2 * i + 1];
+	}
+
+	/**
+	 * The status of changed hex {@code i}, as {@link Hex#getStatus()}.
+	 */
+	public int getStatus(int i) {
+		return statuses[i];
+	}
+
+	/**
+	 * The species of the critter on changed hex {@code i}, or {@code null}
+	 * if it doesn't hold a critter.
+	 */
+	public String getSpecies(int i) {
+		return species[i];
+	}
+}
@@ -0,0 +1,39 @@
+package interpret;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free slot holding at most one value, handed from one producer
+ * thread to one consumer thread. Neither side ever waits for the other:
+ * the producer only fills the slot once the consumer has emptied it, and
+ * the consumer finds either a value or nothing.
+ *
+ * Everything the producer did before filling the slot is visible to the
+ * consumer once it has taken the value.
+ */
+public final class FrameSlot<T> {
+
+	private final AtomicReference<T> slot = new AtomicReference<T>();
+
+	/**
+	 * Put {@code value} in the slot if it's empty.
+	 *
+	 * @return whether the value was put in the slot
+	 */
+	public boolean offer(T value) {
+		return slot.compareAndSet(null, value);
+	}
+
+	/**
+	 * Take the value out of the slot.
+	 *
+	 * @return the value, or {@code null} if the slot is empty
+	 */
+	public T poll() {
+		return slot.get() == null ? null : slot.getAndSet(null);
+	}
+
+	public boolean isEmpty() {
+		return slot.get() == null;
+	}
+}
@@ -0,0 +1,155 @@
+package interpret;
+
+/**
+ * The contents of the hexes of a {@link World}, stored by cell number
+ * rather than as one object per hex. The cell number of the hex at
+ * ({@code col}, {@code row}) is {@code col * rows + row}, so each column
+ * is a contiguous range.
+ *
+ * For every cell the grid records the status a critter would sense there
+ * (see {@link Hex#getStatus()}) and what occupies it. The status of a
+ * cell holding a critter is kept up to date by the critter itself.
+ * {@link Hex} and {@link Food} objects are thin views onto a cell.
+ *
+ * A new grid is empty except for the cells off the world, which are
+ * rocks.
+ */
+abstract class Grid {
+
+	/** Occupant of an empty cell. */
+	static final int EMPTY = 0;
+	/** Occupant of a rock, or of a cell off the world. */
+	static final int ROCK = -1;
+	/** Occupant of a cell holding food; its amount is in the status. */
+	static final int FOOD = -2;
+	// positive occupants are critter ids plus one
+
+	/** Neighbour of a cell at the edge of the world, beyond the edge. */
+	static final int OFF = -1;
+
+	// coordinate differences to the neighbour in each direction
+	private static final int[] DCOL = {0, 1, 1, 0, -1, -1};
+	private static final int[] DROW = {1, 1, 0, -1, -1, 0};
+
+	final int cols, rows;
+
+	/** Cells whose status changed, or {@code null} if not tracked. */
+	DirtyCells dirty;
+	/** Cells changed since the last checkpoint, or {@code null} if not tracked. */
+	DirtyCells unsaved;
+
+	Grid(int cols, int rows) {
+		if (cols <= 0 || rows <= 0 || (long) cols * rows > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid world size "
+					+ cols + " by " + rows);
+		this.cols = cols;
+		this.rows = rows;
+	}
+
+	/**
+	 * Turn the cells off the world into rocks.
+	 */
+	void fillEdges() {
+		for (int c = 0; c < cols; c++) {
+			for (int r = 0; r < rows; r++) {
+				if (!valid(c, r)) setRock(index(c, r));
+			}
+		}
+	}
+
+	/**
+	 * Whether ({@code col}, {@code row}) is a hex of the world.
+	 */
+	boolean valid(int col, int row) {
+		return col >= 0 && row >= 0 && col < cols && row < rows
+				&& 2 * row - col >= 0 && 2 * row - col < 2 * rows - cols;
+	}
+
+	int index(int col, int row) {
+		return col * rows + row;
+	}
+
+	int col(int cell) {
+		return cell / rows;
+	}
+
+	int row(int cell) {
+		return cell % rows;
+	}
+
+	int size() {
+		return cols * rows;
+	}
+
+	/**
+	 * The cell next to {@code cell} in direction {@code dir} (0 to 5), or
+	 * {@link #OFF} if that is not a hex of the world.
+	 */
+	int neighbour(int cell, int dir) {
+		int c = col(cell) + DCOL[dir], r = row(cell) + DROW[dir];
+		return valid(c, r) ? index(c, r) : OFF;
+	}
+
+	/**
+	 * Make a table of the neighbours of every cell:
+	 * {@code table[6 * cell + dir]} is {@code neighbour(cell, dir)}.
+	 *
+	 * @return the table, or {@code null} if the grid has too many cells
+	 */
+	int[] neighbourTable() {
+		if (size() > Integer.MAX_VALUE / 6) return null;
+		int[] table = new int[6 * size()];
+		for (int cell = 0; cell < size(); cell++) {
+			for (int dir = 0; dir < 6; dir++) {
+				table[6 * cell + dir] = neighbour(cell, dir);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Record that the status of {@code cell} changed.
+	 */
+	final void mark(int cell) {
+		DirtyCells d = dirty;
+		if (d != null) d.mark(cell);
+		DirtyCells u = unsaved;
+		if (u != null) u.mark(cell);
+	}
+
+	abstract int status(int cell);
+
+	abstract int occupant(int cell);
+
+	abstract void setEmpty(int cell);
+
+	abstract void setRock(int cell);
+
+	abstract void setFood(int cell, int amount);
+
+	abstract void setCritter(int cell, int id, int appearance);
+
+	/**
+	 * Record a new appearance for the critter in {@code cell}.
+	 */
+	abstract void setAppearance(int cell, int appearance);
+
+	/**
+	 * Copy the statuses of columns {@code firstCol} to {@code endCol}
+	 * (exclusive) into the same cells of {@code dst}, which was made by
+	 * {@link #newSnapshot()}.
+	 */
+	abstract void copyStatus(int firstCol, int endCol, Grid dst);
+
+	/**
+	 * Make a grid of the same size and kind to hold copies of the
+	 * statuses of this one.
+	 */
+	abstract Grid newSnapshot();
+
+	/**
+	 * Release any resources held by this grid.
+	 */
+	void close() {
+	}
+}
@@ -0,0 +1,76 @@
+package interpret;
+
+import model.Constants;
+
+/**
+ * A {@link Grid} kept in two {@code int} arrays on the heap.
+ */
+final class HeapGrid extends Grid {
+
+	private final int[] status;
+	private final int[] occupant;
+
+	HeapGrid(int cols, int rows) {
+		super(cols, rows);
+		status = new int[size()];
+		occupant = new int[size()];
+		fillEdges();
+	}
+
+	@Override
+	int status(int cell) {
+		return status[cell];
+	}
+
+	@Override
+	int occupant(int cell) {
+		return occupant[cell];
+	}
+
+	@Override
+	void setEmpty(int cell) {
+		status[cell] = 0;
+		occupant[cell] = EMPTY;
+		mark(cell);
+	}
+
+	@Override
+	void setRock(int cell) {
+		status[cell] = Constants.rockValue;
+		occupant[cell] = ROCK;
+		mark(cell);
+	}
+
+	@Override
+	void setFood(int cell, int amount) {
+		status[cell] = -1 - amount;
+		occupant[cell] = FOOD;
+		mark(cell);
+	}
+
+	@Override
+	void setCritter(int cell, int id, int appearance) {
+		status[cell] = appearance;
+		occupant[cell] = id + 1;
+		mark(cell);
+	}
+
+	@Override
+	void setAppearance(int cell, int appearance) {
+		if (status[cell] == appearance) return;
+		status[cell] = appearance;
+		mark(cell);
+	}
+
+	@Override
+	void copyStatus(int firstCol, int endCol, Grid dst) {
+		int from = firstCol * rows;
+		System.arraycopy(status, from, ((HeapGrid) dst).status, from,
+				(endCol - firstCol) * rows);
+	}
+
+	@Override
+	Grid newSnapshot() {
+		return new HeapGrid(cols, rows);
+	}
+}
@@ -3,24 +3,21 @@ package interpret;
 /**
  * A representation of one hex in a critter world.
  *
+ * A hex is a view of one cell of the world's {@link Grid}; it holds no
+ * state of its own. The world hands out one view per cell, so hexes can
+ * be compared with {@code ==}.
  */
 public class Hex implements SimObject {
 
-	int col, row;
-	public boolean isRock;
-	SimObject obj;
-	World w;
+	final int col, row;
+	final int cell; // index of this hex in the grid
+	final World w;
 	
-	public Hex(int col, int row, boolean isRock, World w) {
+	Hex(int col, int row, World w) {
 		this.col = col;
 		this.row = row;
-		this.isRock = isRock;
-		obj = null;
 		this.w = w;
-	}
-	
-	public Hex(int col, int row, World w) {
-		this(col, row, false,w);
+		cell = w.grid.index(col, row);
 	}
 	
 	public int getCol() {
@@ -31,6 +28,23 @@ public class Hex implements SimObject {
 		return row;
 	}
 	
+	public boolean isRock() {
+		return w.grid.occupant(cell) == Grid.ROCK;
+	}
+	
+	/**
+	 * Turn this hex into a rock, or a rock back into an empty hex.
+	 * This has no effect on a hex holding a critter or food.
+	 * 
+	 * @param rock: whether this hex should be a rock
+	 */
+	public void setRock(boolean rock) {
+		int o = w.grid.occupant(cell);
+		if (rock && o == Grid.EMPTY) w.grid.setRock(cell);
+		if (!rock && o == Grid.ROCK) w.grid.setEmpty(cell);
+		w.foodChanged(cell);
+	}
+	
 	/**
 	 * Get the 'status code' of this hex.
 	 * This 'status code' is the same value that a critter's
@@ -43,13 +57,7 @@ public class Hex implements SimObject {
 	 * n = -1: hex contains a rock
 	 */
 	public int getStatus() {
-		if (obj == null) 
-			return isRock ? -1 : 0;
-		if (obj instanceof Critter)
-			return ((Critter)obj).getState().getAppearance();
-		if (obj instanceof Food) return -1 - ((Food)obj).getValue();
-		throw new IllegalStateException("This hex is somehow not " +
-				"a rock, empty, food, or critter");
+		return w.grid.status(cell);
 	}
 	
 	/**
@@ -67,7 +75,11 @@ public class Hex implements SimObject {
 					"a critter or food to a hex");
 		
 		if (getStatus() != 0) return false; // space already occupied
-		obj = o;
+		if (o instanceof Critter) {
+			w.putCritter(cell, (Critter) o);
+		} else {
+			((Food) o).place(this);
+		}
 		return true;
 	}
 	
@@ -76,27 +88,43 @@ public class Hex implements SimObject {
 	 * 
 	 * Precondition: The occupant of this hex is not a rock.
 	 * 
-	 * @return the occupant of this hex.
+	 * @return the occupant of this hex. Food is returned
+	 * as a view of this hex, so changing its value changes
+	 * the food here.
 	 */
 	public SimObject getOccupant() {
-		return obj;
+		int o = w.grid.occupant(cell);
+		if (o > 0) return w.critter(o - 1);
+		if (o == Grid.FOOD) return new Food(this);
+		return null;
 	}
 	
+	/**
+	 * The amount of food on this hex, which must hold food. Unlike
+	 * {@code getOccupant}, this does not make a {@link Food} view.
+	 */
+	int foodValue() {
+		return -1 - w.grid.status(cell);
+	}
+
+	/**
+	 * Put {@code amount} food on this hex, which must be empty or
+	 * already hold food.
+	 */
+	void setFood(int amount) {
+		w.setFood(cell, amount);
+	}
+
 	/**
 	 * Remove the occupant of this hex.
 	 * 
 	 * @return false if the object to remove is a 'rock' or
 	 * there's nothing to remove, true otherwise.
 	 * 
-	 * Postcondition: the field obj (that holds the object
-	 * on this hex) is null.
+	 * Postcondition: this hex is empty.
 	 */
 	public boolean removeOccupant() {
-		if (isRock) return false; // can't remove a rock
-		if (obj == null) return false; // can't remove nothing
-		
-		obj = null;
-		return true;
+		return w.removeOccupant(cell);
 	}
 	
 	// methods from SimObject
@@ -108,7 +136,8 @@ public class Hex implements SimObject {
 		sb.append(",");
 		sb.append(row);
 		sb.append(")"+"\n");
-		if (isRock) {
+		SimObject obj = getOccupant();
+		if (isRock()) {
 			sb.append("is a rock.");
 		} else if (obj == null) {
 			sb.append("is empty.");
@@ -139,12 +168,13 @@ public class Hex implements SimObject {
 		
 		// TODO change this - above is for testing purposes only.
 		
-		if (isRock) {
+		int o = w.grid.occupant(cell);
+		if (o == Grid.ROCK) {
 			return "#";
-		} else if (obj == null) {
+		} else if (o == Grid.EMPTY) {
 			return "-";
-		} else if (obj instanceof Critter) {
-			return ((Critter)obj).toString();
+		} else if (o > 0) {
+			return w.critter(o - 1).toString();
 		} else {
 			// must have food
 			return "F";
@@ -35,8 +35,8 @@ public class Interpreter {
 		Action act = null;
 
 		List<Node> rules = p.getChildren();
-		for (cs.mem[5] = 1; cs.mem[5] < rules.size(); cs.mem[5]++) {
-			Rule r = (Rule) rules.get(cs.mem[5] - 1);
+		for (cs.setMem(5, 1); cs.mem(5) < rules.size(); cs.setMem(5, cs.mem(5) + 1)) {
+			Rule r = (Rule) rules.get(cs.mem(5) - 1);
 			if (isValid((Condition) r.fst())) {
 				Command cmd = (Command) r.snd();
 				act = process(cmd);
@@ -45,9 +45,9 @@ public class Interpreter {
 					return new Result(resultRule, act);
 				}
 			}
-			if (cs.mem[5] >= Constants.maxRulesPerTurn) break;
+			if (cs.mem(5) >= Constants.maxRulesPerTurn) break;
 		}
-		return new Result(null, new Action(TokenType.WAIT));
+		return Result.WAIT;
 	}
 	
 	/**
@@ -96,6 +96,15 @@ public class Interpreter {
 		}
 	}
 
+	/**
+	 * Evaluates the integer value of the expression {@code e}
+	 * in state {@code s}
+	 */
+	int evaluate(Expr e, CritterState s) {
+		cs = s;
+		return evaluateExpr(e);
+	}
+
 	/**
 	 * Evaluates the integer value of the expression {@code e}
 	 */
@@ -137,9 +146,7 @@ public class Interpreter {
 				return getCritterStateData(memSug);
 			}
 			int n = evaluateExpr((Expr) reg.fst());
-			if (n >= cs.mem.length)
-				return 0;
-			return cs.mem[n];
+			return cs.table.load(cs.row, n);
 		}
 		else if (e instanceof Sensor) {
 			Sensor s = (Sensor) e;
@@ -185,7 +192,7 @@ public class Interpreter {
 	}
 	
 	private int getSensorData(TokenType sensor, int n) {
-		if (sensor.equals(TokenType.SMELL)) return 0;
+		if (sensor.equals(TokenType.SMELL)) return cs.smell();
 		if (sensor.equals(TokenType.NEARBY)) {
 			int direction = n % 6;
 			return cs.nearby(direction);
@@ -196,7 +203,7 @@ public class Interpreter {
 		}
 		if (sensor.equals(TokenType.RANDOM)) {
 			if (n < 2) return 0;
-			return (new Random()).nextInt(n);
+			return cs.rand.nextInt(n);
 		}
 		throw new IllegalArgumentException("Invalid Sensor");
 	}
@@ -239,14 +246,12 @@ public class Interpreter {
 				return;
 			case "POSTURE":
 				if (value < 0 || value > 99) return;
-				cs.mem[7] = value;
+				cs.table.setMem(cs.row, 7, value);
 			}
 		}
 		else {
 			int n = evaluateExpr((Expr) reg.fst());
-			if (n >= cs.mem.length)
-				return;
-			cs.mem[n] = value;
+			cs.table.store(cs.row, n, value);
 		}
 	}
 
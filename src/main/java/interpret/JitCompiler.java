@@ -0,0 +1,434 @@
+package interpret;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static interpret.Bytecode.*;
+
+/**
+ * Translates {@link Bytecode} into a JVM class implementing
+ * {@link CompiledProgram}, so that hot programs run as code the JVM can
+ * inline and optimize instead of through the interpreter loop.
+ *
+ * Both instruction sets are stack machines, so each critter instruction
+ * maps to a short, fixed JVM sequence; anything more involved than an
+ * arithmetic or branch instruction calls a {@link JitSupport} helper.
+ * Classes are emitted in the Java 5 class file format, which does not
+ * require stack map frames, and each is defined in its own class loader
+ * so that it can be unloaded once its program is gone.
+ */
+class JitCompiler {
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private static final String SUPPORT = "interpret/JitSupport";
+	private static final String STATE = "interpret/CritterState";
+	private static final String STATE_DESC = "L" + STATE + ";";
+
+	// JVM opcodes
+	private static final int ICONST_M1 = 0x02, ICONST_0 = 0x03, ICONST_1 = 0x04,
+			BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, ALOAD_0 = 0x2a,
+			ALOAD_1 = 0x2b, J_POP = 0x57, DUP = 0x59, IADD = 0x60, ISUB = 0x64,
+			IMUL = 0x68, INEG = 0x74, IFEQ = 0x99, IFNE = 0x9a,
+			IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1,
+			IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4, GOTO = 0xa7,
+			TABLESWITCH = 0xaa, IRETURN = 0xac, RETURN = 0xb1,
+			INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+	private static final int MAX_CODE = Short.MAX_VALUE; // 16-bit branch offsets
+
+	private final Bytecode b;
+	private final ConstantPool pool = new ConstantPool();
+	private int[] offset; // JVM offset of each critter instruction
+	private int checkOffset; // JVM offset of the rule dispatch
+	private int waitOffset; // JVM offset of the "no action" return
+
+	JitCompiler(Bytecode b) {
+		this.b = b;
+	}
+
+	/**
+	 * Generate, load and instantiate the class for the program.
+	 *
+	 * @return the compiled program
+	 * @throws IllegalStateException if the program is too large to compile
+	 */
+	CompiledProgram compile() {
+		String name = "critterjit/Program" + counter.incrementAndGet();
+		byte[] classFile = classFile(name);
+		try {
+			Class<?> c = new Loader().define(name.replace('/', '.'), classFile);
+			return (CompiledProgram) c.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private byte[] classFile(String name) {
+		int thisClass = pool.classRef(name);
+		int superClass = pool.classRef("java/lang/Object");
+		int iface = pool.classRef("interpret/CompiledProgram");
+		byte[] init = initCode();
+		byte[] run = runCode();
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0); // minor version
+			out.writeShort(49); // Java 5: no stack map frames needed
+			int initName = pool.utf8("<init>"), initDesc = pool.utf8("()V");
+			int runName = pool.utf8("run"), runDesc = pool.utf8("(" + STATE_DESC + ")I");
+			int code = pool.utf8("Code");
+			pool.write(out);
+			out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(iface);
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+			method(out, initName, initDesc, code, 1, 1, init);
+			method(out, runName, runDesc, code, b.maxStack + 2, 2, run);
+			out.writeShort(0); // attributes
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void method(DataOutputStream out, int name, int desc, int codeAttr,
+			int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(0x0001); // public
+		out.writeShort(name);
+		out.writeShort(desc);
+		out.writeShort(1); // attributes
+		out.writeShort(codeAttr);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // attributes
+	}
+
+	private byte[] initCode() {
+		Code c = new Code(5);
+		c.u1(ALOAD_0);
+		c.u1(INVOKESPECIAL);
+		c.u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+		c.u1(RETURN);
+		return c.bytes();
+	}
+
+	/**
+	 * Lay out the run method: a prologue that sets PASS, a dispatch on the
+	 * rule selected by PASS, and then the translated rules. Offsets of all
+	 * instructions are computed first so that branches can be emitted in a
+	 * single pass.
+	 */
+	private byte[] runCode() {
+		int[] code = b.code;
+		int numRules = b.numRules();
+		checkOffset = 4;
+		int switchAt = checkOffset + 1 + pushSize(numRules) + 3;
+		int pad = 3 - (switchAt % 4);
+		waitOffset = switchAt + 1 + pad + 12 + 4 * (numRules + 1);
+
+		offset = new int[code.length + 1];
+		int at = waitOffset + 2;
+		for (int pc = 0; pc < code.length; pc = next(pc)) {
+			offset[pc] = at;
+			at += size(pc);
+		}
+		if (at > MAX_CODE) throw new IllegalStateException("Program too large");
+
+		Code c = new Code(at);
+		c.u1(ALOAD_1);
+		invokeStatic(c, "begin", "(" + STATE_DESC + ")V");
+		c.u1(ALOAD_1);
+		push(c, numRules);
+		invokeStatic(c, "rule", "(" + STATE_DESC + "I)I");
+		c.u1(TABLESWITCH);
+		for (int i = 0; i < pad; i++) c.u1(0);
+		c.u4(waitOffset - switchAt); // default
+		c.u4(-1);
+		c.u4(numRules - 1);
+		c.u4(waitOffset - switchAt); // rule -1: no rules left
+		for (int i = 0; i < numRules; i++) c.u4(offset[b.ruleStart[i]] - switchAt);
+		c.u1(ICONST_M1);
+		c.u1(IRETURN);
+		for (int pc = 0; pc < code.length; pc = next(pc)) translate(c, pc);
+		return c.bytes();
+	}
+
+	/** Location of the critter instruction following the one at {@code pc}. */
+	private int next(int pc) {
+		switch (b.code[pc]) {
+		case PUSH: case LOADK: case JFALSE: case JFALSE_OR_POP:
+		case JTRUE_OR_POP: case ACT:
+			return pc + 2;
+		default:
+			return pc + 1;
+		}
+	}
+
+	/** Size of the JVM code for the critter instruction at {@code pc}. */
+	private int size(int pc) {
+		int[] code = b.code;
+		switch (code[pc]) {
+		case PUSH: return pushSize(code[pc + 1]);
+		case LOADK: return 1 + pushSize(code[pc + 1]) + 3;
+		case DIV: case MOD: case JFALSE: return 3;
+		case ADD: case SUB: case MUL: case NEG: case POP: return 1;
+		case LT: case LE: case EQ: case GE: case GT: case NE: return 8;
+		case JFALSE_OR_POP: case JTRUE_OR_POP: return 5;
+		case ACT: return pushSize(code[pc + 1]) + 1;
+		case NEXT: return 9;
+		default: return 4; // aload_1 and a helper call
+		}
+	}
+
+	private void translate(Code c, int pc) {
+		int[] code = b.code;
+		switch (code[pc]) {
+		case PUSH:
+			push(c, code[pc + 1]);
+			break;
+		case LOAD:
+			helper(c, "load", "(I" + STATE_DESC + ")I");
+			break;
+		case LOADK:
+			c.u1(ALOAD_1);
+			push(c, code[pc + 1]);
+			c.u1(INVOKEVIRTUAL);
+			c.u2(pool.methodRef(STATE, "mem", "(I)I"));
+			break;
+		case NEARBY:
+			helper(c, "nearby", "(I" + STATE_DESC + ")I");
+			break;
+		case AHEAD:
+			helper(c, "ahead", "(I" + STATE_DESC + ")I");
+			break;
+		case RANDOM:
+			helper(c, "random", "(I" + STATE_DESC + ")I");
+			break;
+		case SMELL:
+			helper(c, "smell", "(" + STATE_DESC + ")I");
+			break;
+		case ADD: c.u1(IADD); break;
+		case SUB: c.u1(ISUB); break;
+		case MUL: c.u1(IMUL); break;
+		case NEG: c.u1(INEG); break;
+		case DIV: invokeStatic(c, "div", "(II)I"); break;
+		case MOD: invokeStatic(c, "mod", "(II)I"); break;
+		case LT: compare(c, IF_ICMPLT); break;
+		case LE: compare(c, IF_ICMPLE); break;
+		case EQ: compare(c, IF_ICMPEQ); break;
+		case GE: compare(c, IF_ICMPGE); break;
+		case GT: compare(c, IF_ICMPGT); break;
+		case NE: compare(c, IF_ICMPNE); break;
+		case JFALSE:
+			branch(c, IFEQ, offset[code[pc + 1]]);
+			break;
+		case JFALSE_OR_POP:
+		case JTRUE_OR_POP:
+			c.u1(DUP);
+			branch(c, code[pc] == JFALSE_OR_POP ? IFEQ : IFNE, offset[code[pc + 1]]);
+			c.u1(J_POP);
+			break;
+		case STORE:
+			helper(c, "store", "(II" + STATE_DESC + ")V");
+			break;
+		case POSTURE:
+			helper(c, "posture", "(I" + STATE_DESC + ")V");
+			break;
+		case POP:
+			c.u1(J_POP);
+			break;
+		case ACT:
+			push(c, code[pc + 1]);
+			c.u1(IRETURN);
+			break;
+		case NEXT:
+			c.u1(ALOAD_1);
+			invokeStatic(c, "next", "(" + STATE_DESC + ")Z");
+			branch(c, IFNE, checkOffset);
+			c.u1(ICONST_M1);
+			c.u1(IRETURN);
+			break;
+		default:
+			throw new IllegalStateException("Invalid instruction " + code[pc]);
+		}
+	}
+
+	/** Push the critter state and call a helper taking it as last argument. */
+	private void helper(Code c, String name, String desc) {
+		c.u1(ALOAD_1);
+		invokeStatic(c, name, desc);
+	}
+
+	private void invokeStatic(Code c, String name, String desc) {
+		c.u1(INVOKESTATIC);
+		c.u2(pool.methodRef(SUPPORT, name, desc));
+	}
+
+	private void branch(Code c, int op, int target) {
+		int at = c.length();
+		c.u1(op);
+		c.u2(target - at);
+	}
+
+	/** (a b -- a op b ? 1 : 0) in 8 bytes. */
+	private void compare(Code c, int op) {
+		int at = c.length();
+		branch(c, op, at + 7);
+		c.u1(ICONST_0);
+		branch(c, GOTO, at + 8);
+		c.u1(ICONST_1);
+	}
+
+	private static int pushSize(int k) {
+		if (k >= -1 && k <= 5) return 1;
+		if (k >= Byte.MIN_VALUE && k <= Byte.MAX_VALUE) return 2;
+		return 3; // sipush or ldc_w
+	}
+
+	private void push(Code c, int k) {
+		if (k >= -1 && k <= 5) {
+			c.u1(ICONST_0 + k);
+		} else if (k >= Byte.MIN_VALUE && k <= Byte.MAX_VALUE) {
+			c.u1(BIPUSH);
+			c.u1(k);
+		} else if (k >= Short.MIN_VALUE && k <= Short.MAX_VALUE) {
+			c.u1(SIPUSH);
+			c.u2(k);
+		} else {
+			c.u1(LDC_W);
+			c.u2(pool.integer(k));
+		}
+	}
+
+	/**
+	 * A growable buffer of JVM code.
+	 */
+	private static class Code {
+		private byte[] buf;
+		private int len;
+
+		Code(int capacity) {
+			buf = new byte[capacity];
+		}
+
+		void u1(int v) {
+			buf[len++] = (byte) v;
+		}
+
+		void u2(int v) {
+			u1(v >> 8);
+			u1(v);
+		}
+
+		void u4(int v) {
+			u2(v >> 16);
+			u2(v);
+		}
+
+		int length() {
+			return len;
+		}
+
+		byte[] bytes() {
+			assert len == buf.length : "JVM code size mismatch";
+			return buf;
+		}
+	}
+
+	/**
+	 * The constant pool of the generated class. Entries are deduplicated.
+	 */
+	private static class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> entries = new HashMap<>();
+		private int count = 1; // entry 0 is unused
+
+		int utf8(String s) {
+			return entry("U" + s, () -> {
+				out.writeByte(1);
+				out.writeUTF(s);
+			});
+		}
+
+		int integer(int v) {
+			return entry("I" + v, () -> {
+				out.writeByte(3);
+				out.writeInt(v);
+			});
+		}
+
+		int classRef(String name) {
+			int n = utf8(name);
+			return entry("C" + name, () -> {
+				out.writeByte(7);
+				out.writeShort(n);
+			});
+		}
+
+		int methodRef(String owner, String name, String desc) {
+			int c = classRef(owner);
+			int n = utf8(name);
+			int d = utf8(desc);
+			int nt = entry("N" + name + desc, () -> {
+				out.writeByte(12);
+				out.writeShort(n);
+				out.writeShort(d);
+			});
+			return entry("M" + owner + "." + name + desc, () -> {
+				out.writeByte(10);
+				out.writeShort(c);
+				out.writeShort(nt);
+			});
+		}
+
+		void write(DataOutputStream dest) throws IOException {
+			dest.writeShort(count);
+			bytes.writeTo(dest);
+		}
+
+		private int entry(String key, Writer w) {
+			Integer index = entries.get(key);
+			if (index != null) return index;
+			try {
+				w.write();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			entries.put(key, count);
+			return count++;
+		}
+
+		private interface Writer {
+			void write() throws IOException;
+		}
+	}
+
+	/**
+	 * A class loader holding a single generated class.
+	 */
+	private static class Loader extends ClassLoader {
+		Loader() {
+			super(JitCompiler.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package interpret;
+
+import model.Constants;
+
+/**
+ * Runtime helpers called by classes generated by {@link JitCompiler}.
+ * Generated classes live in their own class loader, so everything they
+ * touch must be public. Each helper mirrors one {@link Bytecode}
+ * instruction of the {@link VirtualMachine}.
+ */
+public final class JitSupport {
+
+	private JitSupport() {}
+
+	/** Start a turn: PASS := 1. */
+	public static void begin(CritterState cs) {
+		cs.table.fixed[5][cs.row] = 1;
+	}
+
+	/**
+	 * The rule to run next, or -1 if PASS has run past the last rule.
+	 */
+	public static int rule(CritterState cs, int numRules) {
+		int pass = cs.table.fixed[5][cs.row];
+		if (pass >= numRules) return -1;
+		if (pass < 1) throw new IndexOutOfBoundsException("Rule " + (pass - 1));
+		return pass - 1;
+	}
+
+	/**
+	 * Advance PASS after a rule without an action.
+	 *
+	 * @return false if the maximum number of rules per turn was reached
+	 */
+	public static boolean next(CritterState cs) {
+		int[] pass = cs.table.fixed[5];
+		if (pass[cs.row] >= Constants.maxRulesPerTurn) return false;
+		pass[cs.row]++;
+		return true;
+	}
+
+	public static int load(int i, CritterState cs) {
+		return cs.table.load(cs.row, i);
+	}
+
+	public static int nearby(int n, CritterState cs) {
+		return cs.nearby(n % 6);
+	}
+
+	public static int ahead(int n, CritterState cs) {
+		return cs.ahead(Math.max(n, 0));
+	}
+
+	public static int random(int n, CritterState cs) {
+		return n < 2 ? 0 : cs.rand.nextInt(n);
+	}
+
+	public static int smell(CritterState cs) {
+		return cs.smell();
+	}
+
+	public static int div(int a, int b) {
+		return b == 0 ? 0 : a / b;
+	}
+
+	public static int mod(int a, int b) {
+		return b == 0 ? 0 : a % b;
+	}
+
+	public static void store(int v, int i, CritterState cs) {
+		cs.table.store(cs.row, i, v);
+	}
+
+	public static void posture(int v, CritterState cs) {
+		if (v >= 0 && v <= 99) cs.table.fixed[7][cs.row] = v;
+	}
+}
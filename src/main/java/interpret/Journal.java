@@ -0,0 +1,149 @@
+package interpret;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import ast.Rule;
+
+/**
+ * A record of every step a {@link World} takes, from which a
+ * {@link Replay} can repeat the steps without running any critter
+ * programs. For each step it keeps the state of the world's random
+ * streams and, for each critter whose program ran, what the program
+ * decided (see {@link JournalStep}); what the actions then do follows
+ * from that.
+ *
+ * The journal file starts with
+ * <pre>
+ * magic version name seed time
+ * </pre>
+ * where {@code time} is the time of the world when recording started,
+ * followed by the steps in order. Steps are buffered and reach the file
+ * in large writes.
+ */
+public final class Journal implements AutoCloseable {
+
+	static final int MAGIC = 0x43524a4c; // "CRJL"
+	static final int VERSION = 1;
+
+	private final World w;
+	private final FileChannel ch;
+	private final ChannelWriter out;
+	private final JournalStep step = new JournalStep();
+	private boolean stepping;
+
+	/**
+	 * Record the steps of world {@code w} in {@code file}, replacing it,
+	 * until the journal is closed. Must not be called during
+	 * {@code advanceTime}.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public Journal(World w, Path file) throws IOException {
+		if (w.journal != null) throw new IllegalStateException("World is already recorded");
+		this.w = w;
+		ch = FileChannel.open(file, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		out = new ChannelWriter(ch);
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putString(w.getName());
+		out.putLong(w.getSeed());
+		out.putInt(w.getTime());
+		w.journal = this;
+	}
+
+	/**
+	 * Start recording a step; the time has just advanced.
+	 */
+	void begin() {
+		RandomService random = w.getRandom();
+		step.reset(w.registry().end());
+		step.time = w.getTime();
+		step.parallel = w.isParallel();
+		step.regionWidth = w.getRegionWidth();
+		step.streamsState = random.streams().state();
+		step.worldState = random.world().state();
+		stepping = true;
+	}
+
+	/**
+	 * Run the program of critter {@code c} and record what it decided.
+	 */
+	Result evaluate(VirtualMachine vm, Critter c) {
+		CritterState cs = c.getState();
+		int id = c.id;
+		int n = cs.memLength();
+		int[] ch = step.changes(id, 2 * n); // the old memory in the upper half
+		for (int i = 0; i < n; i++) ch[n * 2 + i] = cs.table.mem(cs.row, i);
+		long from = cs.rand.state();
+		Result r = vm.interpret(cs.p, cs);
+		cs.refresh();
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			int v = cs.table.mem(cs.row, i);
+			if (v == ch[n * 2 + i]) continue;
+			ch[k++] = i;
+			ch[k++] = v;
+		}
+		step.numChanges[id] = k;
+		Rule rule = r.getRule();
+		step.rule[id] = WorldSnapshot.ruleIndex(cs.p, rule);
+		step.draws[id] = (int) cs.rand.drawsSince(from);
+		step.action[id] = r.getAction().type;
+		step.add(id);
+		return r;
+	}
+
+	/**
+	 * Record the argument {@code value} of the action critter {@code c}
+	 * performs, evaluated from random state {@code from}.
+	 */
+	void argument(Critter c, int value, long from) {
+		if (!stepping || !step.has(c.id)) return;
+		step.value[c.id] = value;
+		step.argDraws[c.id] = (int) c.getState().rand.drawsSince(from);
+	}
+
+	/**
+	 * Finish recording a step.
+	 *
+	 * @throws UncheckedIOException if the journal can't be written
+	 */
+	void end() {
+		stepping = false;
+		try {
+			step.write(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't write journal", e);
+		}
+	}
+
+	/**
+	 * Write the steps recorded so far to the file.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Stop recording, and write the steps recorded to the file. Must not
+	 * be called during {@code advanceTime}.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (w.journal == this) w.journal = null;
+		try {
+			out.flush();
+		} finally {
+			ch.close();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package interpret;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import parse.TokenType;
+
+/**
+ * What the critters of a {@link World} decided in one time step: for each
+ * critter whose program ran, the rule chosen, the action performed and its
+ * argument, the memory locations the program changed, and how many random
+ * numbers the program and the argument drew from the critter's stream. Records are kept by critter id, so critters
+ * evaluated at the same time in a parallel step never share one.
+ *
+ * A step is written as
+ * <pre>
+ * time parallel regionWidth streamsState worldState numCritters
+ * (id rule draws action [value argDraws] numChanges (index value)...)...
+ * </pre>
+ * where the action is a byte, the ordinal of its {@link TokenType}, and
+ * the value and its draws are present only for actions that take an
+ * argument. To keep steps small, the numbers of each critter are written
+ * with {@link ChannelWriter#putVarInt}: the id as the difference from the
+ * previous critter's, the rule plus one so none is 0, and the values
+ * signed.
+ */
+final class JournalStep {
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	int time;
+	boolean parallel;
+	int regionWidth;
+	long streamsState, worldState;
+
+	// by critter id; a critter is part of the step if its mark is the
+	// current one
+	private int mark = 1;
+	private int[] marks = new int[0];
+	int[] rule = new int[0];
+	int[] draws = new int[0];
+	TokenType[] action = new TokenType[0];
+	int[] value = new int[0];
+	int[] argDraws = new int[0];
+	int[][] changes = new int[0][]; // pairs of index and new value
+	int[] numChanges = new int[0];
+
+	/**
+	 * Forget the critters of the previous step and make room for critter
+	 * ids up to {@code end}.
+	 */
+	void reset(int end) {
+		if (++mark == 0) {
+			Arrays.fill(marks, 0);
+			mark = 1;
+		}
+		grow(end);
+	}
+
+	private void grow(int end) {
+		if (marks.length < end) {
+			int n = Math.max(end, 2 * marks.length);
+			marks = Arrays.copyOf(marks, n);
+			rule = Arrays.copyOf(rule, n);
+			draws = Arrays.copyOf(draws, n);
+			action = Arrays.copyOf(action, n);
+			value = Arrays.copyOf(value, n);
+			argDraws = Arrays.copyOf(argDraws, n);
+			changes = Arrays.copyOf(changes, n);
+			numChanges = Arrays.copyOf(numChanges, n);
+		}
+	}
+
+	/**
+	 * Add critter {@code id} to this step.
+	 */
+	void add(int id) {
+		marks[id] = mark;
+	}
+
+	boolean has(int id) {
+		return id < marks.length && marks[id] == mark;
+	}
+
+	/**
+	 * Make room for {@code n} changes to the memory of critter {@code id}.
+	 */
+	int[] changes(int id, int n) {
+		int[] ch = changes[id];
+		if (ch == null || ch.length < 2 * n) ch = changes[id] = new int[2 * n];
+		return ch;
+	}
+
+	private static boolean takesArgument(TokenType t) {
+		return t == TokenType.TAG || t == TokenType.SERVE;
+	}
+
+	void write(ChannelWriter out) throws IOException {
+		out.putInt(time);
+		out.putByte(parallel ? 1 : 0);
+		out.putInt(regionWidth);
+		out.putLong(streamsState);
+		out.putLong(worldState);
+		int n = 0;
+		for (int id = 0; id < marks.length; id++) {
+			if (marks[id] == mark) n++;
+		}
+		out.putInt(n);
+		int last = 0;
+		for (int id = 0; id < marks.length; id++) {
+			if (marks[id] != mark) continue;
+			out.putVarInt(id - last);
+			last = id;
+			out.putVarInt(rule[id] + 1);
+			out.putVarInt(draws[id]);
+			out.putByte(action[id].ordinal());
+			if (takesArgument(action[id])) {
+				out.putSignedVarInt(value[id]);
+				out.putVarInt(argDraws[id]);
+			}
+			int k = numChanges[id];
+			out.putVarInt(k / 2);
+			int[] ch = changes[id];
+			for (int i = 0; i < k; i += 2) {
+				out.putVarInt(ch[i]);
+				out.putSignedVarInt(ch[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Read the next step from {@code in}.
+	 *
+	 * @return whether there was one
+	 * @throws IOException if {@code in} can't be read or holds something
+	 * else
+	 */
+	boolean read(ChannelReader in) throws IOException {
+		if (in.atEnd()) return false;
+		time = in.getInt();
+		parallel = in.getByte() != 0;
+		regionWidth = in.getInt();
+		streamsState = in.getLong();
+		worldState = in.getLong();
+		int n = in.getInt();
+		if (n < 0) throw new IOException("Corrupt journal");
+		reset(0);
+		int id = 0;
+		for (int i = 0; i < n; i++) {
+			id += in.getVarInt();
+			if (id < 0) throw new IOException("Corrupt journal");
+			grow(id + 1);
+			add(id);
+			rule[id] = in.getVarInt() - 1;
+			draws[id] = in.getVarInt();
+			int type = in.getByte();
+			if (type < 0 || type >= TYPES.length) throw new IOException("Corrupt journal");
+			action[id] = TYPES[type];
+			if (takesArgument(action[id])) {
+				value[id] = in.getSignedVarInt();
+				argDraws[id] = in.getVarInt();
+			}
+			int k = in.getVarInt();
+			if (k < 0) throw new IOException("Corrupt journal");
+			int[] ch = changes(id, k);
+			for (int j = 0; j < 2 * k; j += 2) {
+				ch[j] = in.getVarInt();
+				ch[j + 1] = in.getSignedVarInt();
+			}
+			numChanges[id] = 2 * k;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,155 @@
+package interpret;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import model.Constants;
+
+/**
+ * A {@link Grid} kept in a memory-mapped file, for worlds too large for
+ * the heap. Each cell is a fixed-width record of two {@code int}s, its
+ * status followed by its occupant, so the file holds
+ * {@code 8 * cols * rows} bytes. A single mapping can't exceed 2GB, so
+ * the file is mapped in chunks of {@code 2^CHUNK_BITS} cells.
+ */
+final class MappedGrid extends Grid {
+
+	private static final int RECORD = 8; // bytes per cell
+	private static final int CHUNK_BITS = 26; // 512MB per mapping
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] chunks;
+	private final boolean temporary;
+	private final Path file;
+
+	/**
+	 * Create a grid in {@code file}, replacing its contents.
+	 *
+	 * @throws UncheckedIOException if the file can't be mapped
+	 */
+	MappedGrid(int cols, int rows, Path file) {
+		this(cols, rows, file, false);
+	}
+
+	private MappedGrid(int cols, int rows, Path file, boolean temporary) {
+		super(cols, rows);
+		this.file = file;
+		this.temporary = temporary;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			long bytes = (long) size() * RECORD;
+			long chunkBytes = (long) RECORD << CHUNK_BITS;
+			chunks = new MappedByteBuffer[(int) ((bytes + chunkBytes - 1) / chunkBytes)];
+			for (int i = 0; i < chunks.length; i++) {
+				long at = i * chunkBytes;
+				// mapping past the end grows the file with zeros: empty cells
+				chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, at,
+						Math.min(chunkBytes, bytes - at));
+				chunks[i].order(ByteOrder.nativeOrder());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't map world grid " + file, e);
+		}
+		fillEdges();
+	}
+
+	private MappedByteBuffer chunk(int cell) {
+		return chunks[cell >>> CHUNK_BITS];
+	}
+
+	private static int offset(int cell) {
+		return (cell & CHUNK_MASK) * RECORD;
+	}
+
+	private void set(int cell, int status, int occupant) {
+		MappedByteBuffer b = chunk(cell);
+		int at = offset(cell);
+		b.putInt(at, status);
+		b.putInt(at + 4, occupant);
+		mark(cell);
+	}
+
+	@Override
+	int status(int cell) {
+		return chunk(cell).getInt(offset(cell));
+	}
+
+	@Override
+	int occupant(int cell) {
+		return chunk(cell).getInt(offset(cell) + 4);
+	}
+
+	@Override
+	void setEmpty(int cell) {
+		set(cell, 0, EMPTY);
+	}
+
+	@Override
+	void setRock(int cell) {
+		set(cell, Constants.rockValue, ROCK);
+	}
+
+	@Override
+	void setFood(int cell, int amount) {
+		set(cell, -1 - amount, FOOD);
+	}
+
+	@Override
+	void setCritter(int cell, int id, int appearance) {
+		set(cell, appearance, id + 1);
+	}
+
+	@Override
+	void setAppearance(int cell, int appearance) {
+		MappedByteBuffer b = chunk(cell);
+		int at = offset(cell);
+		if (b.getInt(at) == appearance) return;
+		b.putInt(at, appearance);
+		mark(cell);
+	}
+
+	/**
+	 * Copies whole records, a chunk at a time; the occupants come along
+	 * for free.
+	 */
+	@Override
+	void copyStatus(int firstCol, int endCol, Grid dst) {
+		MappedGrid d = (MappedGrid) dst;
+		int cell = firstCol * rows;
+		int end = endCol * rows;
+		while (cell < end) {
+			int n = Math.min(end - cell, CHUNK_MASK + 1 - (cell & CHUNK_MASK));
+			d.chunk(cell).put(offset(cell), chunk(cell), offset(cell), n * RECORD);
+			cell += n;
+		}
+	}
+
+	@Override
+	Grid newSnapshot() {
+		try {
+			Path tmp = Files.createTempFile("critterworld", ".snapshot");
+			return new MappedGrid(cols, rows, tmp, true);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't create snapshot grid", e);
+		}
+	}
+
+	@Override
+	void close() {
+		try {
+			channel.close();
+			if (temporary) Files.deleteIfExists(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
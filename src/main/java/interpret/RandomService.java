@@ -0,0 +1,59 @@
+package interpret;
+
+/**
+ * The source of every random choice made in a {@link World}, all derived
+ * from the world's seed. The world draws its own choices from one stream,
+ * and every critter gets a stream of its own, split off either from this
+ * service or from its parent's stream. Critters evaluated or committed on
+ * different threads therefore never share a generator, and a run started
+ * from the same seed makes the same choices whether it is stepped
+ * sequentially, in parallel, or replayed.
+ */
+final class RandomService {
+
+	private final long seed;
+	private final RandomStream world; // the world's own choices
+	private final RandomStream streams; // parent of the streams handed out
+
+	RandomService(long seed) {
+		this.seed = seed;
+		streams = new RandomStream(seed);
+		world = streams.split();
+	}
+
+	/**
+	 * Restore a service whose streams are in the given states, as saved
+	 * by a {@link WorldSnapshot}.
+	 */
+	RandomService(long seed, RandomStream streams, RandomStream world) {
+		this.seed = seed;
+		this.streams = streams;
+		this.world = world;
+	}
+
+	long seed() {
+		return seed;
+	}
+
+	/**
+	 * The stream of the world's own choices. Only the thread stepping the
+	 * world may use it.
+	 */
+	RandomStream world() {
+		return world;
+	}
+
+	/**
+	 * A new stream, independent of every other stream of this service.
+	 */
+	synchronized RandomStream split() {
+		return streams.split();
+	}
+
+	/**
+	 * The parent of the streams handed out by {@link #split()}.
+	 */
+	RandomStream streams() {
+		return streams;
+	}
+}
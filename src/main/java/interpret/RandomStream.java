@@ -0,0 +1,103 @@
+package interpret;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A splittable stream of random numbers, generating exactly the same
+ * numbers as {@link java.util.SplittableRandom} (the SplitMix64 algorithm),
+ * but whose state can be read and restored, so that a world saved in the
+ * middle of a run continues with the same choices.
+ *
+ * Like {@code SplittableRandom}, a stream is not thread-safe; streams
+ * split from it are independent of it and of each other.
+ */
+public final class RandomStream implements RandomGenerator {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long seed;
+	private final long gamma; // odd
+
+	/**
+	 * Make a stream generating the same numbers as
+	 * {@code new SplittableRandom(seed)}.
+	 */
+	public RandomStream(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Make a stream in the state given by {@link #state()} and
+	 * {@link #gamma()}.
+	 */
+	RandomStream(long seed, long gamma) {
+		if ((gamma & 1) == 0) throw new IllegalArgumentException("Even gamma " + gamma);
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	long state() {
+		return seed;
+	}
+
+	long gamma() {
+		return gamma;
+	}
+
+	/**
+	 * The number of numbers drawn since this stream was in state
+	 * {@code from}, given by {@link #state()}; a split counts as two.
+	 */
+	long drawsSince(long from) {
+		long inverse = gamma; // of gamma, correct to 3 bits since it's odd
+		for (int i = 0; i < 5; i++) inverse *= 2 - gamma * inverse;
+		return (seed - from) * inverse;
+	}
+
+	/**
+	 * Move this stream on as if {@code n} numbers had been drawn.
+	 */
+	void skip(long n) {
+		seed += n * gamma;
+	}
+
+	/**
+	 * Split off a new stream, as {@link java.util.SplittableRandom#split()}.
+	 */
+	public RandomStream split() {
+		return new RandomStream(nextLong(), mixGamma(nextSeed()));
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	@Override
+	public int nextInt() {
+		return mix32(nextSeed());
+	}
+
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,123 @@
+package interpret;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A vertical strip of columns of a {@link World}. During a parallel step
+ * each region is handled by one worker, which evaluates and commits the
+ * actions of the critters standing in the region.
+ *
+ * Critters never affect hexes more than two columns away from their own,
+ * so as long as regions are at least {@link #MIN_WIDTH} columns wide, two
+ * regions that are not adjacent can commit at the same time without
+ * touching the same hexes.
+ */
+class Region {
+
+	/** The narrowest region that can commit alongside its second neighbour. */
+	static final int MIN_WIDTH = 4;
+
+	final int firstCol; // first column of the region
+	final int endCol; // one past the last column of the region
+
+	/** The critters standing in this region, in the order they act. */
+	final ArrayList<Critter> critters = new ArrayList<Critter>();
+	/** Critters of this region that died in the current step. */
+	final ArrayList<Critter> dead = new ArrayList<Critter>();
+	/** Critters born while this region committed, in order of birth. */
+	final ArrayList<Critter> born = new ArrayList<Critter>();
+	// critters that crossed into the region to the left or right
+	final ArrayList<Critter> toLeft = new ArrayList<Critter>();
+	final ArrayList<Critter> toRight = new ArrayList<Critter>();
+
+	// cells where food or rocks changed while this region committed
+	int[] foodChanges = new int[16];
+	int numFoodChanges;
+
+	// the critters acting in the current step and their intended actions
+	Critter[] acting = new Critter[0];
+	Result[] intents = new Result[0];
+
+	Region(int firstCol, int endCol) {
+		this.firstCol = firstCol;
+		this.endCol = endCol;
+	}
+
+	boolean owns(int col) {
+		return col >= firstCol && col < endCol;
+	}
+
+	/**
+	 * Copy the statuses of this region's hexes into {@code view}.
+	 */
+	void capture(Grid grid, Grid view) {
+		grid.copyStatus(firstCol, endCol, view);
+	}
+
+	/**
+	 * Evaluate the programs of the critters in this region, recording
+	 * the actions they intend to perform.
+	 */
+	void evaluate(VirtualMachine vm) {
+		acting = critters.toArray(acting);
+		int n = critters.size();
+		if (intents.length < n) intents = new Result[acting.length];
+		for (int i = 0; i < n; i++) {
+			if (!acting[i].isAlive()) continue; // removed between steps
+			intents[i] = acting[i].getState().w.evaluate(vm, acting[i]);
+		}
+	}
+
+	/**
+	 * Move dead critters to {@link #dead}, and the critters that left this
+	 * region to the outgoing lists for its neighbours.
+	 */
+	void release() {
+		int kept = 0;
+		for (int i = 0; i < critters.size(); i++) {
+			Critter c = critters.get(i);
+			if (!c.isAlive()) {
+				dead.add(c);
+				continue;
+			}
+			CritterState cs = c.getState();
+			int col = cs.w.grid.col(cs.cell());
+			if (col < firstCol) toLeft.add(c);
+			else if (col >= endCol) toRight.add(c);
+			else critters.set(kept++, c);
+		}
+		critters.subList(kept, critters.size()).clear();
+	}
+
+	/**
+	 * Take in the critters that crossed over from the neighbouring
+	 * regions, which are {@code null} at the edges of the world.
+	 */
+	void admit(Region left, Region right) {
+		if (left != null) critters.addAll(left.toRight);
+		if (right != null) critters.addAll(right.toLeft);
+	}
+
+	/**
+	 * Record a change to the food on grid cell {@code cell}.
+	 */
+	void foodChanged(int cell) {
+		if (numFoodChanges == foodChanges.length)
+			foodChanges = Arrays.copyOf(foodChanges, 2 * numFoodChanges);
+		foodChanges[numFoodChanges++] = cell;
+	}
+
+	/**
+	 * Forget the critters of the current step.
+	 */
+	void finish() {
+		Arrays.fill(acting, null);
+		Arrays.fill(intents, null);
+		toLeft.clear();
+		toRight.clear();
+		born.clear();
+		dead.clear();
+		numFoodChanges = 0;
+	}
+}
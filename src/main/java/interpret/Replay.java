@@ -0,0 +1,137 @@
+package interpret;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+
+import ast.Action;
+import ast.Rule;
+import parse.TokenType;
+
+/**
+ * Repeats the steps recorded in a {@link Journal} on a world in the state
+ * the recorded world was in, such as one restored from a checkpoint taken
+ * while recording. Critter programs are not run: each critter makes the
+ * changes to its memory and its random stream that its program made, then
+ * performs the recorded action, so the world goes through exactly the
+ * states the recorded world went through.
+ */
+public final class Replay implements AutoCloseable {
+
+	private final World w;
+	private final FileChannel ch;
+	private final ChannelReader in;
+	private final JournalStep step = new JournalStep();
+	private boolean pending; // whether step holds a step not yet taken
+	private final EnumMap<TokenType, Action> actions = new EnumMap<TokenType, Action>(TokenType.class);
+
+	/**
+	 * Prepare to repeat the steps in journal {@code file} on world
+	 * {@code w}, from the step after its current time.
+	 *
+	 * @throws IOException if the journal can't be read, doesn't belong to
+	 * a world with {@code w}'s seed, or starts after {@code w}'s time
+	 */
+	public Replay(World w, Path file) throws IOException {
+		this.w = w;
+		ch = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			in = new ChannelReader(ch);
+			if (in.getInt() != Journal.MAGIC) throw new IOException(file + " is not a journal");
+			int version = in.getInt();
+			if (version != Journal.VERSION)
+				throw new IOException("Unsupported journal version " + version);
+			in.getString(); // name
+			if (in.getLong() != w.getSeed())
+				throw new IOException(file + " is the journal of another world");
+			if (in.getInt() > w.getTime())
+				throw new IOException(file + " starts after time " + w.getTime());
+			do {
+				pending = step.read(in);
+			} while (pending && step.time <= w.getTime());
+		} catch (IOException | RuntimeException e) {
+			ch.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Advance the world by the next step in the journal.
+	 *
+	 * @return whether there was one
+	 * @throws IOException if the journal can't be read
+	 * @throws IllegalStateException if the world doesn't match the
+	 * journal
+	 */
+	public boolean step() throws IOException {
+		if (!pending) pending = step.read(in);
+		if (!pending) return false;
+		if (step.time != w.getTime() + 1)
+			throw new IllegalStateException("Journal skips from time " + w.getTime() + " to " + step.time);
+		if (step.parallel != w.isParallel() || step.regionWidth != w.getRegionWidth())
+			throw new IllegalStateException("Step " + step.time + " was taken "
+					+ (step.parallel ? "in parallel, with regions " + step.regionWidth + " wide" : "sequentially"));
+		w.replay = this;
+		try {
+			w.advanceTime();
+		} finally {
+			w.replay = null;
+			pending = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Advance the world to time {@code time}.
+	 *
+	 * @throws IOException if the journal can't be read or ends first
+	 * @throws IllegalStateException if the world doesn't match the
+	 * journal
+	 */
+	public void stepTo(int time) throws IOException {
+		while (w.getTime() < time) {
+			if (!step()) throw new IOException("Journal ends at time " + w.getTime());
+		}
+	}
+
+	/**
+	 * Check that the world is where the step starts; the time has just
+	 * advanced.
+	 */
+	void begin() {
+		RandomService random = w.getRandom();
+		if (random.streams().state() != step.streamsState || random.world().state() != step.worldState)
+			throw new IllegalStateException("World doesn't match the journal at time " + step.time);
+	}
+
+	/**
+	 * Repeat what the program of critter {@code c} decided.
+	 */
+	Result evaluate(Critter c) {
+		int id = c.id;
+		if (!step.has(id))
+			throw new IllegalStateException("No critter " + id + " in the journal at time " + step.time);
+		CritterState cs = c.getState();
+		int[] ch = step.changes[id];
+		for (int i = 0; i < step.numChanges[id]; i += 2) cs.table.setMem(cs.row, ch[i], ch[i + 1]);
+		cs.rand.skip(step.draws[id]);
+		cs.refresh();
+		Rule rule = step.rule[id] < 0 ? null : (Rule) cs.p.getChildren().get(step.rule[id]);
+		return new Result(rule, actions.computeIfAbsent(step.action[id], Action::new));
+	}
+
+	/**
+	 * The argument of the action critter {@code c} performs.
+	 */
+	int argument(Critter c) {
+		c.getState().rand.skip(step.argDraws[c.id]);
+		return step.value[c.id];
+	}
+
+	@Override
+	public void close() throws IOException {
+		ch.close();
+	}
+}
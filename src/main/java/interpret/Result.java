@@ -10,6 +10,11 @@ import parse.TokenType;
  */
 public class Result {
 
+	private static final Action WAIT_ACTION = new Action(TokenType.WAIT);
+
+	/** The result of a turn in which no rule performed an action. */
+	static final Result WAIT = new Result(null, WAIT_ACTION);
+
 	private Rule r;
 	private Action a;
 	
@@ -24,7 +29,7 @@ public class Result {
    }
    
    public Action getAction() {
-	   if (a == null) return new Action(TokenType.WAIT);
+	   if (a == null) return WAIT_ACTION;
 	   return a;
    }
 }
@@ -0,0 +1,136 @@
+package interpret;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs a {@link World} on a thread of its own, so that a view drawing the
+ * world doesn't hold up stepping it and the other way round.
+ *
+ * After each step the simulation thread publishes a {@link Frame} of what
+ * changed through a {@link FrameSlot}, which the view takes at its own
+ * rate. If the view hasn't taken the last frame yet, no new one is
+ * published; the changes are kept for the next frame instead, so frames
+ * can be skipped without losing any hex.
+ *
+ * While the simulation runs, the world belongs to its thread, and other
+ * threads may only reach it through {@link #execute}. Once {@link #pause}
+ * returns, the world belongs to the thread that paused it until
+ * {@link #run} is called again.
+ */
+public final class Simulation {
+
+	private final World w;
+	private final FrameSlot<Frame> frames = new FrameSlot<Frame>();
+	private final ConcurrentLinkedQueue<Consumer<World>> tasks
+			= new ConcurrentLinkedQueue<Consumer<World>>();
+	private final Thread thread;
+
+	private volatile long period = -1; // nanoseconds per step, or -1 if paused
+	private volatile boolean stepping; // whether the thread may be using the world
+	private volatile boolean stopped;
+
+	/**
+	 * Make a paused simulation of world {@code w}.
+	 */
+	public Simulation(World w) {
+		this.w = w;
+		thread = new Thread(this::loop, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public World getWorld() {
+		return w;
+	}
+
+	/**
+	 * Start stepping the world, or change how fast it's stepped.
+	 *
+	 * @param nanos: the time between the starts of successive steps, in
+	 * nanoseconds; 0 steps as fast as possible
+	 */
+	public void run(long nanos) {
+		if (nanos < 0) throw new IllegalArgumentException("Negative period " + nanos);
+		if (stopped) throw new IllegalStateException("Simulation stopped");
+		period = nanos;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Stop stepping the world, waiting for the step in progress to finish.
+	 * Tasks passed to {@link #execute} that haven't run yet are run by the
+	 * calling thread before this returns.
+	 */
+	public void pause() {
+		period = -1;
+		// the thread sets stepping before reading period, so either it sees
+		// the pause or this sees it stepping
+		while (stepping) Thread.onSpinWait();
+		runTasks();
+	}
+
+	/**
+	 * Whether the world is being stepped.
+	 */
+	public boolean isRunning() {
+		return period >= 0;
+	}
+
+	/**
+	 * Pause the simulation for good and let its thread finish.
+	 */
+	public void stop() {
+		stopped = true;
+		pause();
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Run {@code task} on the world between two steps. If the simulation is
+	 * paused, the task runs when it's resumed or, if it's paused again
+	 * first, when {@link #pause} is called.
+	 */
+	public void execute(Consumer<World> task) {
+		tasks.add(task);
+	}
+
+	/**
+	 * Take the latest frame published.
+	 *
+	 * @return the frame, or {@code null} if none was published since the
+	 * last one was taken
+	 */
+	public Frame pollFrame() {
+		return frames.poll();
+	}
+
+	private void runTasks() {
+		Consumer<World> t;
+		while ((t = tasks.poll()) != null) t.accept(w);
+	}
+
+	private void loop() {
+		long next = System.nanoTime();
+		while (!stopped) {
+			stepping = true;
+			long p = period;
+			if (p < 0) {
+				stepping = false;
+				LockSupport.park(this);
+				next = System.nanoTime();
+				continue;
+			}
+			runTasks();
+			w.advanceTime();
+			if (frames.isEmpty()) frames.offer(w.takeFrame());
+			stepping = false;
+
+			next += p;
+			long wait = next - System.nanoTime();
+			if (wait > 0) LockSupport.parkNanos(this, wait);
+			else next = System.nanoTime();
+		}
+	}
+}
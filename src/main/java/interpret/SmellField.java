@@ -0,0 +1,178 @@
+package interpret;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import model.Constants;
+
+/**
+ * The distance from every hex of a {@link World} to the nearest food, as
+ * sensed by {@code smell}. Distances are counted in steps from hex to
+ * hex, around rocks but through critters, and only up to
+ * {@link Constants#maxSmellDistance}; food further away can't be smelled.
+ *
+ * The field is kept up to date as food and rocks come and go. A change
+ * can only affect the distances of hexes within smelling distance of it,
+ * so only those are recomputed, and a critter smelling is a lookup of its
+ * own hex and its neighbours.
+ */
+final class SmellField {
+
+	/** What {@code smell} senses when there is no food in range. */
+	static final int NONE = 1000000;
+
+	private static final int MAX = Constants.maxSmellDistance;
+	private static final int FAR = MAX + 1; // distance of hexes out of range
+	private static final int WALL = -1; // distance of rocks
+	private static final int MARK = -2; // hexes being recomputed
+
+	private final World w;
+	private final int[] dist; // by cell: WALL, or the distance up to FAR
+
+	// scratch space for recomputing the hexes around a change: no more
+	// than 1 + 3 * MAX * (MAX + 1) hexes are within MAX steps
+	private final int[] ball = new int[1 + 3 * MAX * (MAX + 1)];
+	private final int[] depth = new int[ball.length];
+
+	/**
+	 * Make the field of the hexes of world {@code w}, which must be kept
+	 * in a heap grid.
+	 */
+	SmellField(World w) {
+		this.w = w;
+		Grid g = w.grid;
+		dist = new int[g.size()];
+		int[] queue = new int[g.size()];
+		int head = 0, tail = 0;
+		for (int cell = 0; cell < dist.length; cell++) {
+			int o = g.occupant(cell);
+			dist[cell] = o == Grid.ROCK ? WALL : o == Grid.FOOD ? 0 : FAR;
+			if (o == Grid.FOOD) queue[tail++] = cell;
+		}
+		while (head < tail) {
+			int cell = queue[head++];
+			int d = dist[cell] + 1;
+			if (d > MAX) continue;
+			for (int dir = 0; dir < 6; dir++) {
+				int n = w.neighbour(cell, dir);
+				if (n != Grid.OFF && dist[n] > d) {
+					dist[n] = d;
+					queue[tail++] = n;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The smell sensed from {@code cell} by a critter facing {@code facing}:
+	 * 1000 times the distance to the nearest food plus the direction, relative
+	 * to {@code facing}, of the first step towards it, or {@link #NONE}.
+	 * Ties go to the direction closest to {@code facing}, turning right.
+	 */
+	int smell(int cell, int facing) {
+		int d = dist[cell];
+		if (d <= 0 || d > MAX) return d == 0 ? 0 : NONE;
+		for (int k = 0; k < 6; k++) {
+			int n = w.neighbour(cell, (facing + k) % 6);
+			if (n != Grid.OFF && dist[n] == d - 1) return 1000 * d + k;
+		}
+		throw new IllegalStateException("Inconsistent smell at cell " + cell);
+	}
+
+	/**
+	 * Bring the field up to date after the occupant of {@code cell} may
+	 * have changed.
+	 */
+	void refresh(int cell) {
+		int o = w.grid.occupant(cell);
+		int was = dist[cell];
+		if (o == Grid.ROCK ? was == WALL : o == Grid.FOOD ? was == 0 : was > 0)
+			return; // still a rock, food or neither
+
+		// every hex whose distance may have changed is within MAX steps
+		// of the change along hexes that aren't rocks
+		ball[0] = cell;
+		depth[0] = 0;
+		dist[cell] = MARK;
+		int size = 1;
+		for (int i = 0; i < size; i++) {
+			if (depth[i] == MAX) continue;
+			for (int dir = 0; dir < 6; dir++) {
+				int n = w.neighbour(ball[i], dir);
+				if (n == Grid.OFF || dist[n] == WALL || dist[n] == MARK) continue;
+				dist[n] = MARK;
+				ball[size] = n;
+				depth[size++] = depth[i] + 1;
+			}
+		}
+
+		// start from the food in the ball and the distances just outside it,
+		// which are unaffected
+		for (int i = 0; i < size; i++) {
+			int c = ball[i];
+			int oc = w.grid.occupant(c);
+			dist[c] = oc == Grid.ROCK ? WALL : oc == Grid.FOOD ? 0 : FAR;
+		}
+		for (int i = 0; i < size; i++) {
+			int c = ball[i];
+			if (dist[c] <= 0) continue;
+			for (int dir = 0; dir < 6; dir++) {
+				int n = w.neighbour(c, dir);
+				if (n != Grid.OFF && dist[n] >= 0 && dist[n] + 1 < dist[c])
+					dist[c] = dist[n] + 1;
+			}
+		}
+
+		// then spread distances through the ball in increasing order
+		for (int d = 0; d < MAX; d++) {
+			for (int i = 0; i < size; i++) {
+				int c = ball[i];
+				if (dist[c] != d) continue;
+				for (int dir = 0; dir < 6; dir++) {
+					int n = w.neighbour(c, dir);
+					if (n != Grid.OFF && dist[n] > d + 1) dist[n] = d + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the smell sensed from {@code cell} of world {@code w} by a
+	 * critter facing {@code facing} by searching the hexes around it, for
+	 * worlds too large to keep a field for. Gives the same result as
+	 * {@link #smell}.
+	 */
+	static int search(World w, int cell, int facing) {
+		if (w.grid.occupant(cell) == Grid.FOOD) return 0;
+
+		// the first step (relative to facing) on a shortest path to each
+		// hex of the current level, preferring the smallest
+		HashMap<Integer, Integer> step = new HashMap<Integer, Integer>();
+		step.put(cell, -1);
+		ArrayList<Integer> level = new ArrayList<Integer>();
+		level.add(cell);
+		for (int d = 1; d <= MAX && !level.isEmpty(); d++) {
+			ArrayList<Integer> next = new ArrayList<Integer>();
+			HashMap<Integer, Integer> nextStep = new HashMap<Integer, Integer>();
+			for (int c : level) {
+				for (int k = 0; k < 6; k++) {
+					int n = w.neighbour(c, (facing + k) % 6);
+					if (n == Grid.OFF || step.containsKey(n)
+							|| w.grid.occupant(n) == Grid.ROCK) continue;
+					int first = d == 1 ? k : step.get(c);
+					Integer old = nextStep.get(n);
+					if (old == null) next.add(n);
+					if (old == null || first < old) nextStep.put(n, first);
+				}
+			}
+			int best = 6;
+			for (int n : next) {
+				if (w.grid.occupant(n) == Grid.FOOD) best = Math.min(best, nextStep.get(n));
+			}
+			if (best < 6) return 1000 * d + best;
+			step.putAll(nextStep);
+			level = next;
+		}
+		return NONE;
+	}
+}
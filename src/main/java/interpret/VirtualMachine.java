@@ -0,0 +1,195 @@
+package interpret;
+
+import ast.Expr;
+import ast.ProgramImpl;
+import model.Constants;
+
+import static interpret.Bytecode.*;
+
+/**
+ * Executes critter programs compiled to {@link Bytecode}. This produces
+ * the same results as the tree-walking {@link Interpreter}, but without
+ * visiting AST nodes: each turn is a single loop over an integer array.
+ *
+ * A virtual machine keeps a reusable operand stack, so an instance must
+ * not be shared between threads.
+ */
+public class VirtualMachine {
+
+	private int[] stack = new int[16];
+	private final Interpreter interpreter = new Interpreter(); // for action arguments
+
+	/**
+	 * Execute program {@code p} for critter state {@code cs}, with the same
+	 * semantics as {@link Interpreter#interpret}. Programs that have been
+	 * run often enough are handed to their JIT-compiled form. The results
+	 * are shared, so this allocates nothing.
+	 *
+	 * @param p the program to execute
+	 * @param cs the state in which to execute it
+	 * @return a {@code Result} containing the action to be performed and the
+	 *         rule in which the action occurred
+	 */
+	public Result interpret(ProgramImpl p, CritterState cs) {
+		if (p == null) return Result.WAIT;
+		Bytecode b = Bytecode.of(p);
+		CompiledProgram jit = b.jit();
+		int act = jit != null ? jit.run(cs) : execute(b, cs);
+		return act < 0 ? Result.WAIT : b.results[act];
+	}
+
+	/**
+	 * Evaluate the argument {@code e} of an action in state {@code cs}.
+	 */
+	int evaluate(Expr e, CritterState cs) {
+		return interpreter.evaluate(e, cs);
+	}
+
+	/**
+	 * Execute one turn of bytecode {@code b} in this virtual machine.
+	 *
+	 * @return the index of the action performed, or -1 if no rule
+	 *         performed an action
+	 */
+	int execute(Bytecode b, CritterState cs) {
+		if (stack.length < b.maxStack) stack = new int[b.maxStack];
+		final int[] pass = cs.table.fixed[5];
+		final int row = cs.row;
+		int n = b.numRules();
+		for (pass[row] = 1; pass[row] < n; pass[row]++) {
+			int act = run(b, pass[row] - 1, cs);
+			if (act >= 0) return act;
+			if (pass[row] >= Constants.maxRulesPerTurn) break;
+		}
+		return -1;
+	}
+
+	/**
+	 * Run the code of one rule.
+	 *
+	 * @return the index of the action performed, or -1 if the rule did not
+	 *         perform an action
+	 */
+	private int run(Bytecode b, int rule, CritterState cs) {
+		final int[] code = b.code;
+		final int[] st = stack;
+		final CritterTable t = cs.table;
+		final int[][] fixed = t.fixed;
+		final int row = cs.row;
+		int pc = b.ruleStart[rule];
+		int sp = 0; // number of values on the stack
+		while (true) {
+			switch (code[pc++]) {
+			case PUSH:
+				st[sp++] = code[pc++];
+				break;
+			case LOAD: {
+				st[sp - 1] = t.load(row, st[sp - 1]);
+				break;
+			}
+			case LOADK:
+				st[sp++] = fixed[code[pc++]][row];
+				break;
+			case NEARBY:
+				st[sp - 1] = cs.nearby(st[sp - 1] % 6);
+				break;
+			case AHEAD:
+				st[sp - 1] = cs.ahead(Math.max(st[sp - 1], 0));
+				break;
+			case RANDOM: {
+				int m = st[sp - 1];
+				st[sp - 1] = m < 2 ? 0 : cs.rand.nextInt(m);
+				break;
+			}
+			case SMELL:
+				st[sp++] = cs.smell();
+				break;
+			case ADD:
+				sp--;
+				st[sp - 1] += st[sp];
+				break;
+			case SUB:
+				sp--;
+				st[sp - 1] -= st[sp];
+				break;
+			case MUL:
+				sp--;
+				st[sp - 1] *= st[sp];
+				break;
+			case DIV:
+				sp--;
+				st[sp - 1] = st[sp] == 0 ? 0 : st[sp - 1] / st[sp];
+				break;
+			case MOD:
+				sp--;
+				st[sp - 1] = st[sp] == 0 ? 0 : st[sp - 1] % st[sp];
+				break;
+			case NEG:
+				st[sp - 1] = -st[sp - 1];
+				break;
+			case LT:
+				sp--;
+				st[sp - 1] = st[sp - 1] < st[sp] ? 1 : 0;
+				break;
+			case LE:
+				sp--;
+				st[sp - 1] = st[sp - 1] <= st[sp] ? 1 : 0;
+				break;
+			case EQ:
+				sp--;
+				st[sp - 1] = st[sp - 1] == st[sp] ? 1 : 0;
+				break;
+			case GE:
+				sp--;
+				st[sp - 1] = st[sp - 1] >= st[sp] ? 1 : 0;
+				break;
+			case GT:
+				sp--;
+				st[sp - 1] = st[sp - 1] > st[sp] ? 1 : 0;
+				break;
+			case NE:
+				sp--;
+				st[sp - 1] = st[sp - 1] != st[sp] ? 1 : 0;
+				break;
+			case JFALSE:
+				if (st[--sp] == 0) pc = code[pc];
+				else pc++;
+				break;
+			case JFALSE_OR_POP:
+				if (st[sp - 1] == 0) pc = code[pc];
+				else {
+					sp--;
+					pc++;
+				}
+				break;
+			case JTRUE_OR_POP:
+				if (st[sp - 1] != 0) pc = code[pc];
+				else {
+					sp--;
+					pc++;
+				}
+				break;
+			case STORE: {
+				int i = st[--sp];
+				int v = st[--sp];
+				t.store(row, i, v);
+				break;
+			}
+			case POSTURE: {
+				int v = st[--sp];
+				if (v >= 0 && v <= 99) fixed[7][row] = v;
+				break;
+			}
+			case POP:
+				sp--;
+				break;
+			case ACT:
+				return code[pc];
+			case NEXT:
+				return -1;
+			default:
+				throw new IllegalStateException("Invalid instruction " + code[pc - 1]);
+			}
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package interpret;
 
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import ast.Action;
 import ast.Expr;
@@ -11,54 +15,176 @@ import model.Constants;
  * A representation of a critter world.
  */
 public class World implements SimObject {
-	private ArrayList<Critter> critters;
-	private Hex[][] grid; // goes [cols][rows]
+	private final CritterRegistry critters = new CritterRegistry();
+	final Grid grid;
+	private final Hex[] views; // the view of each cell of a heap grid, made when first asked for
+	private final Map<Integer, WeakReference<Hex>> mappedViews; // views of a mapped grid
+	private int expungeAt = 1024; // number of mapped views at which to drop dead ones
+	final CritterTable table = new CritterTable(16); // critter states by registry id
+	private final int[] neighbours; // see Grid.neighbourTable, null for mapped grids
+	private final SmellField smell; // null for mapped grids
 	private int cols;
 	private int rows;
 	private int timeElapsed;
-	private static Random r;
+	private final RandomService random;
+	private final RandomStream r; // the world's own choices
 	private String name;
 
+	// two-phase parallel stepping
+	private boolean parallel;
+	private int regionWidth = 32;
+	private Region[] regions; // built when a parallel step first needs them
+	private Grid snapshot; // statuses at the start of a parallel step
+	private Grid view; // the snapshot, while programs are being evaluated
+	private final ThreadLocal<VirtualMachine> vms =
+			ThreadLocal.withInitial(VirtualMachine::new);
+	private final ThreadLocal<Region> committing = new ThreadLocal<Region>();
+	// ids from here up name critters born while regions commit in parallel,
+	// until they get registry slots in region order once the step is over
+	private static final int PENDING = 1 << 30;
+
+	Journal journal; // recording the steps, or null
+	Replay replay; // repeating recorded steps, or null
+
 	/**
 	 * Create a default world of the default size,
 	 * no critters, and randomly-placed rocks.
 	 */
 	public World() {
-		this("default", Constants.columns, Constants.rows);
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Create a default world whose rocks, like all its other random
+	 * choices, are derived from {@code seed}.
+	 */
+	public World(long seed) {
+		this("default", Constants.columns, Constants.rows, seed);
 		addRandomRocks(r.nextInt(getCols()) * r.nextInt(getRows()));
 	}
 
 	public World(String name, int cols, int rows) {
+		this(name, cols, rows, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Create a world whose random choices are all derived from
+	 * {@code seed}, so that runs with the same seed are reproducible.
+	 */
+	public World(String name, int cols, int rows, long seed) {
+		this(name, new HeapGrid(cols, rows), seed);
+	}
+
+	/**
+	 * Create a world whose hexes are kept in the memory-mapped file
+	 * {@code gridFile} instead of on the heap, for worlds too large to
+	 * fit there. Any previous contents of the file are lost. Hex objects
+	 * are only made when asked for, and don't outlive their users.
+	 * 
+	 * @throws java.io.UncheckedIOException if the file can't be mapped
+	 */
+	public World(String name, int cols, int rows, long seed, Path gridFile) {
+		this(name, new MappedGrid(cols, rows, gridFile), seed);
+	}
+
+	private World(String name, Grid grid, long seed) {
+		this(name, grid, new RandomService(seed));
+	}
+
+	/**
+	 * Create a world around {@code grid}, which may already hold rocks,
+	 * food and critters, drawing its random choices from {@code random}.
+	 */
+	World(String name, Grid grid, RandomService random) {
 		
 		// initialize
-		critters = new ArrayList<Critter>();
-		r = new Random();
-		this.cols = cols;
-		this.rows = rows;
-
-		// create the grid
-		grid = new Hex[cols][rows];
-		for(int i = 0; i < cols; i++) {
-			for(int j = 0; j < rows; j++) {
-				grid[i][j] = new Hex(i,j, false, this); 
-			}
-		}
-
-		// Start invalidating hexes that are off the world
+		this.random = random;
+		r = random.world();
+		cols = grid.cols;
+		rows = grid.rows;
 
-		for (int c = 0; c < grid.length; c++) {
-			for (int r = 0; r < grid[c].length; r++) {
-				if (((2 * r) - c) < 0)
-					grid[c][r] = null;
-				if (((2 * r) - c) >= (2 * rows - cols))
-					grid[c][r] = null;
-			}
+		// hexes off the world are rocks without a view
+		this.grid = grid;
+		grid.dirty = new DirtyCells(grid.size());
+		if (grid instanceof HeapGrid) {
+			views = new Hex[grid.size()];
+			mappedViews = null;
+			neighbours = grid.neighbourTable();
+			smell = new SmellField(this);
+		} else {
+			views = null;
+			mappedViews = new ConcurrentHashMap<Integer, WeakReference<Hex>>();
+			neighbours = null;
+			smell = null;
 		}
 	
 		timeElapsed = 0;
 		this.name = name;
 	}
 	
+	public long getSeed() {
+		return random.seed();
+	}
+
+	/**
+	 * The random number service of this world.
+	 */
+	RandomService getRandom() {
+		return random;
+	}
+
+	/**
+	 * Get a new random stream derived from the seed of this world, for
+	 * choices made on its behalf, such as where to place critters. A run
+	 * that makes the same requests in the same order is reproducible.
+	 */
+	public RandomStream newRandom() {
+		return random.split();
+	}
+
+	/**
+	 * Set whether {@code advanceTime} evaluates critter programs in
+	 * parallel. See {@link #advanceTime()}.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+		if (!parallel) regions = null; // critters moving would leave them stale
+	}
+
+	/**
+	 * Set the number of columns in each region of a parallel step. The
+	 * last region also takes any leftover columns.
+	 *
+	 * @param width: the width of the regions, at least
+	 * {@link Region#MIN_WIDTH}
+	 */
+	public void setRegionWidth(int width) {
+		if (width < Region.MIN_WIDTH)
+			throw new IllegalArgumentException("Regions must be at least "
+					+ Region.MIN_WIDTH + " columns wide");
+		regionWidth = width;
+		regions = null;
+	}
+
+	/**
+	 * The number of regions the world is split into for parallel steps.
+	 */
+	public int getRegionCount() {
+		return Math.max(1, cols / regionWidth);
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public int getRegionWidth() {
+		return regionWidth;
+	}
+
+	public String getName() {
+		return name;
+	}
+
 	public int getCols() {
 		return cols;
 	}
@@ -67,12 +193,159 @@ public class World implements SimObject {
 		return rows;
 	}
 
+	/**
+	 * Give critter {@code c} an id, if it doesn't have one yet, and move
+	 * its state into the row of the critter table with that id.
+	 *
+	 * Critters born while regions commit in parallel are only given a
+	 * pending id, naming their place in the {@code born} list of their
+	 * region, and get a slot in the registry and table once the step is
+	 * over. Slots are then handed out in region order, so the ids of
+	 * newborns don't depend on which region committed first.
+	 * 
+	 * @return the id of {@code c}
+	 */
+	int register(Critter c) {
+		if (c.id >= 0) return c.id;
+		Region r = committing.get();
+		if (r == null) return assignId(c);
+		int n = regions.length;
+		c.id = PENDING + r.born.size() * n + r.firstCol / regionWidth;
+		r.born.add(c);
+		return c.id;
+	}
+
+	private synchronized int assignId(Critter c) {
+		int id = critters.add(c, timeElapsed);
+		c.id = id;
+		c.getState().moveTo(table, id);
+		return id;
+	}
+
+	/**
+	 * Put critter {@code c}, restored by a {@link WorldSnapshot}, back in
+	 * slot {@code id} of the registry, whose slots must already have been
+	 * restored.
+	 */
+	void restoreCritter(Critter c, int id) {
+		critters.put(id, c);
+		c.id = id;
+		c.getState().moveTo(table, id);
+	}
+
+	/**
+	 * The registry of the critters of this world.
+	 */
+	CritterRegistry registry() {
+		return critters;
+	}
+
+	/**
+	 * Set the number of time steps elapsed, when restoring a world.
+	 */
+	void setTime(int time) {
+		timeElapsed = time;
+	}
+
+	/**
+	 * The registry ids of the critters in each region of a parallel step,
+	 * in the order they act, or {@code null} if the regions haven't been
+	 * built. Only meaningful between steps.
+	 */
+	int[][] regionOrder() {
+		if (regions == null) return null;
+		int[][] order = new int[regions.length][];
+		for (int i = 0; i < regions.length; i++) {
+			ArrayList<Critter> cs = regions[i].critters;
+			order[i] = new int[cs.size()];
+			for (int j = 0; j < cs.size(); j++) order[i][j] = cs.get(j).id;
+		}
+		return order;
+	}
+
+	/**
+	 * Rebuild the regions of a parallel step with the critters in the order
+	 * given by {@link #regionOrder()}, which must be for the current region
+	 * width.
+	 */
+	void restoreRegions(int[][] order) {
+		if (order.length != getRegionCount())
+			throw new IllegalArgumentException("Expected " + getRegionCount()
+					+ " regions, not " + order.length);
+		int n = order.length;
+		Region[] rs = new Region[n];
+		for (int i = 0; i < n; i++) {
+			rs[i] = new Region(i * regionWidth, i + 1 < n ? (i + 1) * regionWidth : cols);
+			for (int id : order[i]) rs[i].critters.add(critters.get(id));
+		}
+		regions = rs;
+	}
+
+	/**
+	 * Free the id of critter {@code c}, which has left the world.
+	 */
+	private synchronized void release(Critter c) {
+		if (c.id < 0) return;
+		CritterState cs = c.getState();
+		if (cs.table == table) {
+			cs.detach();
+			table.free(c.id);
+		}
+		critters.remove(c.id);
+		c.id = -1;
+	}
+
+	/**
+	 * Get the critter with id {@code id}, which may be pending (see
+	 * {@link #register}).
+	 */
+	Critter critter(int id) {
+		if (id < PENDING) return critters.get(id);
+		Region[] rs = regions;
+		int k = id - PENDING;
+		return rs[k % rs.length].born.get(k / rs.length);
+	}
+
+	/**
+	 * Get an identifier for critter {@code c} that stays the same while
+	 * it is part of this world, and never names another critter.
+	 * 
+	 * @return the identifier, or -1 if {@code c} is not in this world
+	 */
+	public long getCritterId(Critter c) {
+		return c.id < 0 || c.id >= PENDING || c.getWorld() != this ? -1 : critters.handle(c.id);
+	}
+
+	/**
+	 * Get the critter with identifier {@code id} (see
+	 * {@link #getCritterId}), or {@code null} if it has left the world.
+	 */
+	public Critter getCritter(long id) {
+		return critters.get(id);
+	}
+
+	/**
+	 * Add critter {@code c} to this world. This and {@code removeCritter}
+	 * take constant time. A critter added during a step first acts in the
+	 * next step.
+	 */
 	public void addCritter(Critter c) {
-		critters.add(c);
+		boolean pending = committing.get() != null;
+		register(c);
+		// critters born while regions commit are merged into the world
+		// once every region has committed
+		if (pending) return;
+		if (regions != null) regionOf(grid.col(c.getState().cell())).critters.add(c);
 	}
 	
+	/**
+	 * Remove critter {@code c}, which has died, from this world.
+	 */
 	public void removeCritter(Critter c) {
-		critters.remove(c);
+		// dead critters are dropped after every region has committed,
+		// and regions drop them from their own lists at the end of a step
+		if (committing.get() != null) return;
+		release(c);
 	}
 
 	/**
@@ -89,18 +362,18 @@ public class World implements SimObject {
 		int randCol;
 
 		int numHexes = 0;
-		for(Hex[] col : grid) {
-			for (Hex h : col){
-				if(h != null) numHexes++;
+		for (int c = 0; c < cols; c++) {
+			for (int row = 0; row < rows; row++) {
+				if (grid.valid(c, row)) numHexes++;
 			}
 		}
 
 		int rocksToAdd = (amount > numHexes / 2) ? numHexes / 2 : amount;
 		while(rocksToAdd > 0) {
-			randCol = r.nextInt(grid.length); // biggest col index
-			randRow = r.nextInt(grid[0].length); // biggest row index
-			if (getHexAt(randCol,randRow) != null && !getHexAt(randCol, randRow).isRock) {
-				grid[randCol][randRow].isRock = true;
+			randCol = r.nextInt(cols); // biggest col index
+			randRow = r.nextInt(rows); // biggest row index
+			if (getHexAt(randCol,randRow) != null && !getHexAt(randCol, randRow).isRock()) {
+				getHexAt(randCol, randRow).setRock(true);
 				rocksToAdd--;
 			}
 		}
@@ -116,10 +389,188 @@ public class World implements SimObject {
 	public Hex getHexAt(int col, int row) {
 		
 		// out-of-bounds is considered a null hex.
-		if (col >= grid.length || row >= grid[0].length
-			|| col < 0 || row < 0) return null;
+		if (!grid.valid(col, row)) return null;
 		
-		return grid[col][row];
+		return hexAt(grid.index(col, row));
+	}
+
+	/**
+	 * Get the hex of grid cell {@code cell}, or {@code null} if it is
+	 * {@link Grid#OFF}.
+	 */
+	Hex hexAt(int cell) {
+		if (cell == Grid.OFF) return null;
+		
+		// Critters only ask for hexes within two columns of their own,
+		// so regions committing in parallel never race on a view.
+		int col = grid.col(cell), row = grid.row(cell);
+		if (views == null) return mappedView(col, row, cell);
+		Hex h = views[cell];
+		if (h == null) {
+			h = new Hex(col, row, this);
+			views[cell] = h;
+		}
+		return h;
+	}
+
+	/**
+	 * The cell next to {@code cell} in direction {@code dir} (0 to 5), or
+	 * {@link Grid#OFF} beyond the edge of the world. Heap worlds look this
+	 * up in a table made when the world was created.
+	 */
+	int neighbour(int cell, int dir) {
+		int[] n = neighbours;
+		return n != null ? n[6 * cell + dir] : grid.neighbour(cell, dir);
+	}
+
+	/**
+	 * Get the view of a cell of a mapped grid. Views are only weakly
+	 * held, so the map is about as large as the number of hexes in use.
+	 */
+	private Hex mappedView(int col, int row, int cell) {
+		WeakReference<Hex> ref = mappedViews.get(cell);
+		Hex h = ref == null ? null : ref.get();
+		if (h == null) {
+			h = new Hex(col, row, this);
+			mappedViews.put(cell, new WeakReference<Hex>(h));
+			if (mappedViews.size() >= expungeAt) {
+				synchronized (mappedViews) {
+					mappedViews.values().removeIf(v -> v.get() == null);
+					expungeAt = Math.max(1024, 2 * mappedViews.size());
+				}
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Release the file backing a world made with a grid file. The world
+	 * can't be used afterwards.
+	 */
+	public void close() {
+		grid.close();
+		if (snapshot != null) snapshot.close();
+	}
+
+	/**
+	 * Get the status of the hex at ({@code col}, {@code row}) as a critter
+	 * would sense it; hexes off the world read as rocks. While critter
+	 * programs are being evaluated in parallel this reads the snapshot
+	 * taken at the start of the step.
+	 *
+	 * @return the status of the hex (see {@link Hex#getStatus()})
+	 */
+	public int statusAt(int col, int row) {
+		if (col >= cols || row >= rows || col < 0 || row < 0)
+			return Constants.rockValue;
+		Grid v = view;
+		return (v != null ? v : grid).status(grid.index(col, row));
+	}
+
+	/**
+	 * What a critter in grid cell {@code cell} facing {@code facing}
+	 * smells; see {@link SmellField#smell}.
+	 */
+	int smell(int cell, int facing) {
+		return smell != null ? smell.smell(cell, facing) : SmellField.search(this, cell, facing);
+	}
+
+	/**
+	 * Put critter {@code c} on grid cell {@code cell}, which must be empty,
+	 * as {@link Hex#add} does.
+	 */
+	void putCritter(int cell, Critter c) {
+		CritterState cs = c.getState();
+		// a critter without memory still occupies the hex
+		int appearance = cs.memLength() == 0 ? 1 : cs.getAppearance();
+		grid.setCritter(cell, register(c), appearance);
+	}
+
+	/**
+	 * Remove the occupant of grid cell {@code cell}, as
+	 * {@link Hex#removeOccupant} does.
+	 * 
+	 * @return false if the cell holds a rock or nothing, true otherwise
+	 */
+	boolean removeOccupant(int cell) {
+		int o = grid.occupant(cell);
+		if (o == Grid.ROCK || o == Grid.EMPTY) return false;
+		grid.setEmpty(cell);
+		if (o == Grid.FOOD) foodChanged(cell);
+		return true;
+	}
+
+	/**
+	 * Put {@code amount} food on grid cell {@code cell}, which must be
+	 * empty or already hold food.
+	 */
+	void setFood(int cell, int amount) {
+		grid.setFood(cell, amount);
+		foodChanged(cell);
+	}
+
+	/**
+	 * Note that food or a rock may have appeared on or left grid cell
+	 * {@code cell}. While regions commit in parallel, the smell field is
+	 * only brought up to date once they are done.
+	 */
+	void foodChanged(int cell) {
+		if (smell == null) return;
+		Region r = committing.get();
+		if (r != null) r.foodChanged(cell);
+		else smell.refresh(cell);
+	}
+
+	/**
+	 * Get the status of grid cell {@code cell}, which is a rock if the
+	 * cell is {@link Grid#OFF}.
+	 */
+	int statusAt(int cell) {
+		if (cell == Grid.OFF) return Constants.rockValue;
+		Grid v = view;
+		return (v != null ? v : grid).status(cell);
+	}
+
+	/**
+	 * Get the hexes whose status changed since this was last called, for
+	 * views of the world that only redraw what changed. Moves, births,
+	 * deaths, changes to food and rocks, and critters changing their
+	 * appearance all count, whether or not they happened during
+	 * {@code advanceTime}.
+	 * 
+	 * @return the columns and rows of the changed hexes, alternating:
+	 * {@code [col0, row0, col1, row1, ...]}
+	 */
+	public int[] takeChangedHexes() {
+		int[] cells = grid.dirty.take();
+		int[] hexes = new int[2 * cells.length];
+		for (int i = 0; i < cells.length; i++) {
+			hexes[2 * i] = grid.col(cells[i]);
+			hexes[2 * i + 1] = grid.row(cells[i]);
+		}
+		return hexes;
+	}
+
+	/**
+	 * Take a {@link Frame} of the hexes whose status changed since this or
+	 * {@link #takeChangedHexes()} was last called, for a view drawing the
+	 * world on another thread. Must not be called during
+	 * {@code advanceTime}.
+	 */
+	public Frame takeFrame() {
+		int[] cells = grid.dirty.take();
+		int[] hexes = new int[2 * cells.length];
+		int[] statuses = new int[cells.length];
+		String[] species = new String[cells.length];
+		for (int i = 0; i < cells.length; i++) {
+			int cell = cells[i];
+			hexes[2 * i] = grid.col(cell);
+			hexes[2 * i + 1] = grid.row(cell);
+			statuses[i] = grid.status(cell);
+			int o = grid.occupant(cell);
+			if (o > 0) species[i] = critter(o - 1).getState().species;
+		}
+		return new Frame(timeElapsed, getInfo(), hexes, statuses, species);
 	}
 
 	/**
@@ -133,10 +584,22 @@ public class World implements SimObject {
 
 	/**
 	 * Get the list of critters in this world.
-	 * @return the list of critters in this world
+	 * @return a new list of the critters in this world
 	 */
 	public ArrayList<Critter> getCritters() {
-		return critters;
+		ArrayList<Critter> list = new ArrayList<Critter>(critters.size());
+		for (int id = 0; id < critters.end(); id++) {
+			Critter c = critters.get(id);
+			if (c != null) list.add(c);
+		}
+		return list;
+	}
+
+	/**
+	 * Get the number of critters in this world.
+	 */
+	public int getCritterCount() {
+		return critters.size();
 	}
 	// Methods from SimObject
 
@@ -184,20 +647,13 @@ public class World implements SimObject {
 	 * @return
 	 */
 	public String getMap() {
-		Hex[][] printMatrix = new Hex[grid[0].length][grid.length];
+		Hex[][] printMatrix = new Hex[rows][cols];
 
 		// convert the grid into a print matrix that looks good
-		int colCount = 0;
-		for(Hex[] col : grid) {
+		for (int colCount = 0; colCount < cols; colCount++) {
 			for(int i = printMatrix.length - 1; i >= 0; i--) {
-				if (col[i] == null) {
-					printMatrix[-i + printMatrix.length - 1][colCount] = null;
-				}
-				else {
-					printMatrix[-i + printMatrix.length - 1][col[i].getCol()] = col[i];
-				}
+				printMatrix[-i + printMatrix.length - 1][colCount] = getHexAt(colCount, i);
 			}
-			colCount++;
 		}
 
 		List<List<Hex>> inter = new ArrayList<List<Hex>>();
@@ -265,23 +721,167 @@ public class World implements SimObject {
 	}
 
 	
+	/**
+	 * Advance the world by one time step, letting every critter run its
+	 * program and perform the resulting action.
+	 *
+	 * In parallel mode the world is split into regions of columns (see
+	 * {@link #setRegionWidth}) and the step has two phases. First every
+	 * critter's program is evaluated concurrently against a read-only
+	 * snapshot of the grid taken at the start of the step, producing the
+	 * action it intends to take. Then each region performs the intended
+	 * actions of its critters one at a time, in order; regions commit
+	 * concurrently with all but their immediate neighbours. Conflicts (two
+	 * critters moving into the same hex, a victim dying before it acts) are
+	 * therefore resolved the same way on every run. Critters that crossed
+	 * into another region are handed over to it at the end of the step.
+	 * Since each critter draws its random numbers from its own seeded
+	 * generator, the outcome depends only on the world seed and the region
+	 * width, not on thread scheduling.
+	 */
 	public void advanceTime() {
 		timeElapsed++;
+		Replay rp = replay;
+		Journal j = rp == null ? journal : null;
+		if (rp != null) rp.begin();
+		if (j != null) j.begin();
 		
-		for(Critter c : critters) {
-			c.getState().partner = null;
+		int end = critters.end();
+		for (int id = 0; id < end; id++) {
+			Critter c = critters.get(id);
+			if (c != null) c.getState().partner = null;
 		}
 		
-		for (Critter c : critters) {
-			CritterState cs = c.getState();
-			Result r = (new Interpreter()).interpret(cs.p, cs);
-			Rule rule = r.getRule();
-			c.setLastRule(rule);
-			Action act = r.getAction();
-			performAction(c, act);
+		if (parallel) {
+			advanceTimeParallel();
+		} else {
+			// critters act in id order; those killed during the step leave
+			// their slot, and those born during it wait for the next one
+			VirtualMachine vm = vms.get();
+			for (int id = 0; id < critters.end(); id++) {
+				Critter c = critters.get(id);
+				if (c == null || critters.birth(id) == timeElapsed) continue;
+				Result r = evaluate(vm, c);
+				Rule rule = r.getRule();
+				c.setLastRule(rule);
+				Action act = r.getAction();
+				performAction(c, act);
+			}
 		}
+		if (j != null) j.end();
 	}
-	
+
+	/**
+	 * Run the program of critter {@code c} on virtual machine {@code vm},
+	 * or repeat what it decided while replaying a journal.
+	 */
+	Result evaluate(VirtualMachine vm, Critter c) {
+		Replay rp = replay;
+		if (rp != null) return rp.evaluate(c);
+		Journal j = journal;
+		if (j != null) return j.evaluate(vm, c);
+		CritterState cs = c.getState();
+		Result r = vm.interpret(cs.p, cs);
+		cs.refresh();
+		return r;
+	}
+
+	/**
+	 * Evaluate the argument of action {@code a} of critter {@code c}.
+	 */
+	private int argument(Critter c, Action a) {
+		Replay rp = replay;
+		if (rp != null) return rp.argument(c);
+		long from = c.getState().rand.state();
+		int value = vms.get().evaluate((Expr) a.getChildren().get(0), c.getState());
+		Journal j = journal;
+		if (j != null) j.argument(c, value, from);
+		return value;
+	}
+
+	private void advanceTimeParallel() {
+		if (regions == null) buildRegions();
+		Region[] rs = regions;
+		if (snapshot == null) snapshot = grid.newSnapshot();
+		Grid snap = snapshot;
+
+		// phase 1: evaluate programs against a snapshot of the grid
+		IntStream.range(0, rs.length).parallel().forEach(i -> rs[i].capture(grid, snap));
+		view = snap;
+		try {
+			IntStream.range(0, rs.length).parallel().forEach(i -> rs[i].evaluate(vms.get()));
+		} finally {
+			view = null;
+		}
+
+		// phase 2: commit the intended actions, first in the even regions
+		// and then in the odd ones, so regions committing at the same time
+		// are never adjacent
+		for (int colour = 0; colour < 2; colour++) {
+			int k = colour;
+			IntStream.range(0, rs.length).filter(i -> i % 2 == k).parallel()
+					.forEach(i -> commit(rs[i]));
+		}
+
+		// hand critters that crossed a border over to their new region
+		IntStream.range(0, rs.length).parallel().forEach(i -> rs[i].release());
+		IntStream.range(0, rs.length).parallel().forEach(i ->
+				rs[i].admit(i > 0 ? rs[i - 1] : null, i + 1 < rs.length ? rs[i + 1] : null));
+
+		// merge births, deaths and changes to food, in region order
+		for (Region r : rs) {
+			for (int i = 0; i < r.numFoodChanges; i++) smell.refresh(r.foodChanges[i]);
+			for (Critter c : r.dead) release(c);
+			for (Critter c : r.born) {
+				int cell = c.getState().cell();
+				c.id = -1; // drop the pending id
+				if (!c.isAlive()) continue;
+				putCritter(cell, c);
+				regionOf(grid.col(cell)).critters.add(c);
+			}
+		}
+		for (Region r : rs) r.finish();
+	}
+
+	/**
+	 * Perform the intended actions of the critters in region {@code r},
+	 * in order, skipping critters killed earlier in the step.
+	 */
+	private void commit(Region r) {
+		committing.set(r);
+		try {
+			Critter[] acting = r.acting;
+			int n = r.critters.size();
+			for (int i = 0; i < n; i++) {
+				Critter c = acting[i];
+				if (!c.isAlive()) continue;
+				c.setLastRule(r.intents[i].getRule());
+				performAction(c, r.intents[i].getAction());
+			}
+		} finally {
+			committing.remove();
+		}
+	}
+
+	/**
+	 * Split the world into regions and sort the critters into them.
+	 */
+	private void buildRegions() {
+		int n = getRegionCount();
+		Region[] rs = new Region[n];
+		for (int i = 0; i < n; i++)
+			rs[i] = new Region(i * regionWidth, i + 1 < n ? (i + 1) * regionWidth : cols);
+		regions = rs;
+		for (int id = 0; id < critters.end(); id++) {
+			Critter c = critters.get(id);
+			if (c != null) regionOf(grid.col(c.getState().cell())).critters.add(c);
+		}
+	}
+
+	private Region regionOf(int col) {
+		return regions[Math.min(col / regionWidth, regions.length - 1)];
+	}
+
 	/**
 	 * Converts Action nodes from the AST to actions
 	 * that affect the world.
@@ -322,12 +922,10 @@ public class World implements SimObject {
 			c.mate();
 			break;
 		case TAG:
-			c.tag(new Interpreter().evaluateExpr(
-					(Expr) a.getChildren().get(0)));
+			c.tag(argument(c, a));
 			break;
 		case SERVE:
-			c.serve(new Interpreter().evaluateExpr(
-					(Expr) a.getChildren().get(0)));
+			c.serve(argument(c, a));
 			break;
 		default:
 			break;
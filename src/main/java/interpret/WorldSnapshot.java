@@ -0,0 +1,485 @@
+package interpret;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import ast.Interner;
+import ast.Node;
+import ast.ProgramImpl;
+import ast.Rule;
+import parse.ParserFactory;
+
+/**
+ * A compact binary snapshot of a {@link World} in the middle of a run:
+ * its grid, its critters with their memory, facing, program, last rule
+ * and random stream, the registry of critter ids, the time step and the
+ * state of the world's random streams. A world restored from a snapshot
+ * continues exactly as the saved world would have.
+ *
+ * Taking a snapshot has two halves: {@link #capture} copies the state of
+ * the world, and must run between steps on the thread stepping it, while
+ * {@link #write} encodes the copy and may run on any thread. Programs are
+ * assumed not to change once a critter has them, as in the simulation.
+ *
+ * A snapshot may also be a delta, holding only the cells and critters
+ * that changed since an earlier snapshot (see {@link Checkpointer}).
+ *
+ * Snapshots are written and read in a single sequential pass through a
+ * channel. Programs are stored once each, as text, however many critters
+ * share them. All numbers are big-endian; strings are a length in bytes,
+ * or -1 for {@code null}, followed by UTF-8. The layout is
+ * <pre>
+ * magic version
+ * name cols rows time parallel regionWidth
+ * seed (state gamma) of the service's streams, (state gamma) of the world's
+ * numCells (cell status occupant)... or, in full snapshots, (status occupant) of every cell
+ * numPrograms program...
+ * end generation[end] birth[end] numFree free[numFree]
+ * numCritters (id program lastRule species facing cell memLength mem[memLength] state gamma)...
+ * numRegions (size id[size])...
+ * magic
+ * </pre>
+ * where a program or last rule of -1 means none.
+ */
+public final class WorldSnapshot {
+
+	private static final int MAGIC = 0x43525753; // "CRWS"
+	private static final int DELTA_MAGIC = 0x43525744; // "CRWD"
+	private static final int VERSION = 1;
+
+	/** The saved state of one critter. */
+	static final class CritterRecord {
+		int id;
+		ProgramImpl program; // as captured
+		String text; // the program as read, or null for none
+		int lastRule = -1;
+		String species;
+		int facing, cell;
+		int[] mem;
+		long state, gamma; // of the random stream
+
+		/**
+		 * Whether everything recorded is the same as in {@code r}, to tell
+		 * whether a critter changed between two captures.
+		 */
+		boolean sameAs(CritterRecord r) {
+			return id == r.id && program == r.program && lastRule == r.lastRule
+					&& Objects.equals(species, r.species) && facing == r.facing
+					&& cell == r.cell && Arrays.equals(mem, r.mem)
+					&& state == r.state && gamma == r.gamma;
+		}
+	}
+
+	private final boolean delta;
+	private String name;
+	private int cols, rows, time;
+	private boolean parallel;
+	private int regionWidth;
+	private long seed;
+	private long streamsState, streamsGamma, worldState, worldGamma;
+	private int[] cells; // cells recorded, in increasing order, or null for all
+	private int[] statuses, occupants; // by recorded cell
+	private int end;
+	private int[] generation, birth, free;
+	private final TreeMap<Integer, CritterRecord> critters = new TreeMap<Integer, CritterRecord>();
+	private int[][] regions; // or null
+
+	private WorldSnapshot(boolean delta) {
+		this.delta = delta;
+	}
+
+	/**
+	 * Copy the whole state of world {@code w}. Must not be called during
+	 * {@code advanceTime}.
+	 */
+	public static WorldSnapshot capture(World w) {
+		return capture(w, null, null);
+	}
+
+	/**
+	 * Copy the state of world {@code w}, keeping only grid cells
+	 * {@code cells} and the critters accepted by {@code changed}, or
+	 * everything if {@code cells} is {@code null}.
+	 */
+	static WorldSnapshot capture(World w, int[] cells, Predicate<CritterRecord> changed) {
+		WorldSnapshot s = new WorldSnapshot(cells != null);
+		s.name = w.getName();
+		s.cols = w.getCols();
+		s.rows = w.getRows();
+		s.time = w.getTime();
+		s.parallel = w.isParallel();
+		s.regionWidth = w.getRegionWidth();
+		RandomService random = w.getRandom();
+		s.seed = random.seed();
+		s.streamsState = random.streams().state();
+		s.streamsGamma = random.streams().gamma();
+		s.worldState = random.world().state();
+		s.worldGamma = random.world().gamma();
+
+		Grid g = w.grid;
+		int n = cells == null ? g.size() : cells.length;
+		s.cells = cells;
+		s.statuses = new int[n];
+		s.occupants = new int[n];
+		for (int i = 0; i < n; i++) {
+			int cell = cells == null ? i : cells[i];
+			s.statuses[i] = g.status(cell);
+			s.occupants[i] = g.occupant(cell);
+		}
+
+		CritterRegistry reg = w.registry();
+		s.end = reg.end();
+		s.generation = new int[s.end];
+		s.birth = new int[s.end];
+		for (int id = 0; id < s.end; id++) {
+			s.generation[id] = reg.generation(id);
+			s.birth[id] = reg.birth(id);
+		}
+		s.free = reg.freeSlots();
+		for (int id = 0; id < s.end; id++) {
+			Critter c = reg.get(id);
+			if (c == null) continue;
+			CritterState cs = c.getState();
+			CritterRecord r = new CritterRecord();
+			r.id = id;
+			r.program = cs.p;
+			r.lastRule = ruleIndex(cs.p, c.getLastRule());
+			r.species = cs.species;
+			r.facing = cs.getFacing();
+			r.cell = cs.cell();
+			r.mem = cs.memory();
+			r.state = cs.rand.state();
+			r.gamma = cs.rand.gamma();
+			if (changed == null || changed.test(r)) s.critters.put(id, r);
+		}
+		s.regions = w.regionOrder();
+		return s;
+	}
+
+	/**
+	 * Whether this holds only what changed since an earlier snapshot.
+	 */
+	public boolean isDelta() {
+		return delta;
+	}
+
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * The number of grid cells recorded.
+	 */
+	int numCells() {
+		return statuses.length;
+	}
+
+	/**
+	 * The number of critters recorded.
+	 */
+	int numCritters() {
+		return critters.size();
+	}
+
+	/**
+	 * Write a snapshot of world {@code w} to {@code file}, replacing it.
+	 * Must not be called during {@code advanceTime}.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(World w, Path file) throws IOException {
+		capture(w).write(file);
+	}
+
+	/**
+	 * Write this snapshot to {@code file}, replacing it.
+	 *
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(Path file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(ch);
+		}
+	}
+
+	/**
+	 * Write this snapshot to channel {@code ch}.
+	 *
+	 * @throws IOException if the channel can't be written
+	 */
+	public void write(WritableByteChannel ch) throws IOException {
+		ChannelWriter out = new ChannelWriter(ch);
+		out.putInt(delta ? DELTA_MAGIC : MAGIC);
+		out.putInt(VERSION);
+		out.putString(name);
+		out.putInt(cols);
+		out.putInt(rows);
+		out.putInt(time);
+		out.putInt(parallel ? 1 : 0);
+		out.putInt(regionWidth);
+		out.putLong(seed);
+		out.putLong(streamsState);
+		out.putLong(streamsGamma);
+		out.putLong(worldState);
+		out.putLong(worldGamma);
+
+		if (delta) out.putInt(cells.length);
+		for (int i = 0; i < statuses.length; i++) {
+			if (delta) out.putInt(cells[i]);
+			out.putInt(statuses[i]);
+			out.putInt(occupants[i]);
+		}
+
+		// each program once, equal programs merged
+		IdentityHashMap<ProgramImpl, String> programs = new IdentityHashMap<ProgramImpl, String>();
+		HashMap<String, Integer> texts = new HashMap<String, Integer>();
+		for (CritterRecord r : critters.values()) {
+			if (r.text == null && r.program != null)
+				r.text = programs.computeIfAbsent(r.program, ProgramImpl::toString);
+			if (r.text != null && !texts.containsKey(r.text)) texts.put(r.text, texts.size());
+		}
+		String[] byIndex = new String[texts.size()];
+		for (String text : texts.keySet()) byIndex[texts.get(text)] = text;
+		out.putInt(byIndex.length);
+		for (String text : byIndex) out.putString(text);
+
+		out.putInt(end);
+		for (int id = 0; id < end; id++) out.putInt(generation[id]);
+		for (int id = 0; id < end; id++) out.putInt(birth[id]);
+		out.putInt(free.length);
+		for (int id : free) out.putInt(id);
+
+		out.putInt(critters.size());
+		for (CritterRecord r : critters.values()) {
+			out.putInt(r.id);
+			out.putInt(r.text == null ? -1 : texts.get(r.text));
+			out.putInt(r.lastRule);
+			out.putString(r.species);
+			out.putInt(r.facing);
+			out.putInt(r.cell);
+			out.putInt(r.mem.length);
+			for (int m : r.mem) out.putInt(m);
+			out.putLong(r.state);
+			out.putLong(r.gamma);
+		}
+
+		out.putInt(regions == null ? 0 : regions.length);
+		if (regions != null) {
+			for (int[] region : regions) {
+				out.putInt(region.length);
+				for (int id : region) out.putInt(id);
+			}
+		}
+		out.putInt(delta ? DELTA_MAGIC : MAGIC);
+		out.flush();
+	}
+
+	/**
+	 * Restore a world from a snapshot in {@code file}, keeping its hexes on
+	 * the heap.
+	 *
+	 * @throws IOException if the file can't be read or isn't a snapshot
+	 */
+	public static World read(Path file) throws IOException {
+		return read(file, null);
+	}
+
+	/**
+	 * Restore a world from a snapshot in {@code file}, keeping its hexes in
+	 * the memory-mapped file {@code gridFile}, or on the heap if
+	 * {@code gridFile} is {@code null}.
+	 *
+	 * @throws IOException if the file can't be read or isn't a snapshot
+	 */
+	public static World read(Path file, Path gridFile) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			WorldSnapshot s = read(ch);
+			if (s.delta) throw new IOException(file + " is a delta");
+			return s.toWorld(gridFile);
+		}
+	}
+
+	/**
+	 * Read a snapshot or delta from channel {@code ch}.
+	 *
+	 * @throws IOException if the channel can't be read or doesn't hold a
+	 * snapshot
+	 */
+	public static WorldSnapshot read(ReadableByteChannel ch) throws IOException {
+		ChannelReader in = new ChannelReader(ch);
+		int magic = in.getInt();
+		if (magic != MAGIC && magic != DELTA_MAGIC) throw new IOException("Not a world snapshot");
+		int version = in.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported snapshot version " + version);
+		WorldSnapshot s = new WorldSnapshot(magic == DELTA_MAGIC);
+		s.name = in.getString();
+		s.cols = in.getInt();
+		s.rows = in.getInt();
+		s.time = in.getInt();
+		s.parallel = in.getInt() != 0;
+		s.regionWidth = in.getInt();
+		s.seed = in.getLong();
+		s.streamsState = in.getLong();
+		s.streamsGamma = in.getLong();
+		s.worldState = in.getLong();
+		s.worldGamma = in.getLong();
+
+		int n = s.delta ? in.getInt() : (int) Math.min(Integer.MAX_VALUE, (long) s.cols * s.rows);
+		if (n < 0) throw new IOException("Corrupt snapshot");
+		if (s.delta) s.cells = new int[n];
+		s.statuses = new int[n];
+		s.occupants = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (s.delta) s.cells[i] = in.getInt();
+			s.statuses[i] = in.getInt();
+			s.occupants[i] = in.getInt();
+		}
+
+		String[] texts = new String[in.getInt()];
+		for (int i = 0; i < texts.length; i++) texts[i] = in.getString();
+
+		s.end = in.getInt();
+		s.generation = in.getInts(s.end);
+		s.birth = in.getInts(s.end);
+		s.free = in.getInts(in.getInt());
+
+		int numCritters = in.getInt();
+		for (int i = 0; i < numCritters; i++) {
+			CritterRecord r = new CritterRecord();
+			r.id = in.getInt();
+			int program = in.getInt();
+			r.text = program < 0 ? null : texts[program];
+			r.lastRule = in.getInt();
+			r.species = in.getString();
+			r.facing = in.getInt();
+			r.cell = in.getInt();
+			r.mem = in.getInts(in.getInt());
+			r.state = in.getLong();
+			r.gamma = in.getLong();
+			if ((r.gamma & 1) == 0) throw new IOException("Corrupt snapshot");
+			s.critters.put(r.id, r);
+		}
+
+		int numRegions = in.getInt();
+		if (numRegions > 0) {
+			s.regions = new int[numRegions][];
+			for (int i = 0; i < numRegions; i++) s.regions[i] = in.getInts(in.getInt());
+		}
+		if (in.getInt() != magic) throw new IOException("Corrupt snapshot");
+		return s;
+	}
+
+	/**
+	 * Bring this full snapshot up to the state recorded by delta {@code d},
+	 * which must have been captured after it, once every delta captured in
+	 * between has been applied.
+	 */
+	public void apply(WorldSnapshot d) {
+		if (delta || !d.delta) throw new IllegalArgumentException("Can only apply a delta to a full snapshot");
+		if (d.cols != cols || d.rows != rows)
+			throw new IllegalArgumentException("Delta of a world of another size");
+		time = d.time;
+		parallel = d.parallel;
+		regionWidth = d.regionWidth;
+		streamsState = d.streamsState;
+		streamsGamma = d.streamsGamma;
+		worldState = d.worldState;
+		worldGamma = d.worldGamma;
+		for (int i = 0; i < d.cells.length; i++) {
+			statuses[d.cells[i]] = d.statuses[i];
+			occupants[d.cells[i]] = d.occupants[i];
+		}
+		end = d.end;
+		generation = d.generation;
+		birth = d.birth;
+		free = d.free;
+		critters.putAll(d.critters);
+		// drop the critters whose slots are free or were reused
+		critters.keySet().removeIf(id -> id >= end || !d.critters.containsKey(id)
+				&& occupants[critters.get(id).cell] != id + 1);
+		regions = d.regions;
+	}
+
+	/**
+	 * Make the world recorded by this full snapshot, keeping its hexes in
+	 * the memory-mapped file {@code gridFile}, or on the heap if
+	 * {@code gridFile} is {@code null}. The critters of a snapshot that was
+	 * captured rather than read share their programs with the captured
+	 * world's.
+	 *
+	 * @throws IOException if a program can't be parsed
+	 */
+	public World toWorld(Path gridFile) throws IOException {
+		if (delta) throw new IllegalStateException("A delta is not a whole world");
+		Grid g = gridFile == null ? new HeapGrid(cols, rows) : new MappedGrid(cols, rows, gridFile);
+		for (int cell = 0; cell < g.size(); cell++) {
+			int status = statuses[cell];
+			switch (occupants[cell]) {
+			case Grid.EMPTY:
+				if (g.occupant(cell) != Grid.EMPTY) g.setEmpty(cell);
+				break;
+			case Grid.ROCK:
+				g.setRock(cell);
+				break;
+			case Grid.FOOD:
+				g.setFood(cell, -1 - status);
+				break;
+			default:
+				g.setCritter(cell, occupants[cell] - 1, status);
+			}
+		}
+		World w = new World(name, g, new RandomService(seed,
+				new RandomStream(streamsState, streamsGamma),
+				new RandomStream(worldState, worldGamma)));
+		w.setTime(time);
+		w.setRegionWidth(regionWidth);
+		w.setParallel(parallel);
+		w.registry().restore(end, generation, birth, free);
+
+		HashMap<String, ProgramImpl> programs = new HashMap<String, ProgramImpl>();
+		for (CritterRecord r : critters.values()) {
+			ProgramImpl p = r.program; // shared with the captured world
+			if (p == null && r.text != null) {
+				p = programs.get(r.text);
+				if (p == null) {
+					p = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(r.text));
+					if (p == null) throw new IOException("Unreadable program of critter " + r.id);
+					p = Interner.intern(p);
+					programs.put(r.text, p);
+				}
+			}
+			Critter c = new Critter(w, r.id, r.cell, r.facing, r.mem, p,
+					new RandomStream(r.state, r.gamma));
+			c.getState().species = r.species;
+			if (r.lastRule >= 0) c.setLastRule((Rule) p.getChildren().get(r.lastRule));
+		}
+		if (regions != null) w.restoreRegions(regions);
+		return w;
+	}
+
+	/**
+	 * The index of rule {@code r} in program {@code p}, or -1.
+	 */
+	static int ruleIndex(ProgramImpl p, Rule r) {
+		if (p == null || r == null) return -1;
+		List<Node> rules = p.getChildren();
+		for (int i = 0; i < rules.size(); i++) {
+			if (rules.get(i) == r) return i;
+		}
+		return -1;
+	}
+}
@@ -2,9 +2,23 @@ package interpret;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import ast.ProgramImpl;
+
 class WorldTest {
 	
 	@Test
@@ -31,4 +45,674 @@ class WorldTest {
 		World w = new World("5,4", 5, 4);
 		System.out.println(w);
 	}
+	
+	private World populate(long seed) {
+		World w = new World("Seeded", 12, 16, seed);
+		w.setParallel(true);
+		w.setRegionWidth(4);
+		ProgramImpl p = BytecodeTest.parse(
+				"ENERGY > 600 --> bud;\n"
+				+ "ahead[1] > 0 --> attack;\n"
+				+ "ahead[1] < -1 --> eat;\n"
+				+ "random[3] = 0 --> left;\n"
+				+ "random[4] = 0 --> forward;\n"
+				+ "1 = 1 --> wait;\n");
+		for (int i = 0; i < 6; i++) {
+			int[] mem = {9, 2, 3, 1, 800, 1, 0, 0, 0};
+			new Critter(w.getHexAt(2 + i, 6 + i / 2), i % 6, mem, p);
+		}
+		w.getHexAt(5, 8).add(new Food(500, w));
+		return w;
+	}
+	
+	@Test
+	public void testParallelStepIsDeterministic() {
+		World a = populate(42);
+		World b = populate(42);
+		for (int i = 0; i < 60; i++) {
+			a.advanceTime();
+			b.advanceTime();
+			assertEquals(a.getMap(), b.getMap());
+			// newborns get the same ids, whichever region committed first
+			assertEquals(states(a), states(b));
+		}
+	}
+	
+	private World populateRegions(long seed) {
+		World w = new World("Regions", 40, 30, seed);
+		w.setParallel(true);
+		w.setRegionWidth(4);
+		ProgramImpl p = BytecodeTest.parse(
+				"ENERGY > 400 --> bud;\n"
+				+ "ahead[1] > 0 and random[2] = 0 --> mate;\n"
+				+ "ahead[1] > 0 --> attack;\n"
+				+ "ahead[1] < -1 --> eat;\n"
+				+ "random[3] = 0 --> right;\n"
+				+ "random[2] = 0 --> forward;\n"
+				+ "1 = 1 --> backward;\n");
+		for (int col = 0; col < 40; col += 2) {
+			for (int row = 0; row < 30; row += 5) {
+				Hex h = w.getHexAt(col, row);
+				if (h == null) continue;
+				int[] mem = {9, 2, 3, 1, 600, 1, 0, 0, 0};
+				new Critter(h, (col + row) % 6, mem, p);
+			}
+		}
+		return w;
+	}
+	
+	@Test
+	public void testRegionStepIsDeterministic() {
+		World a = populateRegions(7);
+		World b = populateRegions(7);
+		assertEquals(10, a.getRegionCount());
+		for (int i = 0; i < 40; i++) {
+			a.advanceTime();
+			b.advanceTime();
+			assertEquals(a.getMap(), b.getMap());
+			assertEquals(states(a), states(b));
+			
+			// every critter is on the map exactly once
+			int occupied = 0;
+			for (int col = 0; col < a.getCols(); col++) {
+				for (int row = 0; row < a.getRows(); row++) {
+					Hex h = a.getHexAt(col, row);
+					if (h != null && h.getStatus() > 0) occupied++;
+				}
+			}
+			assertEquals(occupied, a.getCritters().size());
+		}
+	}
+	
+	@Test
+	public void testNeighbourTable() throws IOException {
+		Path file = Files.createTempFile("world", ".grid");
+		World heap = new World("Heap", 9, 13, 1);
+		World mapped = new World("Mapped", 9, 13, 1, file);
+		// the column and row differences to the next hex in each direction
+		int[] dCol = {0, 1, 1, 0, -1, -1};
+		int[] dRow = {1, 1, 0, -1, -1, 0};
+		try {
+			for (World w : new World[] {heap, mapped}) {
+				for (int col = 0; col < 9; col++) {
+					for (int row = 0; row < 13; row++) {
+						Hex h = w.getHexAt(col, row);
+						if (h == null) continue;
+						for (int dir = 0; dir < 6; dir++) {
+							assertSame(w.getHexAt(col + dCol[dir], row + dRow[dir]),
+									w.hexAt(w.neighbour(h.cell, dir)));
+						}
+					}
+				}
+			}
+		} finally {
+			mapped.close();
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@Test
+	public void testSmellFieldMatchesSearch() {
+		World w = new World("Smelly", 30, 36, 8);
+		SplittableRandom r = new SplittableRandom(8);
+		for (int i = 0; i < 400; i++) {
+			Hex h = w.getHexAt(r.nextInt(30), r.nextInt(36));
+			if (h == null) continue;
+			
+			// add and remove food and rocks, checking every hex as we go
+			switch (r.nextInt(4)) {
+			case 0:
+				h.setRock(!h.isRock());
+				break;
+			case 1:
+				h.removeOccupant();
+				break;
+			default:
+				if (h.getStatus() == 0) h.setFood(1 + r.nextInt(100));
+			}
+			if (i % 40 != 0) continue;
+			for (int col = 0; col < 30; col++) {
+				for (int row = 0; row < 36; row++) {
+					Hex x = w.getHexAt(col, row);
+					if (x == null || x.isRock()) continue;
+					for (int facing = 0; facing < 6; facing++) {
+						assertEquals(SmellField.search(w, x.cell, facing),
+								w.smell(x.cell, facing));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSmell() {
+		World w = new World("Smell", 9, 13, 1);
+		CritterState cs = new Critter(w.getHexAt(4, 6), 0,
+				new int[] {9, 2, 3, 1, 500, 1, 0, 0, 0}, null).getState();
+		assertEquals(SmellField.NONE, cs.smell());
+		
+		// two hexes away, straight ahead and then behind
+		w.getHexAt(4, 8).add(new Food(50, w));
+		assertEquals(2000, cs.smell());
+		w.getHexAt(4, 8).removeOccupant();
+		w.getHexAt(4, 4).setFood(50);
+		assertEquals(2003, cs.smell());
+		
+		// around a wall of rocks
+		w.getHexAt(4, 5).setRock(true);
+		assertEquals(3002, cs.smell());
+		w.getHexAt(5, 5).setRock(true);
+		assertEquals(3004, cs.smell());
+		w.getHexAt(3, 4).setRock(true);
+		assertEquals(5002, cs.smell());
+		w.getHexAt(3, 4).setRock(false);
+		assertEquals(3004, cs.smell());
+		
+		// food put back through a view of it
+		Food f = (Food) w.getHexAt(4, 4).getOccupant();
+		w.getHexAt(4, 4).removeOccupant();
+		assertEquals(SmellField.NONE, cs.smell());
+		f.setValue(20);
+		assertEquals(3004, cs.smell());
+	}
+	
+	@Test
+	public void testChangedHexes() {
+		World w = new World("Changes", 9, 13, 1);
+		assertEquals(0, w.takeChangedHexes().length);
+		
+		ProgramImpl p = BytecodeTest.parse("1 = 1 --> forward;\n1 = 1 --> wait;\n");
+		new Critter(w.getHexAt(4, 6), 0, new int[] {9, 2, 3, 1, 500, 1, 0, 0, 0}, p);
+		w.getHexAt(2, 2).add(new Food(10, w));
+		assertArrayEquals(new int[] {2, 2, 4, 6}, w.takeChangedHexes());
+		assertEquals(0, w.takeChangedHexes().length);
+		
+		// the critter leaves one hex and enters the next
+		w.advanceTime();
+		assertArrayEquals(new int[] {4, 6, 4, 7}, w.takeChangedHexes());
+	}
+	
+	@Test
+	public void testFrame() {
+		World w = new World("Frames", 9, 13, 1);
+		w.takeFrame();
+		ProgramImpl p = BytecodeTest.parse("1 = 1 --> forward;\n1 = 1 --> wait;\n");
+		Critter c = new Critter(w.getHexAt(4, 6), 0, new int[] {9, 2, 3, 1, 500, 1, 0, 0, 0}, p);
+		c.getState().species = "mover";
+		w.getHexAt(2, 2).add(new Food(10, w));
+		w.advanceTime();
+		
+		// changes accumulate until a frame is taken
+		Frame f = w.takeFrame();
+		assertEquals(1, f.getTime());
+		assertEquals(w.getInfo(), f.getInfo());
+		assertEquals(3, f.size());
+		assertEquals(2, f.getCol(0));
+		assertEquals(2, f.getRow(0));
+		assertEquals(-11, f.getStatus(0));
+		assertNull(f.getSpecies(0));
+		assertEquals(0, f.getStatus(1));
+		assertEquals(4, f.getCol(2));
+		assertEquals(7, f.getRow(2));
+		assertEquals(c.getState().getAppearance(), f.getStatus(2));
+		assertEquals("mover", f.getSpecies(2));
+		assertEquals(0, w.takeFrame().size());
+	}
+	
+	@Test
+	public void testSimulation() throws InterruptedException {
+		World w = new World("Simulated", 9, 13, 1);
+		ProgramImpl p = BytecodeTest.parse("random[2] = 0 --> left;\n1 = 1 --> forward;\n1 = 1 --> wait;\n");
+		new Critter(w.getHexAt(4, 6), 0, new int[] {9, 2, 3, 1, 100000, 1, 0, 0, 0}, p);
+		int[][] view = new int[w.getCols()][w.getRows()];
+		for (int col = 0; col < w.getCols(); col++) {
+			for (int row = 0; row < w.getRows(); row++) view[col][row] = w.statusAt(col, row);
+		}
+		w.takeFrame();
+		Simulation sim = new Simulation(w);
+		assertFalse(sim.isRunning());
+		
+		// the view takes frames as they come
+		sim.run(0);
+		int frames = 0;
+		while (frames < 20) {
+			Frame f = sim.pollFrame();
+			if (f == null) Thread.sleep(1);
+			else {
+				apply(view, f);
+				frames++;
+			}
+		}
+		int[] time = new int[1];
+		sim.execute(world -> time[0] = world.getTime());
+		
+		// once paused the world stays put and tasks have run
+		sim.pause();
+		assertFalse(sim.isRunning());
+		int t = w.getTime();
+		assertTrue(time[0] > 0 && time[0] <= t);
+		Thread.sleep(20);
+		assertEquals(t, w.getTime());
+		
+		// frames skipped by the view lose no changes
+		Frame f = sim.pollFrame();
+		if (f != null) apply(view, f);
+		apply(view, w.takeFrame());
+		for (int col = 0; col < w.getCols(); col++) {
+			for (int row = 0; row < w.getRows(); row++) {
+				assertEquals(w.statusAt(col, row), view[col][row]);
+			}
+		}
+		sim.stop();
+	}
+	
+	private static void apply(int[][] view, Frame f) {
+		for (int i = 0; i < f.size(); i++) view[f.getCol(i)][f.getRow(i)] = f.getStatus(i);
+	}
+	
+	@Test
+	public void testAheadStopsAtTheEdge() {
+		World w = new World("Edge", 9, 13, 1);
+		w.getHexAt(4, 8).add(new Food(50, w));
+		CritterState cs = new Critter(w.getHexAt(4, 6), 0,
+				new int[] {9, 2, 3, 1, 500, 1, 0, 0, 0}, null).getState();
+		assertEquals(0, cs.ahead(1));
+		assertEquals(-51, cs.ahead(2));
+		assertEquals(0, cs.ahead(-1));
+		assertEquals(model.Constants.rockValue, cs.ahead(7));
+		assertEquals(model.Constants.rockValue, cs.ahead(Integer.MAX_VALUE));
+		assertEquals(cs.getAppearance(), cs.nearby(-1));
+	}
+	
+	@Test
+	public void testCritterIdsAreStable() {
+		World w = new World("Registry", 8, 10, 4);
+		int[] mem = {9, 2, 3, 1, 500, 1, 0, 0, 0};
+		Critter a = new Critter(w.getHexAt(2, 2), 0, mem.clone(), null);
+		Critter b = new Critter(w.getHexAt(3, 3), 0, mem.clone(), null);
+		long idA = w.getCritterId(a);
+		long idB = w.getCritterId(b);
+		assertNotEquals(idA, idB);
+		assertSame(a, w.getCritter(idA));
+		
+		a.getState().setMem(4, 0);
+		assertTrue(a.isDead());
+		assertEquals(-1, w.getCritterId(a));
+		assertNull(w.getCritter(idA));
+		assertEquals(1, w.getCritterCount());
+		
+		// the freed slot is reused, but under a new id
+		Critter c = new Critter(w.getHexAt(4, 4), 0, mem.clone(), null);
+		assertNotEquals(idA, w.getCritterId(c));
+		assertNull(w.getCritter(idA));
+		assertSame(b, w.getCritter(idB));
+		assertSame(c, w.getCritter(w.getCritterId(c)));
+	}
+	
+	private static String programs(World w) {
+		StringBuilder sb = new StringBuilder();
+		for (Critter c : w.getCritters()) {
+			sb.append(c.getState().p).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testSeedReproducesMutations() {
+		World[] worlds = new World[2];
+		for (int i = 0; i < 2; i++) {
+			World w = new World("Mutating", 16, 20, 99);
+			ProgramImpl p = BytecodeTest.parse(
+					"random[2] = 0 --> right;\n"
+					+ "ENERGY > 1500 --> bud;\n"
+					+ "1 = 1 --> forward;\n");
+			for (int col = 2; col < 16; col += 4) {
+				int[] mem = {9, 2, 3, 1, 10000, 1, 0, 0, 0};
+				new Critter(w.getHexAt(col, col / 2 + 4), col % 6, mem, p);
+			}
+			worlds[i] = w;
+		}
+		for (int i = 0; i < 30; i++) {
+			worlds[0].advanceTime();
+			worlds[1].advanceTime();
+		}
+		assertTrue(worlds[0].getCritters().size() > 8);
+		assertEquals(worlds[0].getMap(), worlds[1].getMap());
+		assertEquals(programs(worlds[0]), programs(worlds[1]));
+	}
+	
+	@Test
+	public void testRandomStreamMatchesSplittableRandom() {
+		SplittableRandom expected = new SplittableRandom(42);
+		RandomStream actual = new RandomStream(42);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(expected.nextInt(1 + i), actual.nextInt(1 + i));
+			assertEquals(expected.nextLong(), actual.nextLong());
+			assertEquals(expected.nextBoolean(), actual.nextBoolean());
+		}
+		SplittableRandom e2 = expected.split();
+		RandomStream a2 = actual.split();
+		for (int i = 0; i < 100; i++) assertEquals(e2.nextInt(7), a2.nextInt(7));
+		assertEquals(expected.nextLong(), actual.nextLong());
+	}
+	
+	/** A program keeping critters busy moving, eating, budding and fighting. */
+	static final String RUNNING =
+			"random[3] = 0 --> right;\n"
+			+ "ENERGY > 1500 --> bud;\n"
+			+ "ahead[1] < -1 --> eat;\n"
+			+ "ahead[1] > 0 --> attack;\n"
+			+ "1 = 1 --> mem[7] := random[99] forward;\n"
+			+ "1 = 1 --> wait;\n";
+	
+	/**
+	 * Make a 24 by 30 world of seed {@code seed}, stepped in parallel or
+	 * not, with a piece of food and six critters of different species
+	 * running {@code program}.
+	 */
+	private static World populated(String name, long seed, boolean parallel, String program) {
+		World w = new World(name, 24, 30, seed);
+		w.setParallel(parallel);
+		w.setRegionWidth(6);
+		ProgramImpl p = BytecodeTest.parse(program);
+		for (int col = 2; col < 24; col += 4) {
+			int[] mem = {10, 2, 3, 1, 4000, 1, 0, 0, 0, 0};
+			new Critter(w.getHexAt(col, col / 2 + 6), col % 6, mem, p).getState().species = "s" + col;
+		}
+		w.getHexAt(10, 14).add(new Food(900, w));
+		return w;
+	}
+	
+	@Test
+	public void testSnapshotContinuesRun() throws IOException {
+		Path file = Files.createTempFile("world", ".snapshot");
+		try {
+			for (boolean parallel : new boolean[] {false, true}) {
+				World w = populated("Saved", 17, parallel, RUNNING);
+				w.getHexAt(11, 12).setRock(true);
+				for (int i = 0; i < 40; i++) w.advanceTime();
+				
+				WorldSnapshot.write(w, file);
+				World r = WorldSnapshot.read(file);
+				assertEquals(w.getMap(), r.getMap());
+				assertEquals(states(w), states(r));
+				assertEquals(w.getSeed(), r.getSeed());
+				for (int i = 0; i < 40; i++) {
+					w.advanceTime();
+					r.advanceTime();
+				}
+				assertTrue(w.registry().end() > w.getCritterCount()); // some died
+				assertEquals(w.getTime(), r.getTime());
+				assertEquals(w.getMap(), r.getMap());
+				assertEquals(states(w), states(r));
+				assertEquals(programs(w), programs(r));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@Test
+	public void testCheckpointsContinueRun() throws IOException {
+		Path dir = Files.createTempDirectory("checkpoints");
+		try {
+			World w = populated("Checkpointed", 23, true, RUNNING);
+			try (Checkpointer cp = new Checkpointer(w, dir, 4)) {
+				for (int i = 0; i < 30; i++) {
+					w.advanceTime();
+					if (i % 5 == 4) cp.checkpoint(); // full, 3 deltas, full, delta
+				}
+				cp.await();
+			}
+			String[] files = dir.toFile().list();
+			Arrays.sort(files);
+			assertEquals(Arrays.asList("checkpoint-000004.full.gz",
+					"checkpoint-000005.delta.gz"), Arrays.asList(files));
+			
+			World r = Checkpointer.restore(dir);
+			assertEquals(w.getTime(), r.getTime());
+			assertEquals(w.getMap(), r.getMap());
+			assertEquals(states(w), states(r));
+			for (int i = 0; i < 30; i++) {
+				w.advanceTime();
+				r.advanceTime();
+			}
+			assertEquals(w.getMap(), r.getMap());
+			assertEquals(states(w), states(r));
+		} finally {
+			for (File f : dir.toFile().listFiles()) f.delete();
+			Files.delete(dir);
+		}
+	}
+	
+	@Test
+	public void testDeltaKeepsEveryChangedCritter() throws IOException {
+		Path dir = Files.createTempDirectory("checkpoints");
+		try {
+			World w = new World("Quiet", 20, 20, 3);
+			ProgramImpl p = BytecodeTest.parse("1 = 1 --> wait;\n1 = 1 --> wait;\n");
+			Critter c = new Critter(w.getHexAt(4, 4), 0, new int[] {9, 1, 1, 1, 1000, 1, 0, 100, 100}, p);
+			try (Checkpointer cp = new Checkpointer(w, dir, 10)) {
+				cp.checkpoint();
+				// a change a hash of the memory could miss
+				c.getState().setMem(7, 101);
+				c.getState().setMem(8, 69);
+				cp.checkpoint();
+				cp.await();
+			}
+			World r = Checkpointer.restore(dir);
+			assertEquals(states(w), states(r));
+			assertEquals(69, r.getCritters().get(0).getState().memory()[8]);
+		} finally {
+			for (File f : dir.toFile().listFiles()) f.delete();
+			Files.delete(dir);
+		}
+	}
+	
+	@Test
+	public void testDeltaHoldsOnlyChanges() {
+		World w = new World("Quiet", 20, 20, 3);
+		ProgramImpl p = BytecodeTest.parse("1 = 1 --> wait;\n1 = 1 --> wait;\n");
+		new Critter(w.getHexAt(4, 4), 0, new int[] {8, 1, 1, 1, 1000, 1, 0, 0}, p);
+		new Critter(w.getHexAt(9, 8), 0, new int[] {8, 1, 1, 1, 1000, 1, 0, 0}, p);
+		w.grid.unsaved = new DirtyCells(w.grid.size());
+		w.advanceTime();
+		w.getHexAt(12, 12).setRock(true);
+		int[] cells = w.grid.unsaved.take();
+		WorldSnapshot d = WorldSnapshot.capture(w, cells, c -> c.id == 0);
+		assertTrue(d.isDelta());
+		assertEquals(cells.length, d.numCells());
+		assertTrue(d.numCells() < 5);
+		assertEquals(1, d.numCritters());
+	}
+	
+	@Test
+	public void testReplayRepeatsJournal() throws IOException {
+		Path file = Files.createTempFile("world", ".journal");
+		try {
+			for (boolean parallel : new boolean[] {false, true}) {
+				World w = populated("Recorded", 29, parallel,
+						"random[3] = 0 --> right;\n"
+						+ "ENERGY > 1500 --> bud;\n"
+						+ "ahead[1] < -1 --> eat;\n"
+						+ "ahead[1] > 0 and random[2] = 0 --> attack;\n"
+						+ "ahead[1] > 0 --> tag[random[50]];\n"
+						+ "random[4] = 0 --> serve[random[30] + 1];\n"
+						+ "1 = 1 --> mem[7] := random[99] forward;\n"
+						+ "1 = 1 --> wait;\n");
+				for (int i = 0; i < 10; i++) w.advanceTime();
+				
+				World r = WorldSnapshot.capture(w).toWorld(null);
+				try (Journal j = new Journal(w, file)) {
+					assertSame(j, w.journal);
+					for (int i = 0; i < 50; i++) {
+						w.advanceTime();
+						if (i == 25) j.flush(); // later steps are appended
+					}
+				}
+				assertNull(w.journal);
+				try (Replay replay = new Replay(r, file)) {
+					replay.stepTo(40);
+					assertEquals(40, r.getTime());
+					while (replay.step()) {
+					}
+				}
+				assertEquals(w.getTime(), r.getTime());
+				assertEquals(w.getMap(), r.getMap());
+				assertEquals(states(w), states(r));
+				assertEquals(programs(w), programs(r));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@Test
+	public void testParallelReplayWithBirths() throws IOException {
+		Path file = Files.createTempFile("world", ".journal");
+		try {
+			World w = new World("Crowded", 60, 90, 37);
+			w.setParallel(true);
+			w.setRegionWidth(4);
+			ProgramImpl p = BytecodeTest.parse(
+					"ENERGY > 300 --> bud;\n"
+					+ "ahead[1] > 0 and random[2] = 0 --> attack;\n"
+					+ "random[3] = 0 --> right;\n"
+					+ "1 = 1 --> forward;\n"
+					+ "1 = 1 --> wait;\n");
+			for (int col = 0; col < 60; col += 3) {
+				for (int row = 0; row < 90; row += 7) {
+					Hex h = w.getHexAt(col, row);
+					if (h == null || h.getStatus() != 0) continue;
+					new Critter(h, (col + row) % 6, new int[] {9, 2, 3, 1, 2000, 1, 0, 0, 0}, p);
+				}
+			}
+			World r = WorldSnapshot.capture(w).toWorld(null);
+			try (Journal j = new Journal(w, file)) {
+				assertSame(j, w.journal);
+				for (int i = 0; i < 20; i++) w.advanceTime();
+			}
+			
+			// critters were born in many regions that committed at once
+			Set<Integer> regions = new HashSet<Integer>();
+			for (Critter c : w.getCritters()) {
+				int region = w.grid.col(c.getState().cell()) / 4;
+				if (w.registry().birth(c.id) > 0 && region % 2 == 0) regions.add(region);
+			}
+			assertTrue(regions.size() >= 3, regions.toString());
+			
+			try (Replay replay = new Replay(r, file)) {
+				while (replay.step()) {
+				}
+			}
+			assertEquals(w.getMap(), r.getMap());
+			assertEquals(states(w), states(r));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@Test
+	public void testReplayChecksWorld() throws IOException {
+		Path file = Files.createTempFile("world", ".journal");
+		try {
+			World w = new World("Recorded", 12, 12, 31);
+			ProgramImpl p = BytecodeTest.parse("1 = 1 --> left;\n1 = 1 --> wait;\n");
+			new Critter(w.getHexAt(4, 4), 0, new int[] {8, 1, 1, 1, 1000, 1, 0, 0}, p);
+			World r = WorldSnapshot.capture(w).toWorld(null);
+			try (Journal j = new Journal(w, file)) {
+				assertSame(j, w.journal);
+				for (int i = 0; i < 5; i++) w.advanceTime();
+			}
+			r.setParallel(true);
+			r.setRegionWidth(4);
+			try (Replay replay = new Replay(r, file)) {
+				assertThrows(IllegalStateException.class, () -> replay.step());
+			}
+			assertThrows(IOException.class, () -> new Replay(new World("Other", 12, 12, 32), file));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	private static List<String> states(World w) {
+		List<String> states = new ArrayList<String>();
+		for (Critter c : w.getCritters()) {
+			CritterState cs = c.getState();
+			states.add(w.getCritterId(c) + " " + cs.species + " " + cs.getFacing() + " "
+					+ Arrays.toString(cs.memory()) + " " + c.getLastRule()
+					+ " " + cs.rand.state() + " " + cs.rand.gamma());
+		}
+		return states;
+	}
+	
+	@Test
+	public void testStepDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) return;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported()) return;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		World w = new World("Steady", 20, 24, 5);
+		ProgramImpl p = BytecodeTest.parse(
+				"ahead[1] < -1 --> eat;\n"
+				+ "ahead[1] > 0 --> tag[ENERGY mod 50 + 1];\n"
+				+ "random[3] = 0 --> left;\n"
+				+ "random[4] = 0 --> forward;\n"
+				+ "ENERGY > 100 and random[2] = 0 --> serve[2];\n"
+				+ "1 = 1 --> wait;\n");
+		for (int col = 1; col < 20; col += 3) {
+			for (int row = col / 2 + 1; row < col / 2 + 12; row += 3) {
+				int[] mem = {9, 2, 3, 20, 9000, 1, 0, 0, 0};
+				new Critter(w.getHexAt(col, row), row % 6, mem, p);
+			}
+		}
+		int n = w.getCritters().size();
+		
+		// warm up past the JIT threshold and the JVM's own compilation
+		for (int i = 0; i < 200; i++) w.advanceTime();
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < 50; i++) w.advanceTime();
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+		
+		assertEquals(n, w.getCritters().size());
+		assertTrue(allocated < 1024, allocated + " bytes allocated");
+	}
+	
+	@Test
+	public void testMappedGridMatchesHeapGrid() throws IOException {
+		Path file = Files.createTempFile("world", ".grid");
+		World heap = new World("Heap", 20, 24, 3);
+		World mapped = new World("Mapped", 20, 24, 3, file);
+		try {
+			ProgramImpl p = BytecodeTest.parse(
+					"ENERGY > 500 --> bud;\n"
+					+ "ahead[1] < -1 --> eat;\n"
+					+ "random[3] = 0 --> left;\n"
+					+ "1 = 1 --> forward;\n");
+			for (World w : new World[] {heap, mapped}) {
+				w.setParallel(true);
+				w.setRegionWidth(5);
+				w.getHexAt(6, 9).add(new Food(300, w));
+				w.getHexAt(7, 9).setRock(true);
+				for (int col = 1; col < 20; col += 3) {
+					int[] mem = {9, 2, 3, 1, 700, 1, 0, 0, 0};
+					new Critter(w.getHexAt(col, 12), col % 6, mem, p);
+				}
+			}
+			assertEquals(-301, mapped.getHexAt(6, 9).getStatus());
+			assertTrue(mapped.getHexAt(7, 9).isRock());
+			assertNull(mapped.getHexAt(0, 20));
+			for (int i = 0; i < 30; i++) {
+				heap.advanceTime();
+				mapped.advanceTime();
+				assertEquals(heap.getMap(), mapped.getMap());
+			}
+		} finally {
+			mapped.close();
+			Files.deleteIfExists(file);
+		}
+	}
 }
@@ -0,0 +1,210 @@
+package main;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import console.WorldLoader;
+import exceptions.InitializationError;
+import interpret.World;
+
+/**
+ * Runs many independent worlds without a user interface, for sweeps over
+ * seeds and critter files. The worlds are listed in a manifest, run
+ * concurrently on a fixed number of threads, and summarized one line per
+ * world, in the order of the manifest.
+ *
+ * Each line of the manifest describes one world:
+ * <pre>
+ * world_file seed steps [critter_file count]...
+ * </pre>
+ * where {@code world_file} may be {@code new} for a default world with
+ * random rocks, and each critter file is loaded {@code count} times onto
+ * random empty hexes. Paths are relative to the manifest. Blank lines and
+ * lines starting with {@code //} are ignored.
+ */
+public class BatchRunner {
+
+	/** One world of the manifest. */
+	static class Job {
+		final int line;
+		final File world; // null for a default world
+		final long seed;
+		final int steps;
+		final List<File> critterFiles = new ArrayList<File>();
+		final List<Integer> counts = new ArrayList<Integer>();
+
+		Job(int line, File world, long seed, int steps) {
+			this.line = line;
+			this.world = world;
+			this.seed = seed;
+			this.steps = steps;
+		}
+
+		String name() {
+			return world == null ? "new" : world.getName();
+		}
+	}
+
+	/** What happened to the world of a job. */
+	static class Summary {
+		final Job job;
+		int start, end, peak; // numbers of critters
+		long critterSteps; // critters that acted, summed over the steps
+		long nanos;
+		String error;
+
+		Summary(Job job) {
+			this.job = job;
+		}
+
+		@Override
+		public String toString() {
+			if (error != null) return job.name() + "," + job.seed + ",error," + error;
+			double mean = job.steps == 0 ? start : (double) critterSteps / job.steps;
+			double perSecond = nanos == 0 ? 0 : critterSteps * 1e9 / nanos;
+			return String.format("%s,%d,%d,%d,%d,%d,%.1f,%d,%d,%.0f", job.name(), job.seed,
+					job.steps, start, end, peak, mean, critterSteps, nanos / 1000000, perSecond);
+		}
+	}
+
+	static final String HEADER = "world,seed,steps,critters_start,critters_end,"
+			+ "critters_peak,critters_mean,critter_steps,millis,critter_steps_per_sec";
+
+	/**
+	 * Read a manifest.
+	 *
+	 * @throws IOException if the manifest can't be read
+	 * @throws InitializationError if a line is malformed
+	 */
+	static List<Job> readManifest(File manifest) throws IOException {
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		List<Job> jobs = new ArrayList<Job>();
+		try (LineNumberReader r = new LineNumberReader(new FileReader(manifest))) {
+			for (String line = r.readLine(); line != null; line = r.readLine()) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("//")) continue;
+				String[] tokens = line.split("\\h+");
+				if (tokens.length < 3 || tokens.length % 2 == 0)
+					throw new InitializationError("Expected world_file seed steps "
+							+ "[critter_file count]... at line " + r.getLineNumber());
+				try {
+					File world = tokens[0].equals("new") ? null : new File(dir, tokens[0]);
+					Job job = new Job(r.getLineNumber(), world,
+							Long.parseLong(tokens[1]), Integer.parseInt(tokens[2]));
+					if (job.steps < 0)
+						throw new InitializationError("Negative step count at line " + job.line);
+					for (int i = 3; i < tokens.length; i += 2) {
+						job.critterFiles.add(new File(dir, tokens[i]));
+						job.counts.add(Integer.parseInt(tokens[i + 1]));
+					}
+					jobs.add(job);
+				} catch (NumberFormatException e) {
+					throw new InitializationError("Expected a number at line " + r.getLineNumber());
+				}
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Load and run the world of a job. Problems loading it are recorded in
+	 * the summary rather than thrown, so they don't stop the other jobs.
+	 */
+	static Summary run(Job job) {
+		Summary s = new Summary(job);
+		try {
+			WorldLoader loader = new WorldLoader(job.seed, System.err);
+			World w = job.world == null ? new World(job.seed) : loader.loadWorld(job.world);
+			for (int i = 0; i < job.critterFiles.size(); i++) {
+				loader.loadCritters(w, job.critterFiles.get(i), job.counts.get(i));
+			}
+			s.start = s.peak = w.getCritterCount();
+			long begin = System.nanoTime();
+			for (int i = 0; i < job.steps; i++) {
+				s.critterSteps += w.getCritterCount();
+				w.advanceTime();
+				s.peak = Math.max(s.peak, w.getCritterCount());
+			}
+			s.nanos = System.nanoTime() - begin;
+			s.end = w.getCritterCount();
+		} catch (IOException | InitializationError e) {
+			s.error = e.getMessage();
+		}
+		return s;
+	}
+
+	/**
+	 * Run the jobs on {@code threads} threads, writing a summary of each to
+	 * {@code out} in the order of the jobs.
+	 *
+	 * @return the total number of critter-steps
+	 */
+	static long runAll(List<Job> jobs, int threads, PrintStream out) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Summary>> results = new ArrayList<Future<Summary>>();
+			for (Job job : jobs) results.add(pool.submit(() -> run(job)));
+			long total = 0;
+			out.println(HEADER);
+			for (Future<Summary> f : results) {
+				Summary s;
+				try {
+					s = f.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+				total += s.critterSteps;
+				out.println(s);
+			}
+			return total;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	public static void main(String[] args) {
+		File manifest = null;
+		File outFile = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--threads") && i + 1 < args.length) {
+					threads = Integer.parseInt(args[++i]);
+					if (threads < 1) throw new IllegalArgumentException();
+				} else if (args[i].equals("--out") && i + 1 < args.length) {
+					outFile = new File(args[++i]);
+				} else if (manifest == null) {
+					manifest = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+			if (manifest == null) throw new IllegalArgumentException();
+
+			List<Job> jobs = readManifest(manifest);
+			long begin = System.nanoTime();
+			long total;
+			try (PrintStream out = outFile == null ? null : new PrintStream(outFile)) {
+				total = runAll(jobs, threads, out == null ? System.out : out);
+			}
+			double seconds = (System.nanoTime() - begin) / 1e9;
+			System.out.printf("%d worlds, %d critter-steps in %.2f s: %.0f critter-steps/s%n",
+					jobs.size(), total, seconds, total / seconds);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Usage:\n  <manifest> [--threads <n>] [--out <summary_file>]");
+		} catch (FileNotFoundException e) {
+			System.out.println("File not found: " + e.getMessage());
+		} catch (IOException e) {
+			System.out.println("Error reading manifest: " + e.getMessage());
+		} catch (InitializationError e) {
+			System.out.println("Invalid manifest: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
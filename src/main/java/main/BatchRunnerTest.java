@@ -0,0 +1,109 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import exceptions.InitializationError;
+import main.BatchRunner.Job;
+
+class BatchRunnerTest {
+
+	static final String CRITTER = "species: a\nmemsize: 9\ndefense: 1\noffense: 1\n"
+			+ "size: 1\nenergy: 500\nposture: 0\n1 = 1 --> wait;\n1 = 1 --> wait;\n";
+
+	private static void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) for (File g : files) delete(g);
+		f.delete();
+	}
+
+	private static File manifest(Path dir, String text) throws IOException {
+		return Files.writeString(dir.resolve("manifest.txt"), text).toFile();
+	}
+
+	@Test
+	public void testReadManifest() throws IOException {
+		Path dir = Files.createTempDirectory("batch");
+		try {
+			List<Job> jobs = BatchRunner.readManifest(manifest(dir,
+					"// a sweep\n\nnew 5 10\n   worlds/w.txt  7 20 a.txt 3 b.txt 0\n"
+					+ "// done\nw.txt -2 0\n"));
+			assertEquals(3, jobs.size());
+
+			Job j = jobs.get(0);
+			assertEquals(3, j.line);
+			assertNull(j.world);
+			assertEquals("new", j.name());
+			assertEquals(5, j.seed);
+			assertEquals(10, j.steps);
+			assertTrue(j.critterFiles.isEmpty());
+
+			j = jobs.get(1);
+			assertEquals(4, j.line);
+			assertEquals(dir.resolve("worlds/w.txt").toFile().getAbsoluteFile(), j.world.getAbsoluteFile());
+			assertEquals(List.of(dir.resolve("a.txt").toFile(), dir.resolve("b.txt").toFile()),
+					j.critterFiles);
+			assertEquals(List.of(3, 0), j.counts);
+
+			j = jobs.get(2);
+			assertEquals(6, j.line);
+			assertEquals(-2, j.seed);
+			assertEquals(0, j.steps);
+		} finally {
+			delete(dir.toFile());
+		}
+	}
+
+	@Test
+	public void testReadManifestRejectsMalformedLines() throws IOException {
+		Path dir = Files.createTempDirectory("batch");
+		try {
+			for (String line : new String[] {"new 5", "new 5 10 a.txt", "new 5 -1", "new x 10",
+					"new 5 10 a.txt many", "new 5 10 a.txt 1 b.txt"}) {
+				File m = manifest(dir, "new 1 1\n" + line + "\n");
+				InitializationError e = assertThrows(InitializationError.class,
+						() -> BatchRunner.readManifest(m));
+				assertTrue(e.getMessage().endsWith("line 2"), line + ": " + e.getMessage());
+			}
+		} finally {
+			delete(dir.toFile());
+		}
+	}
+
+	@Test
+	public void testRunAllKeepsOrderAndRecordsErrors() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("batch");
+		try {
+			Files.writeString(dir.resolve("a.txt"), CRITTER);
+			Files.writeString(dir.resolve("bad.txt"), "species: bad\nmemsize: nine\n");
+			Files.writeString(dir.resolve("w.txt"), "name small\nsize 10 12\ncritter a.txt 1 1 0\n");
+			List<Job> jobs = BatchRunner.readManifest(manifest(dir,
+					"w.txt 7 5 a.txt 3\nmissing.txt 2 5\nw.txt 3 5 bad.txt 1\nw.txt 4 0\n"));
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			long total = BatchRunner.runAll(jobs, 3, new PrintStream(bytes, true));
+
+			String[] lines = bytes.toString().split("\\R");
+			assertEquals(5, lines.length);
+			assertEquals(BatchRunner.HEADER, lines[0]);
+
+			String[] first = lines[1].split(",");
+			assertEquals(List.of("w.txt", "7", "5", "4", "4", "4", "4.0", "20"),
+					List.of(first).subList(0, 8));
+			assertTrue(lines[2].startsWith("missing.txt,2,error,"), lines[2]);
+			assertTrue(lines[3].startsWith("w.txt,3,error,"), lines[3]);
+			assertTrue(lines[4].startsWith("w.txt,4,0,1,1,1,1.0,0,"), lines[4]);
+			assertEquals(20, total);
+		} finally {
+			delete(dir.toFile());
+		}
+	}
+}
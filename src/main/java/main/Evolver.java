@@ -0,0 +1,335 @@
+package main;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import ast.Interner;
+import ast.Node;
+import ast.ProgramImpl;
+import ast.Rule;
+import console.WorldLoader;
+import console.WorldLoader.CritterFile;
+import exceptions.InitializationError;
+import interpret.Critter;
+import interpret.Food;
+import interpret.Hex;
+import interpret.RandomStream;
+import interpret.World;
+import interpret.WorldSnapshot;
+
+/**
+ * Evolves critter programs without a user interface. A population of
+ * programs, starting from mutants of the program of a critter file, is
+ * bred for a number of generations: each generation keeps its best
+ * programs and fills the rest of the next with offspring of programs
+ * chosen by tournament, mated rule by rule as critters mate and mutated
+ * by {@link ProgramImpl#mutate}.
+ *
+ * The fitness of a program is the mean number of critters alive over a
+ * short run of a world in which a few critters with the program start,
+ * so programs that survive and reproduce do best. Every run starts from
+ * the same world, built once and copied for each run, and programs are
+ * interned, so equal programs are run once per generation and their
+ * compiled forms are shared by all the critters running them. Runs are
+ * spread over a fork-join pool. All random choices are derived from one
+ * seed, so a search can be repeated exactly, whatever the number of
+ * threads.
+ */
+public class Evolver {
+
+	/** A program of the population and its fitness, once known. */
+	static class Candidate {
+		final ProgramImpl program;
+		double fitness = Double.NaN;
+
+		Candidate(ProgramImpl program) {
+			this.program = program;
+		}
+	}
+
+	static final String HEADER = "generation,best,mean,evaluations,millis";
+
+	/** Number of candidates each tournament picks the best of. */
+	static final int TOURNAMENT = 3;
+
+	private final CritterFile seed;
+	private final WorldSnapshot template;
+	private final int critters;
+	private final int steps;
+	private final ForkJoinPool pool;
+	private final SplittableRandom rand;
+	private List<Candidate> population = new ArrayList<Candidate>();
+	private long evaluations;
+
+	/**
+	 * Make an evolver of the program of critter file {@code seed}, whose
+	 * fitness runs place {@code critters} critters in a copy of world
+	 * {@code w} and run it for {@code steps} steps. The critters already in
+	 * {@code w} are removed from it; its rocks and food are kept.
+	 *
+	 * @param randomSeed: the seed of every random choice of the search
+	 * @param threads: the number of fitness runs made at once
+	 */
+	public Evolver(CritterFile seed, World w, int critters, int steps, long randomSeed,
+			int threads) {
+		if (critters < 1 || steps < 1) throw new IllegalArgumentException("Need critters and steps");
+		for (Critter c : w.getCritters()) {
+			c.getState().getLocation().removeOccupant();
+			w.removeCritter(c);
+		}
+		int empty = 0;
+		for (int c = 0; c < w.getCols(); c++) {
+			for (int r = 0; r < w.getRows(); r++) {
+				Hex h = w.getHexAt(c, r);
+				if (h != null && h.getStatus() == 0) empty++;
+			}
+		}
+		if (empty < critters) throw new IllegalArgumentException("No room for " + critters + " critters");
+		this.seed = seed;
+		this.template = WorldSnapshot.capture(w);
+		this.critters = critters;
+		this.steps = steps;
+		this.pool = new ForkJoinPool(threads);
+		this.rand = new SplittableRandom(randomSeed);
+	}
+
+	/**
+	 * Place {@code n} pieces of food of {@code value} each on random empty
+	 * hexes of world {@code w}.
+	 */
+	static void addFood(World w, int n, int value) {
+		RandomStream r = w.newRandom();
+		for (int placed = 0; placed < n; ) {
+			Hex h = w.getHexAt(r.nextInt(w.getCols()), r.nextInt(w.getRows()));
+			if (h != null && h.getStatus() == 0) {
+				h.add(new Food(value, w));
+				placed++;
+			}
+		}
+	}
+
+	/**
+	 * The fitness of program {@code p}: the mean number of critters alive
+	 * over the steps of a run of a copy of the world, starting with
+	 * critters running {@code p} on random empty hexes.
+	 */
+	double evaluate(ProgramImpl p) {
+		World w;
+		try {
+			w = template.toWorld(null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // the template holds no programs to parse
+		}
+		CritterFile cf = seed.withProgram(p);
+		RandomStream r = w.newRandom();
+		for (int placed = 0; placed < critters; ) {
+			Hex h = w.getHexAt(r.nextInt(w.getCols()), r.nextInt(w.getRows()));
+			if (h != null && h.getStatus() == 0) {
+				cf.place(h, r.nextInt(6));
+				placed++;
+			}
+		}
+		long critterSteps = 0;
+		for (int i = 0; i < steps && w.getCritterCount() > 0; i++) {
+			w.advanceTime();
+			critterSteps += w.getCritterCount();
+		}
+		w.close();
+		return (double) critterSteps / steps;
+	}
+
+	/**
+	 * Find the fitness of every candidate of the population that doesn't
+	 * know it yet, running each distinct program once, in parallel.
+	 */
+	private void evaluateAll() {
+		Map<ProgramImpl, ForkJoinTask<Double>> runs =
+				new IdentityHashMap<ProgramImpl, ForkJoinTask<Double>>();
+		for (Candidate c : population) {
+			if (!Double.isNaN(c.fitness) || runs.containsKey(c.program)) continue;
+			runs.put(c.program, pool.submit(() -> evaluate(c.program)));
+		}
+		for (Candidate c : population) {
+			if (Double.isNaN(c.fitness)) c.fitness = runs.get(c.program).join();
+		}
+		evaluations += runs.size();
+	}
+
+	/**
+	 * Pick a candidate of the population by tournament.
+	 */
+	private Candidate select() {
+		Candidate best = population.get(rand.nextInt(population.size()));
+		for (int i = 1; i < TOURNAMENT; i++) {
+			Candidate c = population.get(rand.nextInt(population.size()));
+			if (c.fitness > best.fitness) best = c;
+		}
+		return best;
+	}
+
+	/**
+	 * Mate programs {@code a} and {@code b} as critters mate: the offspring
+	 * has as many rules as one of them, each taken from either where both
+	 * have one. The rules are shared, not copied.
+	 */
+	ProgramImpl mate(ProgramImpl a, ProgramImpl b) {
+		List<Node> rulesA = a.getChildren();
+		List<Node> rulesB = b.getChildren();
+		int n = rand.nextBoolean() ? rulesA.size() : rulesB.size();
+		ProgramImpl p = new ProgramImpl();
+		for (int i = 0; i < n; i++) {
+			if (i >= rulesA.size()) p.add((Rule) rulesB.get(i));
+			else if (i >= rulesB.size()) p.add((Rule) rulesA.get(i));
+			else p.add((Rule) (rand.nextBoolean() ? rulesA : rulesB).get(i));
+		}
+		return p;
+	}
+
+	/**
+	 * Mutate a copy of program {@code p} at least once, and intern it.
+	 */
+	private ProgramImpl mutant(ProgramImpl p) {
+		ProgramImpl m = (ProgramImpl) p.clone();
+		do {
+			m.mutate(rand);
+		} while (rand.nextInt(4) == 0);
+		return Interner.intern(m);
+	}
+
+	/**
+	 * Run the search, keeping the best {@code elite} of a population of
+	 * {@code size} programs from one generation to the next, and writing a
+	 * line about each generation to {@code out}.
+	 *
+	 * @return the best program found and its fitness
+	 */
+	Candidate run(int size, int elite, int generations, PrintStream out) {
+		if (size < 2 || elite < 0 || elite >= size)
+			throw new IllegalArgumentException("Need a population larger than the elite");
+		population.clear();
+		population.add(new Candidate(seed.program));
+		while (population.size() < size) population.add(new Candidate(mutant(seed.program)));
+		out.println(HEADER);
+		for (int g = 0; ; g++) {
+			long begin = System.nanoTime();
+			long before = evaluations;
+			evaluateAll();
+			population.sort((a, b) -> Double.compare(b.fitness, a.fitness));
+			double mean = 0;
+			for (Candidate c : population) mean += c.fitness / size;
+			out.printf("%d,%.2f,%.2f,%d,%d%n", g, population.get(0).fitness, mean,
+					evaluations - before, (System.nanoTime() - begin) / 1000000);
+			if (g == generations) return population.get(0);
+
+			List<Candidate> next = new ArrayList<Candidate>(population.subList(0, elite));
+			while (next.size() < size) {
+				ProgramImpl a = select().program;
+				ProgramImpl child = rand.nextBoolean() ? mate(a, select().program) : a;
+				next.add(new Candidate(mutant(child)));
+			}
+			population = next;
+		}
+	}
+
+	/**
+	 * The number of fitness runs made so far.
+	 */
+	long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Stop the threads of the fork-join pool.
+	 */
+	void shutdown() {
+		pool.shutdown();
+	}
+
+	public static void main(String[] args) {
+		File critterFile = null;
+		File worldFile = null;
+		File outFile = null;
+		int cols = 0, rows = 0;
+		int size = 64, elite = 4, generations = 20;
+		int critters = 8, food = 100, steps = 200;
+		long seed = new SplittableRandom().nextLong();
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].startsWith("--")) {
+					if (i + 1 >= args.length) throw new IllegalArgumentException();
+					String value = args[++i];
+					switch (args[i - 1]) {
+					case "--world": worldFile = new File(value); break;
+					case "--size":
+						if (i + 1 >= args.length) throw new IllegalArgumentException();
+						cols = Integer.parseInt(value);
+						rows = Integer.parseInt(args[++i]);
+						break;
+					case "--population": size = Integer.parseInt(value); break;
+					case "--elite": elite = Integer.parseInt(value); break;
+					case "--generations": generations = Integer.parseInt(value); break;
+					case "--critters": critters = Integer.parseInt(value); break;
+					case "--food": food = Integer.parseInt(value); break;
+					case "--steps": steps = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					case "--out": outFile = new File(value); break;
+					default: throw new IllegalArgumentException();
+					}
+				} else if (critterFile == null) {
+					critterFile = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+			if (critterFile == null || generations < 0 || food < 0 || threads < 1
+					|| (worldFile != null && cols > 0))
+				throw new IllegalArgumentException();
+
+			WorldLoader loader = new WorldLoader(seed, System.err);
+			CritterFile species;
+			try (Reader r = new FileReader(critterFile)) {
+				species = loader.readCritterFile(r);
+			}
+			World w = worldFile != null ? loader.loadWorld(worldFile)
+					: cols > 0 ? new World("evolution", cols, rows, seed) : new World(seed);
+			addFood(w, food, 500);
+			Evolver e = new Evolver(species, w, critters, steps, seed, threads);
+			long begin = System.nanoTime();
+			Candidate best;
+			try {
+				best = e.run(size, elite, generations, System.out);
+			} finally {
+				e.shutdown();
+			}
+			double seconds = (System.nanoTime() - begin) / 1e9;
+			System.out.printf("%d evaluations in %.2f s: %.0f evaluations/s; best fitness %.2f%n",
+					e.getEvaluations(), seconds, e.getEvaluations() / seconds, best.fitness);
+			String text = species.withProgram(best.program).toString();
+			if (outFile == null) {
+				System.out.print(text);
+			} else {
+				try (PrintStream out = new PrintStream(outFile)) {
+					out.print(text);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println("Usage:\n  <critter_file> [--world <world_file> | --size <cols> <rows>]"
+					+ " [--population <n>] [--elite <n>] [--generations <n>] [--critters <n>]"
+					+ " [--food <n>] [--steps <n>] [--seed <n>] [--threads <n>] [--out <critter_file>]");
+		} catch (FileNotFoundException e) {
+			System.out.println("File not found: " + e.getMessage());
+		} catch (IOException e) {
+			System.out.println("Error reading file: " + e.getMessage());
+		} catch (InitializationError e) {
+			System.out.println("Invalid file: " + e.getMessage());
+		}
+	}
+}
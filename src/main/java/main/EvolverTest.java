@@ -0,0 +1,138 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ast.Node;
+import ast.ProgramImpl;
+import console.WorldLoader;
+import console.WorldLoader.CritterFile;
+import interpret.World;
+import main.Evolver.Candidate;
+
+class EvolverTest {
+
+	static final String CRITTER = "species: evolved\nmemsize: 9\ndefense: 2\noffense: 2\n"
+			+ "size: 1\nenergy: 1500\nposture: 0\n"
+			+ "ENERGY > 700 --> bud;\n"
+			+ "ahead[1] < -1 --> eat;\n"
+			+ "ahead[1] > 0 --> attack;\n"
+			+ "random[3] = 0 --> left;\n"
+			+ "1 = 1 --> forward;\n"
+			+ "1 = 1 --> wait;\n";
+
+	private static CritterFile seed() throws IOException {
+		return new WorldLoader(1, System.err).readCritterFile(new StringReader(CRITTER));
+	}
+
+	private static Evolver evolver(int threads) throws IOException {
+		World w = new World("evolution", 14, 16, 5);
+		Evolver.addFood(w, 20, 500);
+		return new Evolver(seed(), w, 4, 80, 99, threads);
+	}
+
+	/**
+	 * The lines {@code e} writes about each generation, without their
+	 * timings.
+	 */
+	private static String[] run(Evolver e, int size, int elite, int generations) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			e.run(size, elite, generations, new PrintStream(bytes, true));
+		} finally {
+			e.shutdown();
+		}
+		String[] lines = bytes.toString().split("\\R");
+		assertEquals(Evolver.HEADER, lines[0]);
+		assertEquals(generations + 2, lines.length);
+		for (int i = 1; i < lines.length; i++) lines[i] = lines[i].substring(0, lines[i].lastIndexOf(','));
+		return lines;
+	}
+
+	@Test
+	public void testThreadsDontChangeResult() throws IOException {
+		Evolver one = evolver(1);
+		Evolver four = evolver(4);
+		try {
+			Candidate a = one.run(8, 2, 3, new PrintStream(new ByteArrayOutputStream()));
+			Candidate b = four.run(8, 2, 3, new PrintStream(new ByteArrayOutputStream()));
+			assertEquals(a.program.toString(), b.program.toString());
+			assertEquals(a.fitness, b.fitness);
+			assertEquals(one.getEvaluations(), four.getEvaluations());
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+		assertEquals(List.of(run(evolver(1), 8, 2, 3)), List.of(run(evolver(4), 8, 2, 3)));
+	}
+
+	@Test
+	public void testElitesCarryOver() throws IOException {
+		int size = 8, elite = 3;
+		String[] lines = run(evolver(2), size, elite, 4);
+		double best = Double.NEGATIVE_INFINITY;
+		for (int g = 0; g <= 4; g++) {
+			String[] fields = lines[g + 1].split(",");
+			assertEquals(String.valueOf(g), fields[0]);
+			// the elites keep their fitness, so the best never gets worse
+			// and they aren't run again
+			double b = Double.parseDouble(fields[1]);
+			assertTrue(b >= best, lines[g + 1]);
+			best = b;
+			int runs = Integer.parseInt(fields[3]);
+			assertTrue(runs >= 1 && runs <= (g == 0 ? size : size - elite), lines[g + 1]);
+		}
+	}
+
+	@Test
+	public void testMateTakesEachRuleFromAParent() throws IOException {
+		Evolver e = evolver(1);
+		try {
+			ProgramImpl a = seed().program;
+			ProgramImpl b = new WorldLoader(2, System.err).readCritterFile(new StringReader(
+					CRITTER.replace("ENERGY > 700 --> bud;\n", "")
+							+ "mem[7] < 5 --> mem[7] := mem[7] + 1;\n1 = 1 --> right;\n")).program;
+			List<Node> rulesA = a.getChildren(), rulesB = b.getChildren();
+			boolean sawA = false, sawB = false;
+			for (int i = 0; i < 40; i++) {
+				List<Node> rules = e.mate(a, b).getChildren();
+				assertTrue(rules.size() == rulesA.size() || rules.size() == rulesB.size());
+				for (int k = 0; k < rules.size(); k++) {
+					Node r = rules.get(k);
+					boolean fromA = k < rulesA.size() && r == rulesA.get(k);
+					boolean fromB = k < rulesB.size() && r == rulesB.get(k);
+					assertTrue(fromA || fromB, "rule " + k);
+					sawA |= fromA && !fromB;
+					sawB |= fromB && !fromA;
+				}
+			}
+			assertTrue(sawA && sawB);
+		} finally {
+			e.shutdown();
+		}
+	}
+
+	@Test
+	public void testRejectsBadSettings() throws IOException {
+		Evolver e = evolver(1);
+		try {
+			PrintStream out = new PrintStream(new ByteArrayOutputStream());
+			assertThrows(IllegalArgumentException.class, () -> e.run(1, 0, 1, out));
+			assertThrows(IllegalArgumentException.class, () -> e.run(4, 4, 1, out));
+			assertThrows(IllegalArgumentException.class, () -> e.run(4, -1, 1, out));
+		} finally {
+			e.shutdown();
+		}
+		World w = new World("evolution", 14, 16, 5);
+		assertThrows(IllegalArgumentException.class, () -> new Evolver(seed(), w, 0, 30, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> new Evolver(seed(), w, 4, 0, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> new Evolver(seed(), w, 10000, 30, 1, 1));
+	}
+}
@@ -1,6 +1,7 @@
 package parse;
 
 import java.io.Reader;
+import java.nio.CharBuffer;
 
 import ast.Program;
 
@@ -19,4 +20,16 @@ public interface Parser {
     *         error.
     */
    Program parse(Reader r);
+
+   /**
+    * Parses a program held in memory, lexing it straight from the buffer
+    * rather than through a reader. Parses the remaining characters of
+    * {@code text}, without consuming them.
+    * 
+    * @param text
+    *           The program
+    * @return The parsed program, or null if the program contains a syntax
+    *         error.
+    */
+   Program parse(CharBuffer text);
 }
@@ -2,6 +2,7 @@ package parse;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
 
 import ast.Action;
 import ast.Command;
@@ -25,13 +26,8 @@ class ParserImpl implements Parser {
    @Override
    public Program parse(Reader r) {
       Tokenizer t = new Tokenizer(r);
-      Program p = null;
       try {
-         p = parseProgram(t);
-      } catch (SyntaxError e) {
-         String msg = String.format("Syntax error at line %d: %s\n", t.lineNumber(), e.getMessage());
-         System.out.println(msg);
-         p = null;
+         return parse(t);
       } finally {
          try {
             r.close();
@@ -40,6 +36,22 @@ class ParserImpl implements Parser {
             e.printStackTrace();
          }
       }
+   }
+
+   @Override
+   public Program parse(CharBuffer text) {
+      return parse(new Tokenizer(text));
+   }
+
+   private Program parse(Tokenizer t) {
+      Program p = null;
+      try {
+         p = parseProgram(t);
+      } catch (SyntaxError e) {
+         String msg = String.format("Syntax error at line %d: %s\n", t.lineNumber(), e.getMessage());
+         System.out.println(msg);
+         p = null;
+      }
       return p;
    }
 
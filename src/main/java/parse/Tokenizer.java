@@ -1,39 +1,75 @@
 package parse;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
 
 /**
  * A Tokenizer turns a Reader into a stream of tokens that can be iterated over
  * using a {@code for} loop.
+ *
+ * Characters are lexed straight from a {@code char[]} buffer: either the
+ * text given whole, or chunks read from the {@code Reader} into a buffer
+ * that is refilled as the lexemes are consumed. Keywords are recognized by
+ * their length and characters, and numbers are converted as they are
+ * scanned, so no string is made for a lexeme unless it is an error.
  */
 public class Tokenizer implements Iterator<Token> {
 
+   /** Size of the chunks read from a {@code Reader}. */
+   private static final int CHUNK = 8192;
+
    /**
-    * Lookahead buffer. Contains characters already read from the {@code Reader}
-    * but not processed into a token yet.
+    * The keywords spelled with letters, by length, so that a word is found
+    * by comparing it to the few keywords as long as it is.
     */
-   private final LookAheadBuffer in;
+   private static final TokenType[][] KEYWORDS;
+
+   static {
+      List<List<TokenType>> byLength = new ArrayList<>();
+      for (TokenType t : TokenType.values()) {
+         String rep = t.toString();
+         if (!rep.chars().allMatch(Character::isLetter)) continue;
+         while (byLength.size() <= rep.length()) byLength.add(new ArrayList<>());
+         byLength.get(rep.length()).add(t);
+      }
+      KEYWORDS = new TokenType[byLength.size()][];
+      for (int n = 0; n < KEYWORDS.length; n++) {
+         KEYWORDS[n] = byLength.get(n).toArray(new TokenType[0]);
+      }
+   }
 
    /**
-    * The line number of the input file. Always equals 1 + the number of new
-    * line characters previously encountered.
+    * The source of further characters, or {@code null} once it is exhausted
+    * or if the text was given whole.
     */
-   private int lineNumber;
+   private Reader reader;
 
    /**
-    * Queue of tokens produced by this Tokenizer but not yet read.
+    * Characters read but not processed into a token yet are
+    * {@code buf[pos..end)}. The lexeme being scanned started at
+    * {@code start}; characters before it may be discarded when the buffer
+    * is refilled.
     */
-   private final Queue<Token> tokens = new LinkedList<>();
+   private char[] buf;
+   private int pos;
+   private int end;
+   private int start;
+
+   /**
+    * The line number of the input file. Always equals 1 + the number of new
+    * line characters previously encountered.
+    */
+   private int lineNumber;
 
    /**
-    * StringBuilder used to scan keywords and numbers.
+    * The token produced by this Tokenizer but not yet read, if any.
     */
-   private final StringBuilder sb = new StringBuilder();
+   private Token token;
 
    /**
     * Create a Tokenizer that reads from the specified reader
@@ -42,11 +78,39 @@ public class Tokenizer implements Iterator<Token> {
     *           The source from which the Tokenizer lexes input into Tokens
     */
    public Tokenizer(Reader r) {
-      // need lookahead capacity 2 for -->
-      in = new LookAheadBuffer(2, new BufferedReader(r));
+      reader = r;
+      buf = new char[CHUNK];
       lineNumber = 1;
    }
 
+   /**
+    * Create a Tokenizer that lexes {@code text[offset..offset+length)},
+    * without copying it.
+    */
+   public Tokenizer(char[] text, int offset, int length) {
+      if (offset < 0 || length < 0 || offset + length > text.length)
+         throw new IndexOutOfBoundsException(offset + length);
+      buf = text;
+      pos = start = offset;
+      end = offset + length;
+      lineNumber = 1;
+   }
+
+   /**
+    * Create a Tokenizer that lexes the remaining characters of {@code text},
+    * in place if the buffer is backed by an array.
+    */
+   public Tokenizer(CharBuffer text) {
+      this(text.hasArray() ? text.array() : toArray(text),
+            text.hasArray() ? text.arrayOffset() + text.position() : 0, text.remaining());
+   }
+
+   private static char[] toArray(CharBuffer text) {
+      char[] a = new char[text.remaining()];
+      text.duplicate().get(a);
+      return a;
+   }
+
    /**
     * Returns {@code true} if there are more meaningful tokens to be read. In
     * other words, returns {@code true} if {@link #next} would return a non-EOF
@@ -73,8 +137,9 @@ public class Tokenizer implements Iterator<Token> {
     */
    @Override
    public Token next() {
-      peek();
-      return tokens.poll();
+      Token t = peek();
+      token = null;
+      return t;
    }
 
    /**
@@ -87,14 +152,14 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    public Token peek() {
-      if (tokens.isEmpty()) {
+      if (token == null) {
          try {
             lexOneToken();
          } catch (IOException e) {
             throw new TokenizerIOException(e);
          }
       }
-      return tokens.peek();
+      return token;
    }
 
    @Override
@@ -107,8 +172,64 @@ public class Tokenizer implements Iterator<Token> {
    }
 
    /**
-    * Constructs one token from the input source and pushes it onto the token
-    * queue. A token is always produced, but it may be an error token or an
+    * Returns the character {@code n} places after the next unread one, or
+    * {@link LookAheadBuffer#EOF} past the end of the input.
+    *
+    * @throws IOException
+    *            if an IOException was thrown when trying to read from the
+    *            source Reader
+    */
+   private char peek(int n) throws IOException {
+      if (pos + n >= end && !fill(n + 1)) return LookAheadBuffer.EOF;
+      return buf[pos + n];
+   }
+
+   /**
+    * Reads the next character, or {@link LookAheadBuffer#EOF} at the end of
+    * the input.
+    *
+    * @throws IOException
+    *            if an IOException was thrown when trying to read from the
+    *            source Reader
+    */
+   private char nextChar() throws IOException {
+      if (pos >= end && !fill(1)) return LookAheadBuffer.EOF;
+      return buf[pos++];
+   }
+
+   /**
+    * Reads from the source Reader until at least {@code n} characters are
+    * unread, keeping the lexeme being scanned in the buffer.
+    *
+    * @return whether there are {@code n} unread characters; {@code false} if
+    *         the input ends first
+    * @throws IOException
+    *            if an IOException was thrown when trying to read from the
+    *            source Reader
+    */
+   private boolean fill(int n) throws IOException {
+      while (end - pos < n) {
+         if (reader == null) return false;
+         if (end == buf.length) {
+            if (start > 0) { // discard what has been lexed
+               System.arraycopy(buf, start, buf, 0, end - start);
+               pos -= start;
+               end -= start;
+               start = 0;
+            } else {
+               buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+         }
+         int r = reader.read(buf, end, buf.length - end);
+         if (r < 0) reader = null;
+         else end += r;
+      }
+      return true;
+   }
+
+   /**
+    * Constructs one token from the input source and makes it the next token.
+    * A token is always produced, but it may be an error token or an
     * end-of-file (EOF) token.
     *
     * @throws IOException
@@ -117,12 +238,14 @@ public class Tokenizer implements Iterator<Token> {
     */
    private void lexOneToken() throws IOException {
 
-      char c = in.next();
+      start = pos;
+      char c = nextChar();
 
       // consume whitespace
       while (Character.isWhitespace(c)) {
          if (c == '\n') lineNumber++;
-         c = in.next();
+         start = pos;
+         c = nextChar();
       }
 
       switch (c) {
@@ -178,8 +301,8 @@ public class Tokenizer implements Iterator<Token> {
          consume('=', TokenType.NE);
          break;
       default:
-         if (Character.isLetter(c)) lexKeyword(c);
-         else if (Character.isDigit(c)) lexNum(c);
+         if (Character.isLetter(c)) lexKeyword();
+         else if (Character.isDigit(c)) lexNum();
          else addErrorToken(String.format("Unrecognized character %c", c));
       }
    }
@@ -193,10 +316,13 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    private void lexDiv() throws IOException {
-      if (in.peek() == '/') { // comment - scan to end of line or EOF
-         char c = in.scanAndPeek();
+      if (peek(0) == '/') { // comment - scan to end of line or EOF
+         pos++;
+         char c = peek(0);
          while (c != LookAheadBuffer.EOF && c != '\n') {
-            c = in.scanAndPeek();
+            pos++;
+            start = pos;
+            c = peek(0);
          }
          lexOneToken();
       } else { // not a comment
@@ -213,8 +339,8 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    private void lexLAngle() throws IOException {
-      if (in.peek() == '=') {
-         in.next();
+      if (peek(0) == '=') {
+         pos++;
          addToken(TokenType.LE);
       } else {
          addToken(TokenType.LT);
@@ -230,8 +356,8 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    private void lexRAngle() throws IOException {
-      if (in.peek() == '=') {
-         in.next();
+      if (peek(0) == '=') {
+         pos++;
          addToken(TokenType.GE);
       } else {
          addToken(TokenType.GT);
@@ -249,8 +375,8 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    private void lexDash() throws IOException {
-      if (in.peek() == '-' && in.peek(1) == '>') {
-         in.next();
+      if (peek(0) == '-' && peek(1) == '>') {
+         pos++;
          consume('>', TokenType.ARR);
       } else {
          addToken(TokenType.MINUS);
@@ -259,63 +385,78 @@ public class Tokenizer implements Iterator<Token> {
 
    /**
     * Lexes a keyword. May be called only when the previously read character is
-    * a letter. Scans the keyword and finds it in the keyword table.
+    * a letter, which starts the lexeme. Scans the keyword and compares it to
+    * the keywords of its length.
     * 
     * @throws IOException
     *            if an IOException was thrown when trying to read from the
     *            source Reader
     */
-   private void lexKeyword(char c) throws IOException {
-      sb.setLength(0);
-      sb.append(c);
-      c = in.peek();
-      while (Character.isLetter(c)) {
-         sb.append(c);
-         c = in.scanAndPeek();
+   private void lexKeyword() throws IOException {
+      while (Character.isLetter(peek(0))) pos++;
+      int n = pos - start;
+      if (n < KEYWORDS.length) {
+         for (TokenType tt : KEYWORDS[n]) {
+            String rep = tt.toString();
+            int i = 0;
+            while (i < n && buf[start + i] == rep.charAt(i)) i++;
+            if (i == n) {
+               addToken(tt);
+               return;
+            }
+         }
       }
-      TokenType tt = TokenType.getTypeFromString(sb.toString());
-      if (tt != null) addToken(tt);
-      else
-         addErrorToken(String.format("Unrecognized keyword %s", sb.toString()));
+      addErrorToken(String.format("Unrecognized keyword %s", new String(buf, start, n)));
    }
 
    /**
     * Lexes a number. May be called only when the previously read character is a
-    * digit. Scans the number and produces a number token.
+    * digit, which starts the lexeme. Scans the number and produces a number
+    * token, converting ASCII digits as they are scanned.
     * 
     * @throws IOException
     *            if an IOException was thrown when trying to read from the
     *            source Reader
     */
-   private void lexNum(char c) throws IOException {
-      sb.setLength(0);
-      sb.append(c);
-      c = in.peek();
-      while (Character.isDigit(c)) {
-         sb.append(c);
-         c = in.scanAndPeek();
+   private void lexNum() throws IOException {
+      int val = 0;
+      boolean fast = true; // only ASCII digits, and in range, so far
+      pos = start; // back to the first digit, which is still in the buffer
+      for (char c = peek(0); ; c = peek(0)) {
+         if (fast && c >= '0' && c <= '9' && val <= (Integer.MAX_VALUE - (c - '0')) / 10) {
+            val = val * 10 + (c - '0');
+         } else if (Character.isDigit(c)) {
+            fast = false;
+         } else {
+            break;
+         }
+         pos++;
       }
-      try {
-         int val = Integer.parseInt(sb.toString());
-         tokens.add(new Token.NumToken(val, lineNumber));
-      } catch (NumberFormatException e) {
-         addErrorToken(String.format("Number expected, got %s", sb.toString()));
+      if (!fast) { // other digits, or too large: convert as a string does
+         String s = new String(buf, start, pos - start);
+         try {
+            val = Integer.parseInt(s);
+         } catch (NumberFormatException e) {
+            addErrorToken(String.format("Number expected, got %s", s));
+            return;
+         }
       }
+      token = new Token.NumToken(val, lineNumber);
    }
 
    /**
-    * Pushes a token of the given type.
+    * Makes a token of the given type the next token.
     * 
     * @param tokenType
     *           the type of the token to pushed, not {@code null}
     */
    private void addToken(TokenType tokenType) {
-      tokens.add(new Token(tokenType, lineNumber));
+      token = new Token(tokenType, lineNumber);
    }
 
    /**
-    * Read the next character and push a token of the given type if it is the
-    * expected character. If not, push an error token.
+    * Read the next character and make a token of the given type the next
+    * token if it is the expected character. If not, make it an error token.
     *
     * @param expected
     *           The expected next character
@@ -326,23 +467,23 @@ public class Tokenizer implements Iterator<Token> {
     *            source Reader
     */
    private void consume(char expected, TokenType tt) throws IOException {
-      char c = in.next();
+      char c = nextChar();
       if (c == expected) addToken(tt);
       else addErrorToken(String.format("Expected %c, got %c", expected, c));
    }
 
    /**
-    * Pushes an error token with the given message.
+    * Makes an error token with the given message the next token.
     */
    private void addErrorToken(String message) {
-      tokens.add(new Token.ErrorToken(message, lineNumber));
+      token = new Token.ErrorToken(message, lineNumber);
    }
 
    /**
-    * Pushes an and-of-file token.
+    * Makes an and-of-file token the next token.
     */
    private void addEOFToken() {
-      tokens.add(new Token.EOFToken("EOF", lineNumber));
+      token = new Token.EOFToken("EOF", lineNumber);
    }
 
    /**
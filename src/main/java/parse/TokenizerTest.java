@@ -0,0 +1,127 @@
+package parse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TokenizerTest {
+
+   static final String PROGRAM =
+         "// a comment --> wait;\n"
+         + "POSTURE != 17 --> POSTURE := 17;\n"
+         + "nearby[3] = 0 and ENERGY > 2500 --> bud; // another\n"
+         + "{ENERGY > SIZE * 400 and SIZE < 7} --> grow;\n"
+         + "mem[8] < 3 --> mem[8] := mem[8] + 1 mem[20] := 5;\n"
+         + "ahead[1] <= -1 or ENERGY >= 500 * SIZE --> eat;\n"
+         + "(ahead[1] / 10 mod 100) != 17 and random[3] > 0 --> attack;\n"
+         + "smell > 0 and MEMSIZE > DEFENSE + OFFENSE --> mem[6] := PASS serve[TAG];\n"
+         + "1 = 1-->wait;\n";
+
+   /**
+    * The tokens of {@code t}, as type, text and line, up to and including
+    * the end of the input.
+    */
+   private static List<String> tokens(Tokenizer t) {
+      List<String> tokens = new ArrayList<String>();
+      while (true) {
+         Token tok = t.next();
+         tokens.add(tok.getType().name() + " " + tok + " " + tok.lineNumber());
+         if (tok instanceof Token.EOFToken) return tokens;
+         assertTrue(tokens.size() < 100000, "no end of input");
+      }
+   }
+
+   /**
+    * A reader that hands out at most {@code n} characters at a time.
+    */
+   private static Reader trickle(String text, int n) {
+      return new StringReader(text) {
+         @Override
+         public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+            return super.read(cbuf, off, Math.min(len, n));
+         }
+      };
+   }
+
+   /**
+    * Check that {@code text} lexes to the same tokens whether it is read
+    * from a reader, in chunks of any size, or lexed in place from a buffer.
+    *
+    * @return the tokens
+    */
+   private static List<String> assertSameTokens(String text) {
+      List<String> expected = tokens(new Tokenizer(new StringReader(text)));
+      assertEquals(expected, tokens(new Tokenizer(trickle(text, 1))));
+      assertEquals(expected, tokens(new Tokenizer(trickle(text, 5))));
+      assertEquals(expected, tokens(new Tokenizer(CharBuffer.wrap(text))));
+      char[] padded = ("xx" + text + "yy").toCharArray();
+      CharBuffer slice = CharBuffer.wrap(padded, 2, text.length());
+      assertEquals(expected, tokens(new Tokenizer(slice)));
+      assertEquals(expected, tokens(new Tokenizer(slice.slice())));
+      assertEquals(expected, tokens(new Tokenizer(padded, 2, text.length())));
+      return expected;
+   }
+
+   @Test
+   public void testTokens() {
+      List<String> tokens = assertSameTokens("mem[3] := -5-->wait; // x\nahead <= 12\n");
+      assertEquals(List.of("MEM mem 1", "LBRACKET [ 1", "NUM 3 1", "RBRACKET ] 1",
+            "ASSIGN := 1", "MINUS - 1", "NUM 5 1", "ARR --> 1", "WAIT wait 1",
+            "SEMICOLON ; 1", "AHEAD ahead 2", "LE <= 2", "NUM 12 2", "EOF Buffer contained <EOF> at EOF 3"),
+            tokens);
+   }
+
+   @Test
+   public void testProgram() {
+      assertSameTokens(PROGRAM);
+      assertSameTokens("");
+      assertSameTokens("\n\n// only a comment");
+   }
+
+   @Test
+   public void testMalformed() {
+      assertSameTokens("mem[3] := 5 @ --> # wait;");
+      assertSameTokens("99999999999 --> 2147483647 2147483648");
+      assertSameTokens("1 = 1 -> wait; 1 -- 2 - > 3 : = 4 ! 5");
+      assertSameTokens("ahead[1] <");
+      assertSameTokens("1 = 1 --");
+      assertSameTokens("mem[3] :");
+      assertSameTokens("nearbyy waits MEMSIZ Energy");
+      assertSameTokens("1 = 1 --> serve[é];");
+   }
+
+   @Test
+   public void testChunkBoundary() {
+      String tail = "nearby[12345] --> mem[6] := 1; // note\nENERGY <= 2500 and smell != -10 --> wait;\n";
+      List<String> expected = tokens(new Tokenizer(new StringReader(tail)));
+      for (int shift = 0; shift < 12; shift++) {
+         String text = " ".repeat(8192 - shift) + tail;
+         assertEquals(expected, assertSameTokens(text), "shifted by " + shift);
+      }
+      String comment = "// " + "x".repeat(8192) + "\n" + tail;
+      List<String> tokens = assertSameTokens(comment);
+      assertEquals(expected.size(), tokens.size());
+      assertEquals("NEARBY nearby 2", tokens.get(0));
+
+      StringBuilder many = new StringBuilder();
+      while (many.length() < 3 * 8192) many.append(PROGRAM);
+      assertSameTokens(many.toString());
+   }
+
+   @Test
+   public void testParseFromBuffer() {
+      Parser parser = ParserFactory.getParser();
+      String text = parser.parse(new StringReader(PROGRAM)).toString();
+      CharBuffer buffer = CharBuffer.wrap(("//\n" + PROGRAM + "junk").toCharArray());
+      buffer.position(3).limit(3 + PROGRAM.length());
+      assertEquals(text, parser.parse(buffer).toString());
+      assertEquals(text, parser.parse(CharBuffer.wrap(PROGRAM)).toString());
+      assertEquals(3, buffer.position());
+   }
+}